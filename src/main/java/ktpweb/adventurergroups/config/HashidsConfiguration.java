@@ -10,9 +10,18 @@ public class HashidsConfiguration {
     @Value("${adventurergroups.invitetoken.salt:}")
     private String hashidsSalt;
 
+    @Value("${adventurergroups.cursor.salt:cursor}")
+    private String cursorHashidsSalt;
+
     @Bean
     public Hashids inviteTokenHashids()
     {
         return new Hashids(hashidsSalt, 8);
     }
+
+    @Bean
+    public Hashids cursorHashids()
+    {
+        return new Hashids(cursorHashidsSalt, 8);
+    }
 }
@@ -0,0 +1,183 @@
+package ktpweb.adventurergroups.config;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import ktpweb.adventurergroups.modelfilter.ViewFormat;
+import ktpweb.adventurergroups.modelfilter.ViewWriters;
+
+@Configuration
+public class JacksonConfiguration
+{
+    // The binary formats are configured the same way as Spring Boot's JSON
+    // ObjectMapper, so every format reads and writes the same DTO fields.
+    @Bean
+    public ViewWriters viewWriters(ObjectMapper objectMapper,
+        Jackson2ObjectMapperBuilder objectMapperBuilder,
+        @Value("${adventurergroups.viewwriters.maxSize:1100}") Long maxSize)
+    {
+        Map<ViewFormat, ObjectMapper> objectMappers = new EnumMap<>(
+            ViewFormat.class);
+
+        objectMappers.put(ViewFormat.JSON, objectMapper);
+        objectMappers.put(ViewFormat.SMILE,
+            objectMapperBuilder.factory(new SmileFactory()).build());
+        objectMappers.put(ViewFormat.CBOR,
+            objectMapperBuilder.factory(new CBORFactory()).build());
+
+        return new ViewWriters(objectMappers, maxSize);
+    }
+
+    // The converters below replace Spring's defaults for each format.
+    // Responses filtered through a MappingJacksonValue are written with the
+    // view's compiled serializers, and every response varies by Accept.
+    // Request bodies are read as usual.
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(
+        ViewWriters viewWriters)
+    {
+        return new MappingJackson2HttpMessageConverter(
+            viewWriters.getObjectMapper(ViewFormat.JSON))
+        {
+            @Override
+            protected void writeInternal(Object object, Type type,
+                HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException
+            {
+                if (!writeView(viewWriters, ViewFormat.JSON, object,
+                    outputMessage))
+                {
+                    super.writeInternal(object, type, outputMessage);
+                }
+            }
+
+            @Override
+            protected void addDefaultHeaders(HttpHeaders headers,
+                Object object, MediaType contentType) throws IOException
+            {
+                super.addDefaultHeaders(headers, object, contentType);
+                addVary(headers);
+            }
+        };
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter mappingJackson2SmileHttpMessageConverter(
+        ViewWriters viewWriters)
+    {
+        return new MappingJackson2SmileHttpMessageConverter(
+            viewWriters.getObjectMapper(ViewFormat.SMILE))
+        {
+            @Override
+            protected void writeInternal(Object object, Type type,
+                HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException
+            {
+                if (!writeView(viewWriters, ViewFormat.SMILE, object,
+                    outputMessage))
+                {
+                    super.writeInternal(object, type, outputMessage);
+                }
+            }
+
+            @Override
+            protected void addDefaultHeaders(HttpHeaders headers,
+                Object object, MediaType contentType) throws IOException
+            {
+                super.addDefaultHeaders(headers, object, contentType);
+                addVary(headers);
+            }
+        };
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter mappingJackson2CborHttpMessageConverter(
+        ViewWriters viewWriters)
+    {
+        return new MappingJackson2CborHttpMessageConverter(
+            viewWriters.getObjectMapper(ViewFormat.CBOR))
+        {
+            @Override
+            protected void writeInternal(Object object, Type type,
+                HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException
+            {
+                if (!writeView(viewWriters, ViewFormat.CBOR, object,
+                    outputMessage))
+                {
+                    super.writeInternal(object, type, outputMessage);
+                }
+            }
+
+            @Override
+            protected void addDefaultHeaders(HttpHeaders headers,
+                Object object, MediaType contentType) throws IOException
+            {
+                super.addDefaultHeaders(headers, object, contentType);
+                addVary(headers);
+            }
+        };
+    }
+
+    // The format written depends on the Accept header, so shared caches must
+    // not answer one format's request with another's bytes.
+    private static void addVary(HttpHeaders headers)
+    {
+        if (!headers.getVary().contains(HttpHeaders.ACCEPT))
+        {
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+    }
+
+    // Returns false if the object is not a filtered view, leaving it to the
+    // converter's own writer.
+    private static boolean writeView(ViewWriters viewWriters,
+        ViewFormat format, Object object, HttpOutputMessage outputMessage)
+        throws IOException
+    {
+        if (!(object instanceof MappingJacksonValue)
+            || ((MappingJacksonValue) object).getFilters() == null
+            || ((MappingJacksonValue) object).getSerializationView() != null)
+        {
+            return false;
+        }
+
+        MappingJacksonValue container = (MappingJacksonValue) object;
+
+        try
+        {
+            viewWriters.getWriter(container.getFilters(), format).writeValue(
+                StreamUtils.nonClosing(outputMessage.getBody()),
+                container.getValue());
+        }
+        catch (JsonProcessingException ex)
+        {
+            throw new HttpMessageNotWritableException(
+                "Could not write " + format + ": " + ex.getOriginalMessage(),
+                ex);
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,79 @@
+package ktpweb.adventurergroups.config;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import ktpweb.adventurergroups.service.SubdomainService;
+
+// Resolves the Instance a request was addressed to from its Host header, and
+// stores the Instance id as a request attribute for the controllers.
+@Component
+public class SubdomainFilter extends OncePerRequestFilter
+{
+    public static final String INSTANCE_ID_ATTRIBUTE =
+        "adventurergroups.instanceId";
+
+    @Autowired
+    private SubdomainService subdomainService;
+
+    @Value("${adventurergroups.baseDomain:}")
+    private String baseDomain;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+        HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException
+    {
+        Long instanceId = subdomainService
+            .resolveInstanceId(getSubdomain(request.getServerName()));
+
+        if (instanceId != null)
+        {
+            request.setAttribute(INSTANCE_ID_ATTRIBUTE, instanceId);
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    // With a base domain configured, only its direct subdomains are routed.
+    // Otherwise the leftmost label of any dotted host name is used.
+    private String getSubdomain(String host)
+    {
+        if (!StringUtils.hasText(host))
+        {
+            return null;
+        }
+
+        host = host.toLowerCase(Locale.ROOT);
+
+        if (StringUtils.hasText(baseDomain))
+        {
+            String suffix = "." + baseDomain.toLowerCase(Locale.ROOT);
+
+            if (!host.endsWith(suffix))
+            {
+                return null;
+            }
+
+            String subdomain = host.substring(0,
+                host.length() - suffix.length());
+
+            return subdomain.contains(".") ? null : subdomain;
+        }
+
+        int dot = host.indexOf('.');
+
+        return dot > 0 ? host.substring(0, dot) : null;
+    }
+}
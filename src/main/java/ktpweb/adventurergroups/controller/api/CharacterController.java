@@ -1,11 +1,17 @@
 package ktpweb.adventurergroups.controller.api;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -13,20 +19,38 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import ktpweb.adventurergroups.exception.CharacterServiceException;
 import ktpweb.adventurergroups.exception.InstanceServiceException;
 import ktpweb.adventurergroups.exception.UserAccountServiceException;
 import ktpweb.adventurergroups.model.CharacterDto;
-import ktpweb.adventurergroups.model.CharacterGroupDto;
+import ktpweb.adventurergroups.model.CursorPage;
 import ktpweb.adventurergroups.model.InstanceDto;
 import ktpweb.adventurergroups.model.MaintainerDto;
+import ktpweb.adventurergroups.model.NameSuggestionDto;
 import ktpweb.adventurergroups.modelfilter.CharacterDtoFilters;
+import ktpweb.adventurergroups.modelfilter.FieldSet;
+import ktpweb.adventurergroups.modelfilter.ViewFormat;
+import ktpweb.adventurergroups.modelfilter.ViewWriters;
+import ktpweb.adventurergroups.repository.CharacterFilter;
+import ktpweb.adventurergroups.repository.InstanceContentVersion;
 import ktpweb.adventurergroups.security.User;
 import ktpweb.adventurergroups.service.CharacterService;
+import ktpweb.adventurergroups.service.FieldSetService;
 import ktpweb.adventurergroups.service.InstanceService;
+import ktpweb.adventurergroups.service.PaginationService;
+import ktpweb.adventurergroups.service.SnapshotService;
+import ktpweb.adventurergroups.service.SnapshotService.View;
 import ktpweb.adventurergroups.service.UserAccountService;
+import ktpweb.adventurergroups.util.ETagUtils;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -43,32 +67,259 @@ public class CharacterController
     @Autowired
     private InstanceService instanceService;
 
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private ViewWriters viewWriters;
+
+    @Autowired
+    private FieldSetService fieldSetService;
+
     //
     // Direct endpoints.
     //
 
     @GetMapping("/instances/{instanceId}/characters")
-    public ResponseEntity<MappingJacksonValue> retrieveCharacterList(
-        @PathVariable String instanceId)
+    public ResponseEntity<?> retrieveCharacterList(
+        @PathVariable String instanceId,
+        @RequestParam(required = false) String after,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String fields,
+        @RequestParam(required = false) String groupId,
+        @RequestParam(required = false) String maintainerId,
+        @RequestParam(required = false) Boolean hasMaintainer,
+        @RequestParam(required = false) Integer color,
+        @RequestParam(required = false) String sort, WebRequest request)
     {
         try
         {
-            InstanceDto instance = instanceService
-                .retrieveInstance(Long.parseLong(instanceId));
+            CharacterFilter filter = getFilter(groupId, maintainerId,
+                hasMaintainer, color, sort);
+
+            // The default first page is served from the snapshot cache.
+            if (after == null && limit == null && fields == null
+                && filter == null)
+            {
+                return SnapshotService.getResponse(
+                    snapshotService.getSnapshot(Long.parseLong(instanceId),
+                        View.CHARACTERS, ViewFormat.negotiate(request)),
+                    request);
+            }
+
+            // Filtered pages are read in the simple view only.
+            if (filter != null && fields != null)
+            {
+                throw new IllegalArgumentException(
+                    "Cannot select fields of a filtered list");
+            }
+
+            // Only the selected columns are read and written.
+            FieldSet fieldSet = fields != null
+                ? fieldSetService.getCharacterListFieldSet(fields)
+                : null;
+
+            if (ETagUtils.checkNotModified(request, characterService
+                .retrieveContentVersionForInstance(Long.parseLong(instanceId))))
+            {
+                return null;
+            }
+
+            CursorPage<CharacterDto> characters = filter != null
+                ? characterService.filterCharactersForInstance(
+                    Long.parseLong(instanceId), filter, after, limit)
+                : fieldSet != null
+                    ? characterService.retrieveCharactersForInstance(
+                        Long.parseLong(instanceId), fieldSet.getFields(),
+                        after, limit)
+                    : characterService.retrieveCharactersForInstance(
+                        Long.parseLong(instanceId), after, limit);
 
             MappingJacksonValue returnValue = new MappingJacksonValue(
-                instance.getCharacters());
+                characters.getItems());
+            returnValue.setFilters(fieldSet != null
+                ? fieldSet.getFilterProvider()
+                : CharacterDtoFilters.simpleFilterProvider);
+
+            return ResponseEntity.ok()
+                .headers(PaginationService.getPageHeaders(characters))
+                .body(returnValue);
+        }
+        catch (CharacterServiceException ex)
+        {
+            switch (ex.getCode())
+            {
+            case INSTANCE_NOT_FOUND:
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
+                    ex);
+            case INVALID_CURSOR:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null,
+                    ex);
+            default:
+                throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, null, ex);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // An unknown or empty fields or sort parameter.
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null,
+                ex);
+        }
+        catch (Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                null, ex);
+        }
+    }
+
+    // The whole list in one response, written while it is read from the
+    // database rather than collected first.
+    @GetMapping(value = "/instances/{instanceId}/characters",
+        params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamCharacterList(
+        @PathVariable String instanceId, WebRequest request)
+    {
+        try
+        {
+            Long id = Long.parseLong(instanceId);
+            ViewFormat format = ViewFormat.negotiate(request);
+
+            if (ETagUtils.checkNotModified(request,
+                characterService.retrieveContentVersionForInstance(id),
+                format))
+            {
+                return null;
+            }
+
+            ObjectWriter objectWriter = viewWriters
+                .getWriter(CharacterDtoFilters.simpleFilterProvider, format)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+            StreamingResponseBody body = outputStream -> {
+                try (SequenceWriter writer = objectWriter
+                    .writeValuesAsArray(StreamUtils.nonClosing(outputStream)))
+                {
+                    characterService.streamCharactersForInstance(id, writer);
+                }
+                catch (CharacterServiceException ex)
+                {
+                    throw new IOException(ex);
+                }
+            };
+
+            // Written without a message converter, so it varies by Accept
+            // itself.
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT)
+                .contentType(format.getMediaType()).body(body);
+        }
+        catch (CharacterServiceException ex)
+        {
+            switch (ex.getCode())
+            {
+            case INSTANCE_NOT_FOUND:
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
+                    ex);
+            default:
+                throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, null, ex);
+        }
+        catch (Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                null, ex);
+        }
+    }
+
+    // Characters ranked against the terms of q, answered from an in-memory
+    // index instead of the whole list.
+    @GetMapping("/instances/{instanceId}/characters/search")
+    public ResponseEntity<?> searchCharacters(@PathVariable String instanceId,
+        @RequestParam(required = false) String q,
+        @RequestParam(required = false) Integer limit, WebRequest request)
+    {
+        try
+        {
+            if (ETagUtils.checkNotModified(request, characterService
+                .retrieveContentVersionForInstance(Long.parseLong(instanceId))))
+            {
+                return null;
+            }
+
+            List<CharacterDto> characters = characterService
+                .searchCharactersForInstance(Long.parseLong(instanceId), q,
+                    limit);
+
+            MappingJacksonValue returnValue = new MappingJacksonValue(
+                characters);
             returnValue.setFilters(CharacterDtoFilters.simpleFilterProvider);
 
             return ResponseEntity.ok(returnValue);
         }
-        catch (InstanceServiceException ex)
+        catch (CharacterServiceException ex)
         {
             switch (ex.getCode())
             {
             case INSTANCE_NOT_FOUND:
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
                     ex);
+            case INVALID_QUERY:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null,
+                    ex);
+            default:
+                throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, null, ex);
+        }
+        catch (Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                null, ex);
+        }
+    }
+
+    // Character and Character Group names starting with the prefix, for the
+    // editor's suggestions while typing.
+    @GetMapping("/instances/{instanceId}/names")
+    public ResponseEntity<List<NameSuggestionDto>> completeNames(
+        @PathVariable String instanceId,
+        @RequestParam(required = false) String prefix,
+        @RequestParam(required = false) Integer limit, WebRequest request)
+    {
+        try
+        {
+            if (ETagUtils.checkNotModified(request, characterService
+                .retrieveContentVersionForInstance(Long.parseLong(instanceId))))
+            {
+                return null;
+            }
+
+            return ResponseEntity.ok(characterService.completeNamesForInstance(
+                Long.parseLong(instanceId), prefix, limit));
+        }
+        catch (CharacterServiceException ex)
+        {
+            switch (ex.getCode())
+            {
+            case INSTANCE_NOT_FOUND:
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
+                    ex);
+            case INVALID_QUERY:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null,
+                    ex);
             default:
                 throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
@@ -132,12 +383,85 @@ public class CharacterController
         }
     }
 
+    // Creates the characters without an id and updates the rest, all or
+    // none. Only the instance's owner may do so, so ownership is checked once
+    // for the whole list.
+    @PostMapping("/instances/{instanceId}/characters/bulk")
+    public ResponseEntity<MappingJacksonValue> saveCharacters(
+        @PathVariable String instanceId,
+        @RequestBody List<CharacterDto> characters,
+        @AuthenticationPrincipal User authUser)
+    {
+        try
+        {
+            if (authUser == null || authUser.getId() == null
+                || !userAccountService.ownerOwnsInstance(authUser.getId(),
+                    Long.parseLong(instanceId)))
+            {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+            }
+
+            MappingJacksonValue returnValue = new MappingJacksonValue(
+                characterService.saveCharactersForInstance(
+                    Long.parseLong(instanceId), characters));
+            returnValue.setFilters(CharacterDtoFilters.listFilterProvider);
+
+            return ResponseEntity.ok(returnValue);
+        }
+        catch (CharacterServiceException ex)
+        {
+            switch (ex.getCode())
+            {
+            case INSTANCE_NOT_FOUND:
+            case CHARACTER_NOT_FOUND:
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
+                    ex);
+            case NULL_CHARACTER_OBJECT:
+            case MAINTAINER_NOT_FOUND:
+            case CHARACTER_GROUP_NOT_FOUND:
+            case TOO_MANY_CHARACTERS:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null,
+                    ex);
+            case VERSION_CONFLICT:
+                throw new ResponseStatusException(HttpStatus.CONFLICT, null,
+                    ex);
+            default:
+                throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, null, ex);
+        }
+        catch (Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                null, ex);
+        }
+    }
+
     @GetMapping("/instances/{instanceId}/characters/{characterId}")
     public ResponseEntity<MappingJacksonValue> retrieveCharacter(
-        @PathVariable String instanceId, @PathVariable String characterId)
+        @PathVariable String instanceId, @PathVariable String characterId,
+        WebRequest request)
     {
         try
         {
+            InstanceContentVersion version = characterService
+                .retrieveContentVersionForCharacter(
+                    Long.parseLong(characterId));
+
+            if (!version.getInstanceId().equals(Long.parseLong(instanceId)))
+            {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+
+            if (ETagUtils.checkNotModified(request, version))
+            {
+                return null;
+            }
+
             CharacterDto character = characterService
                 .retrieveCharacter(Long.parseLong(characterId));
 
@@ -224,8 +548,13 @@ public class CharacterController
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
                     ex);
             case NULL_CHARACTER_OBJECT:
+            case MAINTAINER_NOT_FOUND:
+            case CHARACTER_GROUP_NOT_FOUND:
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null,
                     ex);
+            case VERSION_CONFLICT:
+                throw new ResponseStatusException(HttpStatus.CONFLICT, null,
+                    ex);
             default:
                 throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
@@ -305,32 +634,41 @@ public class CharacterController
 
     @GetMapping("/instances/{instanceId}/maintainers/{maintainerId}/characters")
     public ResponseEntity<MappingJacksonValue> retrieveCharacterListForMaintainer(
-        @PathVariable String instanceId, @PathVariable String maintainerId)
+        @PathVariable String instanceId, @PathVariable String maintainerId,
+        @RequestParam(required = false) String after,
+        @RequestParam(required = false) Integer limit, WebRequest request)
     {
         try
         {
-            MaintainerDto maintainer = userAccountService
-                .retrieveMaintainer(Long.parseLong(maintainerId));
-
-            if (!maintainer.getInstance().getId()
-                .equals(Long.parseLong(instanceId)))
+            if (ETagUtils.checkNotModified(request, characterService
+                .retrieveContentVersionForInstance(Long.parseLong(instanceId))))
             {
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+                return null;
             }
 
+            CursorPage<CharacterDto> characters = characterService.retrieveCharactersForMaintainer(
+                Long.parseLong(instanceId), Long.parseLong(maintainerId), after,
+                limit);
+
             MappingJacksonValue returnValue = new MappingJacksonValue(
-                maintainer.getCharacters());
+                characters.getItems());
             returnValue.setFilters(CharacterDtoFilters.simpleFilterProvider);
 
-            return ResponseEntity.ok(returnValue);
+            return ResponseEntity.ok()
+                .headers(PaginationService.getPageHeaders(characters))
+                .body(returnValue);
         }
-        catch (UserAccountServiceException ex)
+        catch (CharacterServiceException ex)
         {
             switch (ex.getCode())
             {
-            case ACCOUNT_NOT_FOUND:
+            case INSTANCE_NOT_FOUND:
+            case MAINTAINER_NOT_FOUND:
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
                     ex);
+            case INVALID_CURSOR:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null,
+                    ex);
             default:
                 throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
@@ -409,31 +747,41 @@ public class CharacterController
 
     @GetMapping("/instances/{instanceId}/groups/{groupId}/characters")
     public ResponseEntity<MappingJacksonValue> retrieveCharacterListForGroup(
-        @PathVariable String instanceId, @PathVariable String groupId)
+        @PathVariable String instanceId, @PathVariable String groupId,
+        @RequestParam(required = false) String after,
+        @RequestParam(required = false) Integer limit, WebRequest request)
     {
         try
         {
-            CharacterGroupDto group = characterService
-                .retrieveCharacterGroup(Long.parseLong(groupId));
-
-            if (!group.getInstance().getId().equals(Long.parseLong(instanceId)))
+            if (ETagUtils.checkNotModified(request, characterService
+                .retrieveContentVersionForInstance(Long.parseLong(instanceId))))
             {
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+                return null;
             }
 
+            CursorPage<CharacterDto> characters = characterService.retrieveCharactersForGroup(
+                Long.parseLong(instanceId), Long.parseLong(groupId), after,
+                limit);
+
             MappingJacksonValue returnValue = new MappingJacksonValue(
-                group.getCharacters());
+                characters.getItems());
             returnValue.setFilters(CharacterDtoFilters.simpleFilterProvider);
 
-            return ResponseEntity.ok(returnValue);
+            return ResponseEntity.ok()
+                .headers(PaginationService.getPageHeaders(characters))
+                .body(returnValue);
         }
         catch (CharacterServiceException ex)
         {
             switch (ex.getCode())
             {
+            case INSTANCE_NOT_FOUND:
             case CHARACTER_GROUP_NOT_FOUND:
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
                     ex);
+            case INVALID_CURSOR:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null,
+                    ex);
             default:
                 throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
@@ -449,4 +797,49 @@ public class CharacterController
                 null, ex);
         }
     }
+
+    // The filter for the list parameters, or null if none is given. The sort
+    // is an attribute name, prefixed with "-" for descending order.
+    private static CharacterFilter getFilter(String groupId,
+        String maintainerId, Boolean hasMaintainer, Integer color, String sort)
+        throws IllegalArgumentException
+    {
+        if (groupId == null && maintainerId == null && hasMaintainer == null
+            && color == null && sort == null)
+        {
+            return null;
+        }
+
+        CharacterFilter filter = new CharacterFilter();
+
+        // Bad ids are a bad request here, rather than a missing resource.
+        try
+        {
+            filter.setCharacterGroupId(
+                groupId != null ? Long.parseLong(groupId) : null);
+            filter.setMaintainerId(
+                maintainerId != null ? Long.parseLong(maintainerId) : null);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException(ex);
+        }
+        filter.setHasMaintainer(hasMaintainer);
+        filter.setColor(color);
+
+        if (sort != null)
+        {
+            filter.setDescending(sort.startsWith("-"));
+
+            String attribute = filter.isDescending() ? sort.substring(1)
+                : sort;
+
+            filter.setSort(Arrays.stream(CharacterFilter.Sort.values())
+                .filter(s -> s.getAttribute().equals(attribute)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                    "Unknown sort: " + sort)));
+        }
+
+        return filter;
+    }
 }
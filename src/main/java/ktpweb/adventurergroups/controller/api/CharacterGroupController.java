@@ -13,17 +13,26 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import ktpweb.adventurergroups.exception.CharacterServiceException;
 import ktpweb.adventurergroups.exception.InstanceServiceException;
 import ktpweb.adventurergroups.model.CharacterGroupDto;
+import ktpweb.adventurergroups.model.CursorPage;
 import ktpweb.adventurergroups.model.InstanceDto;
 import ktpweb.adventurergroups.modelfilter.CharacterGroupDtoFilters;
+import ktpweb.adventurergroups.modelfilter.ViewFormat;
+import ktpweb.adventurergroups.repository.InstanceContentVersion;
 import ktpweb.adventurergroups.security.User;
 import ktpweb.adventurergroups.service.CharacterService;
 import ktpweb.adventurergroups.service.InstanceService;
+import ktpweb.adventurergroups.service.PaginationService;
+import ktpweb.adventurergroups.service.SnapshotService;
+import ktpweb.adventurergroups.service.SnapshotService.View;
 import ktpweb.adventurergroups.service.UserAccountService;
+import ktpweb.adventurergroups.util.ETagUtils;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -40,33 +49,59 @@ public class CharacterGroupController
     @Autowired
     private InstanceService instanceService;
 
+    @Autowired
+    private SnapshotService snapshotService;
+
     //
     // Direct endpoints.
     //
 
     @GetMapping("/instances/{instanceId}/groups")
-    public ResponseEntity<MappingJacksonValue> retrieveGroupList(
-        @PathVariable String instanceId)
+    public ResponseEntity<?> retrieveGroupList(
+        @PathVariable String instanceId,
+        @RequestParam(required = false) String after,
+        @RequestParam(required = false) Integer limit, WebRequest request)
     {
         try
         {
-            InstanceDto instance = instanceService
-                .retrieveInstance(Long.parseLong(instanceId));
+            // The default first page is served from the snapshot cache.
+            if (after == null && limit == null)
+            {
+                return SnapshotService.getResponse(
+                    snapshotService.getSnapshot(Long.parseLong(instanceId),
+                        View.CHARACTER_GROUPS, ViewFormat.negotiate(request)),
+                    request);
+            }
+
+            if (ETagUtils.checkNotModified(request, characterService
+                .retrieveContentVersionForInstance(Long.parseLong(instanceId))))
+            {
+                return null;
+            }
+
+            CursorPage<CharacterGroupDto> groups = characterService
+                .retrieveCharacterGroupsForInstance(Long.parseLong(instanceId),
+                    after, limit);
 
             MappingJacksonValue returnValue = new MappingJacksonValue(
-                instance.getCharacterGroups());
+                groups.getItems());
             returnValue
                 .setFilters(CharacterGroupDtoFilters.simpleFilterProvider);
 
-            return ResponseEntity.ok(returnValue);
+            return ResponseEntity.ok()
+                .headers(PaginationService.getPageHeaders(groups))
+                .body(returnValue);
         }
-        catch (InstanceServiceException ex)
+        catch (CharacterServiceException ex)
         {
             switch (ex.getCode())
             {
             case INSTANCE_NOT_FOUND:
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
                     ex);
+            case INVALID_CURSOR:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null,
+                    ex);
             default:
                 throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
@@ -133,10 +168,25 @@ public class CharacterGroupController
 
     @GetMapping("/instances/{instanceId}/groups/{groupId}")
     public ResponseEntity<MappingJacksonValue> retrieveGroup(
-        @PathVariable String instanceId, @PathVariable String groupId)
+        @PathVariable String instanceId, @PathVariable String groupId,
+        WebRequest request)
     {
         try
         {
+            InstanceContentVersion version = characterService
+                .retrieveContentVersionForCharacterGroup(
+                    Long.parseLong(groupId));
+
+            if (!version.getInstanceId().equals(Long.parseLong(instanceId)))
+            {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+            }
+
+            if (ETagUtils.checkNotModified(request, version))
+            {
+                return null;
+            }
+
             CharacterGroupDto group = characterService
                 .retrieveCharacterGroup(Long.parseLong(groupId));
 
@@ -211,6 +261,9 @@ public class CharacterGroupController
             case CHARACTER_GROUP_NOT_FOUND:
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
                     ex);
+            case VERSION_CONFLICT:
+                throw new ResponseStatusException(HttpStatus.CONFLICT, null,
+                    ex);
             default:
                 throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
@@ -229,7 +282,9 @@ public class CharacterGroupController
 
     @DeleteMapping("/instances/{instanceId}/groups/{groupId}")
     public ResponseEntity<?> deleteGroup(@PathVariable String instanceId,
-        @PathVariable String groupId, @AuthenticationPrincipal User authUser)
+        @PathVariable String groupId,
+        @RequestParam(required = false) Long reassignTo,
+        @AuthenticationPrincipal User authUser)
     {
         try
         {
@@ -249,8 +304,8 @@ public class CharacterGroupController
                 throw new ResponseStatusException(HttpStatus.FORBIDDEN);
             }
 
-            // Delete it and return 204.
-            characterService.deleteCharacterGroup(group.getId());
+            // Delete it, moving its characters if asked to, and return 204.
+            characterService.deleteCharacterGroup(group.getId(), reassignTo);
 
             return ResponseEntity.noContent().build();
         }
@@ -261,6 +316,9 @@ public class CharacterGroupController
             case CHARACTER_GROUP_NOT_FOUND:
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
                     ex);
+            case INVALID_CHARACTER_GROUP_OBJECT:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    null, ex);
             default:
                 throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
@@ -1,5 +1,7 @@
 package ktpweb.adventurergroups.controller.api;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -11,17 +13,28 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
+import ktpweb.adventurergroups.config.SubdomainFilter;
 import ktpweb.adventurergroups.exception.InstanceServiceException;
 import ktpweb.adventurergroups.exception.UserAccountServiceException;
+import ktpweb.adventurergroups.model.CursorPage;
 import ktpweb.adventurergroups.model.InstanceDto;
+import ktpweb.adventurergroups.model.InstanceOverviewDto;
+import ktpweb.adventurergroups.model.InstanceStatisticsDto;
 import ktpweb.adventurergroups.model.OwnerDto;
 import ktpweb.adventurergroups.modelfilter.InstanceDtoFilters;
+import ktpweb.adventurergroups.modelfilter.ViewFormat;
 import ktpweb.adventurergroups.security.User;
 import ktpweb.adventurergroups.service.InstanceService;
+import ktpweb.adventurergroups.service.PaginationService;
+import ktpweb.adventurergroups.service.SnapshotService;
+import ktpweb.adventurergroups.service.SnapshotService.View;
 import ktpweb.adventurergroups.service.UserAccountService;
 import lombok.extern.slf4j.Slf4j;
 
@@ -36,23 +49,23 @@ public class InstanceController
     @Autowired
     private InstanceService instanceService;
 
+    @Autowired
+    private SnapshotService snapshotService;
+
     //
     // Direct endpoints.
     //
 
     @GetMapping("/instances/{instanceId}")
-    public ResponseEntity<MappingJacksonValue> retrieveInstance(
-        @PathVariable String instanceId)
+    public ResponseEntity<byte[]> retrieveInstance(
+        @PathVariable String instanceId, WebRequest request)
     {
         try
         {
-            InstanceDto instance = instanceService
-                .retrieveInstance(Long.parseLong(instanceId));
-
-            MappingJacksonValue returnValue = new MappingJacksonValue(instance);
-            returnValue.setFilters(InstanceDtoFilters.fullFilterProvider);
-
-            return ResponseEntity.ok(returnValue);
+            return SnapshotService.getResponse(
+                snapshotService.getSnapshot(Long.parseLong(instanceId),
+                    View.INSTANCE, ViewFormat.negotiate(request)),
+                request);
         }
         catch (InstanceServiceException ex)
         {
@@ -77,6 +90,44 @@ public class InstanceController
         }
     }
 
+    // The Instance addressed by the request's subdomain.
+    @GetMapping("/instance")
+    public ResponseEntity<byte[]> retrieveCurrentInstance(
+        @RequestAttribute(name = SubdomainFilter.INSTANCE_ID_ATTRIBUTE,
+            required = false) Long instanceId,
+        WebRequest request)
+    {
+        if (instanceId == null)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+
+        try
+        {
+            return SnapshotService.getResponse(
+                snapshotService.getSnapshot(instanceId, View.INSTANCE,
+                    ViewFormat.negotiate(request)),
+                request);
+        }
+        catch (InstanceServiceException ex)
+        {
+            switch (ex.getCode())
+            {
+            case INSTANCE_NOT_FOUND:
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
+                    ex);
+            default:
+                throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
+            }
+        }
+        catch (Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                null, ex);
+        }
+    }
+
     @PutMapping("/instances/{instanceId}")
     public ResponseEntity<MappingJacksonValue> updateInstance(
         @PathVariable String instanceId,
@@ -168,31 +219,124 @@ public class InstanceController
         }
     }
 
+    // Counts of the Instance's contents, for its Owner.
+    @GetMapping("/instances/{instanceId}/statistics")
+    public ResponseEntity<InstanceStatisticsDto> retrieveInstanceStatistics(
+        @PathVariable String instanceId,
+        @AuthenticationPrincipal User authUser)
+    {
+        try
+        {
+            if (authUser == null || authUser.getId() == null
+                || !userAccountService.ownerOwnsInstance(authUser.getId(),
+                    Long.parseLong(instanceId)))
+            {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+            }
+
+            return ResponseEntity.ok(instanceService
+                .retrieveStatisticsForInstance(Long.parseLong(instanceId)));
+        }
+        catch (InstanceServiceException ex)
+        {
+            switch (ex.getCode())
+            {
+            case INSTANCE_NOT_FOUND:
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
+                    ex);
+            default:
+                throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, null, ex);
+        }
+        catch (ResponseStatusException ex)
+        {
+            throw ex;
+        }
+        catch (Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                null, ex);
+        }
+    }
+
     //
     // Endpoints from /owners
     //
 
     @GetMapping("/owners/{ownerId}/instances")
     public ResponseEntity<MappingJacksonValue> retrieveInstanceListForOwner(
-        @PathVariable String ownerId)
+        @PathVariable String ownerId,
+        @RequestParam(required = false) String after,
+        @RequestParam(required = false) Integer limit)
     {
         try
         {
-            OwnerDto owner = userAccountService
-                .retrieveOwner(Long.parseLong(ownerId));
+            CursorPage<InstanceDto> instances = instanceService.retrieveInstancesForOwner(
+                Long.parseLong(ownerId), after, limit);
 
             MappingJacksonValue returnValue = new MappingJacksonValue(
-                owner.getInstances());
+                instances.getItems());
             returnValue.setFilters(InstanceDtoFilters.simpleFilterProvider);
 
-            return ResponseEntity.ok(returnValue);
+            return ResponseEntity.ok()
+                .headers(PaginationService.getPageHeaders(instances))
+                .body(returnValue);
         }
-        catch (UserAccountServiceException ex)
+        catch (InstanceServiceException ex)
         {
             switch (ex.getCode())
             {
-            case ACCOUNT_NOT_FOUND:
-            case INVALID_ROLE:
+            case OWNER_NOT_FOUND:
+            case INVALID_OWNER_ROLE:
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
+                    ex);
+            case INVALID_CURSOR:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null,
+                    ex);
+            default:
+                throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, null, ex);
+        }
+        catch (Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                null, ex);
+        }
+    }
+
+    // Every Instance of the Owner with the counts of its contents, in one
+    // request.
+    @GetMapping("/owners/{ownerId}/dashboard")
+    public ResponseEntity<List<InstanceOverviewDto>> retrieveDashboardForOwner(
+        @PathVariable String ownerId, @AuthenticationPrincipal User authUser)
+    {
+        try
+        {
+            if (authUser == null || authUser.getId() == null
+                || authUser.getId() != Long.parseLong(ownerId))
+            {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+            }
+
+            return ResponseEntity.ok(instanceService
+                .retrieveInstanceOverviewsForOwner(Long.parseLong(ownerId)));
+        }
+        catch (InstanceServiceException ex)
+        {
+            switch (ex.getCode())
+            {
+            case OWNER_NOT_FOUND:
+            case INVALID_OWNER_ROLE:
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
                     ex);
             default:
@@ -204,6 +348,10 @@ public class InstanceController
         {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, null, ex);
         }
+        catch (ResponseStatusException ex)
+        {
+            throw ex;
+        }
         catch (Exception ex)
         {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
@@ -13,17 +13,22 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import ktpweb.adventurergroups.exception.InstanceServiceException;
 import ktpweb.adventurergroups.exception.UserAccountServiceException;
+import ktpweb.adventurergroups.model.CursorPage;
 import ktpweb.adventurergroups.model.InstanceDto;
 import ktpweb.adventurergroups.model.MaintainerDto;
 import ktpweb.adventurergroups.model.UserAccountDto;
 import ktpweb.adventurergroups.modelfilter.MaintainerDtoFilters;
 import ktpweb.adventurergroups.security.User;
 import ktpweb.adventurergroups.service.InstanceService;
+import ktpweb.adventurergroups.service.PaginationService;
 import ktpweb.adventurergroups.service.UserAccountService;
+import ktpweb.adventurergroups.util.ETagUtils;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -43,26 +48,40 @@ public class MaintainerAccountController
 
     @GetMapping("/instances/{instanceId}/maintainers")
     public ResponseEntity<MappingJacksonValue> retrieveMaintainerList(
-        @PathVariable String instanceId)
+        @PathVariable String instanceId,
+        @RequestParam(required = false) String after,
+        @RequestParam(required = false) Integer limit, WebRequest request)
     {
         try
         {
-            InstanceDto instance = instanceService
-                .retrieveInstance(Long.parseLong(instanceId));
+            if (ETagUtils.checkNotModified(request, userAccountService
+                .retrieveContentVersionForInstance(Long.parseLong(instanceId))))
+            {
+                return null;
+            }
+
+            CursorPage<MaintainerDto> maintainers = userAccountService
+                .retrieveMaintainersForInstance(Long.parseLong(instanceId),
+                    after, limit);
 
             MappingJacksonValue returnValue = new MappingJacksonValue(
-                instance.getMaintainers());
+                maintainers.getItems());
             returnValue.setFilters(MaintainerDtoFilters.simpleFilterProvider);
 
-            return ResponseEntity.ok(returnValue);
+            return ResponseEntity.ok()
+                .headers(PaginationService.getPageHeaders(maintainers))
+                .body(returnValue);
         }
-        catch (InstanceServiceException ex)
+        catch (UserAccountServiceException ex)
         {
             switch (ex.getCode())
             {
             case INSTANCE_NOT_FOUND:
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, null,
                     ex);
+            case INVALID_CURSOR:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null,
+                    ex);
             default:
                 throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR, null, ex);
@@ -129,10 +148,18 @@ public class MaintainerAccountController
 
     @GetMapping("/instances/{instanceId}/maintainers/{maintainerId}")
     public ResponseEntity<MappingJacksonValue> retrieveMaintainer(
-        @PathVariable String instanceId, @PathVariable String maintainerId)
+        @PathVariable String instanceId, @PathVariable String maintainerId,
+        WebRequest request)
     {
         try
         {
+            if (ETagUtils.checkNotModified(request, userAccountService
+                .retrieveContentVersionForMaintainer(
+                    Long.parseLong(maintainerId))))
+            {
+                return null;
+            }
+
             MaintainerDto maintainer = userAccountService
                 .retrieveMaintainer(Long.parseLong(maintainerId));
 
@@ -5,9 +5,11 @@ import java.time.LocalDateTime;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -20,7 +22,11 @@ import lombok.Setter;
 public class AdminAccount
 {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "adminAccountIds")
+    @GenericGenerator(name = "adminAccountIds",
+        strategy = "ktpweb.adventurergroups.entity.PooledIdGenerator",
+        parameters = @Parameter(name = PooledIdGenerator.SEGMENT_VALUE_PARAM,
+            value = "admin_account"))
     @Setter(AccessLevel.NONE)
     private Long id;
 
@@ -6,10 +6,15 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -18,16 +23,27 @@ import lombok.Setter;
 
 // Character is a reserved keyword in some databases.
 @Entity(name = "characterobject")
+@NamedEntityGraph(name = "Character.full", attributeNodes = {
+        @NamedAttributeNode("instance"), @NamedAttributeNode("maintainer"),
+        @NamedAttributeNode("characterGroup") })
 @Getter
 @Setter
 @NoArgsConstructor
 public class Character
 {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "characterIds")
+    @GenericGenerator(name = "characterIds",
+        strategy = "ktpweb.adventurergroups.entity.PooledIdGenerator",
+        parameters = @Parameter(name = PooledIdGenerator.SEGMENT_VALUE_PARAM,
+            value = "characterobject"))
     @Setter(AccessLevel.NONE)
     private Long id;
 
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
     @Column(nullable = false)
     private Boolean deleted = false;
 
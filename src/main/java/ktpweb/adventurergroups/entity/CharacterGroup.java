@@ -7,14 +7,19 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
 import javax.persistence.OneToMany;
+import javax.persistence.Version;
 
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Where;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -22,16 +27,26 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
+@NamedEntityGraph(name = "CharacterGroup.full", attributeNodes = {
+        @NamedAttributeNode("instance"), @NamedAttributeNode("characters") })
 @Getter
 @Setter
 @NoArgsConstructor
 public class CharacterGroup
 {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "characterGroupIds")
+    @GenericGenerator(name = "characterGroupIds",
+        strategy = "ktpweb.adventurergroups.entity.PooledIdGenerator",
+        parameters = @Parameter(name = PooledIdGenerator.SEGMENT_VALUE_PARAM,
+            value = "character_group"))
     @Setter(AccessLevel.NONE)
     private Long id;
 
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "instance_id", nullable = false)
     private Instance instance;
@@ -49,6 +64,7 @@ public class CharacterGroup
 
     @OneToMany(mappedBy = "characterGroup", fetch = FetchType.LAZY)
     @Fetch(FetchMode.SUBSELECT)
+    @Where(clause = "deleted = false")
     private Set<Character> characters;
 
     // Logging
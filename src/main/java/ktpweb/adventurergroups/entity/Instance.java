@@ -7,14 +7,19 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
 import javax.persistence.OneToMany;
+import javax.persistence.Version;
 
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Where;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -22,16 +27,26 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
+@NamedEntityGraph(name = "Instance.full", attributeNodes = {
+        @NamedAttributeNode("owner"), @NamedAttributeNode("characters") })
 @Getter
 @Setter
 @NoArgsConstructor
 public class Instance
 {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "instanceIds")
+    @GenericGenerator(name = "instanceIds",
+        strategy = "ktpweb.adventurergroups.entity.PooledIdGenerator",
+        parameters = @Parameter(name = PooledIdGenerator.SEGMENT_VALUE_PARAM,
+            value = "instance"))
     @Setter(AccessLevel.NONE)
     private Long id;
 
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
     @Column(nullable = false)
     private Boolean active = true;
 
@@ -53,19 +68,31 @@ public class Instance
 
     @OneToMany(mappedBy = "parentInstance", fetch = FetchType.LAZY)
     @Fetch(FetchMode.SUBSELECT)
+    @Where(clause = "deleted = false")
     private Set<UserAccount> maintainers;
 
     @OneToMany(mappedBy = "instance", fetch = FetchType.LAZY)
     @Fetch(FetchMode.SUBSELECT)
+    @Where(clause = "deleted = false")
     private Set<Character> characters;
 
     @OneToMany(mappedBy = "instance", fetch = FetchType.LAZY)
     @Fetch(FetchMode.SUBSELECT)
+    @Where(clause = "deleted = false")
     private Set<CharacterGroup> characterGroups;
 
+    // Bumped, along with lastModifiedDate, by a bulk update whenever anything
+    // shown in the Instance's public views changes. Never written through the
+    // entity, so concurrent edits to the Instance's content do not conflict.
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Long contentVersion;
+
     // Logging
     private LocalDateTime createDate;
     private LocalDateTime deleteDate;
     private LocalDateTime lastActivateDate;
     private LocalDateTime lastDeactivateDate;
+
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime lastModifiedDate;
 }
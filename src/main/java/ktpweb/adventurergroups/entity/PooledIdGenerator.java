@@ -0,0 +1,40 @@
+package ktpweb.adventurergroups.entity;
+
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+// Id generator shared by every entity, backed by one row per entity in the
+// id_generator table, so it works the same on databases without sequences.
+//
+// Each trip to the table reserves a block of ids, handed out from memory by
+// the pooled-lo optimizer, which lets Hibernate batch inserts. The block size
+// is the adventurergroups.id.allocation_size Hibernate setting. Ids reserved
+// but unused when the application stops are skipped.
+public class PooledIdGenerator extends TableGenerator
+{
+    public static final String ALLOCATION_SIZE_SETTING =
+        "adventurergroups.id.allocation_size";
+
+    private static final String DEFAULT_ALLOCATION_SIZE = "50";
+
+    @Override
+    public void configure(Type type, Properties params,
+        ServiceRegistry serviceRegistry) throws MappingException
+    {
+        Object allocationSize = serviceRegistry
+            .getService(ConfigurationService.class).getSettings()
+            .get(ALLOCATION_SIZE_SETTING);
+
+        params.setProperty(TABLE_PARAM, "id_generator");
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        params.setProperty(INCREMENT_PARAM, allocationSize != null
+            ? allocationSize.toString() : DEFAULT_ALLOCATION_SIZE);
+
+        super.configure(type, params, serviceRegistry);
+    }
+}
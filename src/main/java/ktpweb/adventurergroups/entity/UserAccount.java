@@ -9,14 +9,20 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
 import javax.persistence.OneToMany;
+import javax.persistence.Version;
 
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Where;
 
 import ktpweb.adventurergroups.util.UserAccountUtils.UserAccountRoles;
 import lombok.AccessLevel;
@@ -25,16 +31,30 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = "UserAccount.owner", attributeNodes = {
+                @NamedAttributeNode("instances") }),
+        @NamedEntityGraph(name = "UserAccount.maintainer", attributeNodes = {
+                @NamedAttributeNode("parentInstance"),
+                @NamedAttributeNode("characters") }) })
 @Getter
 @Setter
 @NoArgsConstructor
 public class UserAccount
 {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "userAccountIds")
+    @GenericGenerator(name = "userAccountIds",
+        strategy = "ktpweb.adventurergroups.entity.PooledIdGenerator",
+        parameters = @Parameter(name = PooledIdGenerator.SEGMENT_VALUE_PARAM,
+            value = "user_account"))
     @Setter(AccessLevel.NONE)
     private Long id;
 
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
     @Column(nullable = false)
     private Boolean deleted = false;
 
@@ -55,6 +75,7 @@ public class UserAccount
     // Multi-instance (Owners)
     @OneToMany(mappedBy = "owner", fetch = FetchType.LAZY)
     @Fetch(FetchMode.SUBSELECT)
+    @Where(clause = "deleted = false")
     private Set<Instance> instances;
 
     // Single-instance (Maintainers)
@@ -64,6 +85,7 @@ public class UserAccount
 
     @OneToMany(mappedBy = "maintainer", fetch = FetchType.LAZY)
     @Fetch(FetchMode.SUBSELECT)
+    @Where(clause = "deleted = false")
     private Set<Character> characters;
 
     private String inviteToken;
@@ -43,5 +43,9 @@ public class CharacterServiceException extends Exception
         INVALID_MAINTAINER_OBJECT,
         CHARACTER_GROUP_NOT_FOUND,
         INVALID_CHARACTER_GROUP_OBJECT,
+        INVALID_CURSOR,
+        VERSION_CONFLICT,
+        TOO_MANY_CHARACTERS,
+        INVALID_QUERY,
     }
 }
\ No newline at end of file
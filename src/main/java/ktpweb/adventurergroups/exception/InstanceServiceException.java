@@ -40,6 +40,7 @@ public class InstanceServiceException extends Exception
         INVALID_OWNER_OBJECT,
         INVALID_OWNER_ROLE,
         INVALID_SUBDOMAINNAME,
-        INVALID_ACTIVE
+        INVALID_ACTIVE,
+        INVALID_CURSOR
     }
 }
\ No newline at end of file
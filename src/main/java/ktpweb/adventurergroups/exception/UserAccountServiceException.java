@@ -44,6 +44,7 @@ public class UserAccountServiceException extends Exception
         INVALID_CHARACTER_OBJECT,
         INSTANCE_NOT_FOUND,
         INVALID_INSTANCE_OBJECT,
-        INVALID_LOGIN_COMPLEXUSERNAME
+        INVALID_LOGIN_COMPLEXUSERNAME,
+        INVALID_CURSOR
     }
 }
\ No newline at end of file
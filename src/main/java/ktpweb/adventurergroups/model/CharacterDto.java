@@ -11,6 +11,7 @@ import lombok.Data;
 public class CharacterDto
 {
     private Long id;
+    private Long version;
 
     private String name;
     private String description;
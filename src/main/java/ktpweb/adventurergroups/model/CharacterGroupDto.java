@@ -12,6 +12,7 @@ import lombok.Data;
 public class CharacterGroupDto
 {
     private Long id;
+    private Long version;
 
     private String name;
     private String description;
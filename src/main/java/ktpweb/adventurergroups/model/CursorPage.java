@@ -0,0 +1,14 @@
+package ktpweb.adventurergroups.model;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class CursorPage<T>
+{
+    private List<T> items;
+
+    // Opaque token for the page after this one, or null if this is the last.
+    private String nextCursor;
+}
@@ -0,0 +1,29 @@
+package ktpweb.adventurergroups.model;
+
+import java.time.LocalDateTime;
+
+import lombok.Data;
+
+// One Instance on its Owner's dashboard: the Instance itself, without nested
+// objects, and the counts of its contents.
+@Data
+public class InstanceOverviewDto
+{
+    private Long id;
+
+    private Boolean active;
+
+    private String subdomainName;
+    private String displayName;
+
+    private Long characterCount;
+    private Long characterGroupCount;
+    private Long maintainerCount;
+    private Long registeredMaintainerCount;
+    private Long unregisteredMaintainerCount;
+
+    private LocalDateTime createDate;
+
+    // Last change to the Instance or anything in its public views.
+    private LocalDateTime lastModifiedDate;
+}
@@ -0,0 +1,23 @@
+package ktpweb.adventurergroups.model;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import lombok.Data;
+
+@Data
+public class InstanceStatisticsDto
+{
+    private Long instanceId;
+
+    private Long characterCount;
+    private Long characterGroupCount;
+    private Long maintainerCount;
+    private Long registeredMaintainerCount;
+    private Long unregisteredMaintainerCount;
+
+    // Characters in each Character Group, by group id.
+    private Map<Long, Long> characterGroupCounts;
+
+    private LocalDateTime updateDate;
+}
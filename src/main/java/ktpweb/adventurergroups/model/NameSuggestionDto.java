@@ -0,0 +1,21 @@
+package ktpweb.adventurergroups.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NameSuggestionDto
+{
+    public static enum Type
+    {
+        CHARACTER, CHARACTER_GROUP
+    }
+
+    private Type type;
+    private Long id;
+
+    private String name;
+}
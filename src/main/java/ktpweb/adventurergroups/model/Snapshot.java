@@ -0,0 +1,24 @@
+package ktpweb.adventurergroups.model;
+
+import ktpweb.adventurergroups.modelfilter.ViewFormat;
+import ktpweb.adventurergroups.repository.InstanceContentVersion;
+import lombok.Value;
+
+// A public view of an Instance, serialized and filtered ahead of time.
+@Value
+public class Snapshot
+{
+    private ViewFormat format;
+
+    private byte[] body;
+
+    // The body gzipped, or null if it was too small to be worth it.
+    private byte[] gzipBody;
+
+    // Cursor for the page after this one, for list views.
+    private String nextCursor;
+
+    // The Instance's content version, read before the body, so the body is
+    // never older than the ETag derived from it.
+    private InstanceContentVersion version;
+}
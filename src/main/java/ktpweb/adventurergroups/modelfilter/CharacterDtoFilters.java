@@ -1,7 +1,9 @@
 package ktpweb.adventurergroups.modelfilter;
 
+import java.util.Arrays;
+import java.util.Set;
+
 import com.fasterxml.jackson.databind.ser.FilterProvider;
-import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 
 public class CharacterDtoFilters
@@ -10,23 +12,41 @@ public class CharacterDtoFilters
     protected static String[] simpleFilter = { "id", "name", "description",
             "colorPrimary", "colorSecondary", };
 
-    protected static String[] fullFilter = { "id", "name", "description",
-            "colorPrimary", "colorSecondary", "maintainer", "createDate",
-            "instance", "characterGroup" };
+    protected static String[] fullFilter = { "id", "version", "name",
+            "description", "colorPrimary", "colorSecondary", "maintainer",
+            "createDate", "instance", "characterGroup" };
+
+    // Fields a client may select on Character lists: the full view's own
+    // columns, without the nested objects.
+    protected static String[] listFieldsFilter = { "id", "version", "name",
+            "description", "colorPrimary", "colorSecondary", "createDate" };
 
     public static FilterProvider simpleFilterProvider = new SimpleFilterProvider()
-        .addFilter("characterFilter",
-            SimpleBeanPropertyFilter.filterOutAllExcept(simpleFilter));
+        .addFilter("characterFilter", ViewFilter.including(simpleFilter));
+
+    // The Character's own columns, for results whose nested objects the
+    // client already has.
+    public static FilterProvider listFilterProvider = new SimpleFilterProvider()
+        .addFilter("characterFilter", ViewFilter.including(listFieldsFilter));
 
     public static FilterProvider fullFilterProvider = new SimpleFilterProvider()
-        .addFilter("characterFilter",
-            SimpleBeanPropertyFilter.filterOutAllExcept(fullFilter))
+        .addFilter("characterFilter", ViewFilter.including(fullFilter))
         .addFilter("maintainerFilter",
-            SimpleBeanPropertyFilter
-                .filterOutAllExcept(MaintainerDtoFilters.simpleFilter))
+            ViewFilter.including(MaintainerDtoFilters.simpleFilter))
         .addFilter("instanceFilter",
-            SimpleBeanPropertyFilter
-                .filterOutAllExcept(InstanceDtoFilters.simpleFilter))
-        .addFilter("characterGroupFilter", SimpleBeanPropertyFilter
-            .filterOutAllExcept(CharacterGroupDtoFilters.simpleFilter));
+            ViewFilter.including(InstanceDtoFilters.simpleFilter))
+        .addFilter("characterGroupFilter",
+            ViewFilter.including(CharacterGroupDtoFilters.simpleFilter));
+
+    public static boolean isListField(String field)
+    {
+        return Arrays.asList(listFieldsFilter).contains(field);
+    }
+
+    public static FieldSet listFieldSet(Set<String> fields)
+    {
+        return new FieldSet(fields, new ViewFilterProvider().addFilter(
+            "characterFilter",
+            ViewFilter.including(fields.toArray(new String[0]))));
+    }
 }
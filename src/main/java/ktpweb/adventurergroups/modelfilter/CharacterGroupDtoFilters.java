@@ -1,7 +1,6 @@
 package ktpweb.adventurergroups.modelfilter;
 
 import com.fasterxml.jackson.databind.ser.FilterProvider;
-import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 
 public class CharacterGroupDtoFilters
@@ -9,19 +8,17 @@ public class CharacterGroupDtoFilters
 
     protected static String[] simpleFilter = { "id", "name" };
 
-    protected static String[] fullFilter = { "id", "name", "description",
-            "colorPrimary", "createDate", "instance", "characters" };
+    protected static String[] fullFilter = { "id", "version", "name",
+            "description", "colorPrimary", "createDate", "instance",
+            "characters" };
 
     public static FilterProvider simpleFilterProvider = new SimpleFilterProvider()
-        .addFilter("characterGroupFilter",
-            SimpleBeanPropertyFilter.filterOutAllExcept(simpleFilter));
+        .addFilter("characterGroupFilter", ViewFilter.including(simpleFilter));
 
     public static FilterProvider fullFilterProvider = new SimpleFilterProvider()
-        .addFilter("characterGroupFilter",
-            SimpleBeanPropertyFilter.filterOutAllExcept(fullFilter))
+        .addFilter("characterGroupFilter", ViewFilter.including(fullFilter))
         .addFilter("instanceFilter",
-            SimpleBeanPropertyFilter
-                .filterOutAllExcept(InstanceDtoFilters.simpleFilter))
-        .addFilter("characterFilter", SimpleBeanPropertyFilter
-            .filterOutAllExcept(CharacterDtoFilters.simpleFilter));
+            ViewFilter.including(InstanceDtoFilters.simpleFilter))
+        .addFilter("characterFilter",
+            ViewFilter.including(CharacterDtoFilters.simpleFilter));
 }
@@ -0,0 +1,17 @@
+package ktpweb.adventurergroups.modelfilter;
+
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+
+import lombok.Value;
+
+// A client-selected subset of a DTO's fields, with the filters that write
+// only those fields. Built and cached by FieldSetService.
+@Value
+public class FieldSet
+{
+    private Set<String> fields;
+
+    private FilterProvider filterProvider;
+}
@@ -1,7 +1,6 @@
 package ktpweb.adventurergroups.modelfilter;
 
 import com.fasterxml.jackson.databind.ser.FilterProvider;
-import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 
 public class InstanceDtoFilters
@@ -16,21 +15,16 @@ public class InstanceDtoFilters
             "characterGroups" };
 
     public static FilterProvider simpleFilterProvider = new SimpleFilterProvider()
-        .addFilter("instanceFilter",
-            SimpleBeanPropertyFilter.filterOutAllExcept(simpleFilter));
+        .addFilter("instanceFilter", ViewFilter.including(simpleFilter));
 
     public static FilterProvider fullFilterProvider = new SimpleFilterProvider()
-        .addFilter("instanceFilter",
-            SimpleBeanPropertyFilter.filterOutAllExcept(fullFilter))
+        .addFilter("instanceFilter", ViewFilter.including(fullFilter))
         .addFilter("ownerFilter",
-            SimpleBeanPropertyFilter
-                .filterOutAllExcept(OwnerDtoFilters.simpleFilter))
+            ViewFilter.including(OwnerDtoFilters.simpleFilter))
         .addFilter("maintainerFilter",
-            SimpleBeanPropertyFilter
-                .filterOutAllExcept(MaintainerDtoFilters.simpleFilter))
+            ViewFilter.including(MaintainerDtoFilters.simpleFilter))
         .addFilter("characterFilter",
-            SimpleBeanPropertyFilter
-                .filterOutAllExcept(CharacterDtoFilters.simpleFilter))
-        .addFilter("characterGroupFilter", SimpleBeanPropertyFilter
-            .filterOutAllExcept(CharacterGroupDtoFilters.simpleFilter));
+            ViewFilter.including(CharacterDtoFilters.simpleFilter))
+        .addFilter("characterGroupFilter",
+            ViewFilter.including(CharacterGroupDtoFilters.simpleFilter));
 }
@@ -1,7 +1,6 @@
 package ktpweb.adventurergroups.modelfilter;
 
 import com.fasterxml.jackson.databind.ser.FilterProvider;
-import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 
 public class MaintainerDtoFilters
@@ -15,15 +14,12 @@ public class MaintainerDtoFilters
             "characters" };
 
     public static FilterProvider simpleFilterProvider = new SimpleFilterProvider()
-        .addFilter("maintainerFilter",
-            SimpleBeanPropertyFilter.filterOutAllExcept(simpleFilter));
+        .addFilter("maintainerFilter", ViewFilter.including(simpleFilter));
 
     public static FilterProvider fullFilterProvider = new SimpleFilterProvider()
-        .addFilter("maintainerFilter",
-            SimpleBeanPropertyFilter.filterOutAllExcept(fullFilter))
+        .addFilter("maintainerFilter", ViewFilter.including(fullFilter))
         .addFilter("instanceFilter",
-            SimpleBeanPropertyFilter
-                .filterOutAllExcept(InstanceDtoFilters.simpleFilter))
-        .addFilter("characterFilter", SimpleBeanPropertyFilter
-            .filterOutAllExcept(CharacterDtoFilters.simpleFilter));
+            ViewFilter.including(InstanceDtoFilters.simpleFilter))
+        .addFilter("characterFilter",
+            ViewFilter.including(CharacterDtoFilters.simpleFilter));
 }
@@ -1,7 +1,6 @@
 package ktpweb.adventurergroups.modelfilter;
 
 import com.fasterxml.jackson.databind.ser.FilterProvider;
-import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 
 public class OwnerDtoFilters
@@ -14,12 +13,10 @@ public class OwnerDtoFilters
             "email", "createDate", "instances" };
 
     public static FilterProvider simpleFilterProvider = new SimpleFilterProvider()
-        .addFilter("ownerFilter",
-            SimpleBeanPropertyFilter.filterOutAllExcept(simpleFilter));
+        .addFilter("ownerFilter", ViewFilter.including(simpleFilter));
 
     public static FilterProvider fullFilterProvider = new SimpleFilterProvider()
-        .addFilter("ownerFilter",
-            SimpleBeanPropertyFilter.filterOutAllExcept(fullFilter))
-        .addFilter("instanceFilter", SimpleBeanPropertyFilter
-            .filterOutAllExcept(InstanceDtoFilters.simpleFilter));
+        .addFilter("ownerFilter", ViewFilter.including(fullFilter))
+        .addFilter("instanceFilter",
+            ViewFilter.including(InstanceDtoFilters.simpleFilter));
 }
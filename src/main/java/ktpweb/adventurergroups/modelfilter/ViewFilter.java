@@ -0,0 +1,44 @@
+package ktpweb.adventurergroups.modelfilter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+
+// Includes only the named properties, like filterOutAllExcept, but can also
+// be asked which properties those are, so ViewWriters can apply it once when
+// building a serializer instead of on every write.
+public class ViewFilter extends SimpleBeanPropertyFilter.FilterExceptFilter
+{
+    private static final long serialVersionUID = 1L;
+
+    public ViewFilter(String... properties)
+    {
+        super(new HashSet<>(Arrays.asList(properties)));
+    }
+
+    public static ViewFilter including(String... properties)
+    {
+        return new ViewFilter(properties);
+    }
+
+    public boolean includes(String propertyName)
+    {
+        return _propertiesToInclude.contains(propertyName);
+    }
+
+    // Equal filters include the same properties, so ViewFilterProviders
+    // holding them are equal too.
+    @Override
+    public boolean equals(Object other)
+    {
+        return other instanceof ViewFilter && _propertiesToInclude
+            .equals(((ViewFilter) other)._propertiesToInclude);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return _propertiesToInclude.hashCode();
+    }
+}
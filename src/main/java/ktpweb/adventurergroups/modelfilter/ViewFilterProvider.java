@@ -0,0 +1,40 @@
+package ktpweb.adventurergroups.modelfilter;
+
+import java.util.Objects;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+// A SimpleFilterProvider equal to any other holding equal filters, for the
+// providers built per request, so one rebuilt after its FieldSet was evicted
+// finds the writers ViewWriters compiled for the previous one. Must not be
+// changed once in use.
+public class ViewFilterProvider extends SimpleFilterProvider
+{
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other)
+        {
+            return true;
+        }
+
+        if (other == null || other.getClass() != getClass())
+        {
+            return false;
+        }
+
+        ViewFilterProvider provider = (ViewFilterProvider) other;
+
+        return _filtersById.equals(provider._filtersById)
+            && Objects.equals(_defaultFilter, provider._defaultFilter)
+            && _cfgFailOnUnknownId == provider._cfgFailOnUnknownId;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(_filtersById, _defaultFilter, _cfgFailOnUnknownId);
+    }
+}
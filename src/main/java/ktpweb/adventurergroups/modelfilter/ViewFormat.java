@@ -0,0 +1,76 @@
+package ktpweb.adventurergroups.modelfilter;
+
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import lombok.Getter;
+
+// The encodings the API can write its views in, chosen by the Accept header.
+@Getter
+public enum ViewFormat
+{
+    // In the order Spring's message converters are tried, so a wildcard
+    // picks the same format here as it does there.
+    JSON(MediaType.APPLICATION_JSON, null),
+    SMILE(new MediaType("application", "x-jackson-smile"), "smile"),
+    CBOR(MediaType.APPLICATION_CBOR, "cbor");
+
+    private final MediaType mediaType;
+
+    // Distinguishes the format's ETags from JSON's, which have none.
+    private final String tag;
+
+    private ViewFormat(MediaType mediaType, String tag)
+    {
+        this.mediaType = mediaType;
+        this.tag = tag;
+    }
+
+    // The format the request's message converter will write. Requests
+    // without a usable Accept header get JSON.
+    public static ViewFormat negotiate(WebRequest request)
+    {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+
+        if (!StringUtils.hasText(accept))
+        {
+            return JSON;
+        }
+
+        List<MediaType> acceptedTypes;
+
+        try
+        {
+            acceptedTypes = MediaType.parseMediaTypes(accept);
+        }
+        catch (InvalidMediaTypeException ex)
+        {
+            return JSON;
+        }
+
+        MediaType.sortBySpecificityAndQuality(acceptedTypes);
+
+        for (MediaType acceptedType : acceptedTypes)
+        {
+            if (acceptedType.getQualityValue() == 0)
+            {
+                continue;
+            }
+
+            for (ViewFormat format : values())
+            {
+                if (acceptedType.isCompatibleWith(format.mediaType))
+                {
+                    return format;
+                }
+            }
+        }
+
+        return JSON;
+    }
+}
@@ -0,0 +1,144 @@
+package ktpweb.adventurergroups.modelfilter;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerBuilder;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.PropertyFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Serializers compiled for each view in the *DtoFilters classes.
+ *
+ * Writing through a FilterProvider asks its filter about every property of
+ * every object. Here each provider gets its own copy of the ObjectMapper,
+ * whose bean serializers are built with only the properties the view's
+ * ViewFilters include and no filter at all, so the output is the same but
+ * the check is made once per DTO type instead of once per field.
+ *
+ * Each ViewFormat has its own ObjectMapper, and so its own writers. A writer
+ * holds on to its provider, so they are kept in caches bounded by size,
+ * keyed by the provider's equality: the static views by identity, the
+ * ViewFilterProviders of client-selected field sets by their filters.
+ */
+public class ViewWriters
+{
+    private final Map<ViewFormat, ObjectMapper> objectMappers;
+
+    private final Map<ViewFormat, Cache<FilterProvider, ObjectWriter>> writers =
+        new EnumMap<>(ViewFormat.class);
+
+    public ViewWriters(Map<ViewFormat, ObjectMapper> objectMappers,
+        long maxSize)
+    {
+        this.objectMappers = new EnumMap<>(objectMappers);
+
+        for (ViewFormat format : this.objectMappers.keySet())
+        {
+            writers.put(format,
+                Caffeine.newBuilder().maximumSize(maxSize).build());
+        }
+    }
+
+    public ObjectMapper getObjectMapper(ViewFormat format)
+    {
+        return objectMappers.get(format);
+    }
+
+    public ObjectWriter getWriter(FilterProvider filters)
+    {
+        return getWriter(filters, ViewFormat.JSON);
+    }
+
+    public ObjectWriter getWriter(FilterProvider filters, ViewFormat format)
+    {
+        return writers.get(format).get(filters,
+            f -> compile(objectMappers.get(format), f));
+    }
+
+    private static ObjectWriter compile(ObjectMapper objectMapper,
+        FilterProvider filters)
+    {
+        ObjectMapper viewMapper = objectMapper.copy();
+
+        viewMapper.setSerializerFactory(viewMapper.getSerializerFactory()
+            .withSerializerModifier(new ViewSerializerModifier(filters)));
+
+        // Filters that are not ViewFilters are still applied as usual.
+        return viewMapper.writer(filters);
+    }
+
+    private static class ViewSerializerModifier extends BeanSerializerModifier
+    {
+        private final FilterProvider filters;
+
+        ViewSerializerModifier(FilterProvider filters)
+        {
+            this.filters = filters;
+        }
+
+        @Override
+        public BeanSerializerBuilder updateBuilder(SerializationConfig config,
+            BeanDescription beanDesc, BeanSerializerBuilder builder)
+        {
+            if (builder.getFilterId() == null)
+            {
+                return builder;
+            }
+
+            PropertyFilter filter = filters
+                .findPropertyFilter(builder.getFilterId(), null);
+
+            if (!(filter instanceof ViewFilter))
+            {
+                return builder;
+            }
+
+            ViewFilter viewFilter = (ViewFilter) filter;
+
+            // The per-view variants, when present, line up with the
+            // properties and must be trimmed the same way.
+            List<BeanPropertyWriter> allProperties = builder.getProperties();
+            BeanPropertyWriter[] allFiltered = builder.getFilteredProperties();
+
+            List<BeanPropertyWriter> properties = new ArrayList<>();
+            List<BeanPropertyWriter> filtered = new ArrayList<>();
+
+            for (int i = 0; i < allProperties.size(); i++)
+            {
+                if (viewFilter.includes(allProperties.get(i).getName()))
+                {
+                    properties.add(allProperties.get(i));
+
+                    if (allFiltered != null)
+                    {
+                        filtered.add(allFiltered[i]);
+                    }
+                }
+            }
+
+            builder.setFilteredProperties(null);
+            builder.setProperties(properties);
+
+            if (allFiltered != null)
+            {
+                builder.setFilteredProperties(
+                    filtered.toArray(new BeanPropertyWriter[0]));
+            }
+
+            builder.setFilterId(null);
+
+            return builder;
+        }
+    }
+}
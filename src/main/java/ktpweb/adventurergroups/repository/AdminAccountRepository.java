@@ -1,9 +1,12 @@
 package ktpweb.adventurergroups.repository;
 
+import java.util.Optional;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import ktpweb.adventurergroups.entity.AdminAccount;
 
 public interface AdminAccountRepository extends JpaRepository<AdminAccount, Long>
 {
+    Optional<AdminAccount> findByIdAndDeletedFalse(Long id);
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package ktpweb.adventurergroups.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+
+// Conditions and order for a page of an Instance's Characters. Unset
+// conditions match every Character.
+@Data
+public class CharacterFilter
+{
+    @Getter
+    @AllArgsConstructor
+    public static enum Sort
+    {
+        ID("id"), NAME("name"), CREATE_DATE("createDate");
+
+        // The Character attribute sorted on, before the id.
+        private final String attribute;
+    }
+
+    private Long characterGroupId;
+    private Long maintainerId;
+    private Boolean hasMaintainer;
+
+    // Either the primary or the secondary color.
+    private Integer color;
+
+    private Sort sort = Sort.ID;
+    private boolean descending;
+}
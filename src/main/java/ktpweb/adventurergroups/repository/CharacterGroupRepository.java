@@ -1,13 +1,55 @@
 package ktpweb.adventurergroups.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-import org.springframework.data.repository.CrudRepository;
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import ktpweb.adventurergroups.entity.CharacterGroup;
-import ktpweb.adventurergroups.entity.Instance;
 
-public interface CharacterGroupRepository extends CrudRepository<CharacterGroup, Long>
+public interface CharacterGroupRepository extends JpaRepository<CharacterGroup, Long>
 {
-    List<CharacterGroup> findAllByInstance(Instance instance);
-}
\ No newline at end of file
+    Optional<CharacterGroup> findByIdAndDeletedFalse(Long id);
+
+    @EntityGraph("CharacterGroup.full")
+    Optional<CharacterGroup> findFullByIdAndDeletedFalse(Long id);
+
+    List<CharacterGroup> findByInstanceIdAndIdInAndDeletedFalse(
+        Long instanceId, Collection<Long> ids);
+
+    List<CharacterGroup> findByInstanceIdAndDeletedFalseAndIdGreaterThanOrderByIdAsc(
+        Long instanceId, Long afterId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "100"))
+    @Query("select new ktpweb.adventurergroups.repository.NameSummary("
+        + "cg.id, cg.name) from CharacterGroup cg "
+        + "where cg.instance.id = :instanceId and cg.deleted = false")
+    Stream<NameSummary> streamNamesByInstanceId(
+        @Param("instanceId") Long instanceId);
+
+    @Query("select new ktpweb.adventurergroups.repository."
+        + "InstanceContentVersion(i.id, i.contentVersion, i.lastModifiedDate) "
+        + "from CharacterGroup cg join cg.instance i "
+        + "where cg.id = :characterGroupId and cg.deleted = false")
+    Optional<InstanceContentVersion> findContentVersionById(
+        @Param("characterGroupId") Long characterGroupId);
+
+    @Modifying
+    @Query("update CharacterGroup cg set cg.deleted = true, "
+        + "cg.deleteDate = :deleteDate, cg.version = cg.version + 1 "
+        + "where cg.instance.id in :instanceIds and cg.deleted = false")
+    int softDeleteByInstanceIds(
+        @Param("instanceIds") Collection<Long> instanceIds,
+        @Param("deleteDate") LocalDateTime deleteDate);
+}
@@ -0,0 +1,17 @@
+package ktpweb.adventurergroups.repository;
+
+import java.time.LocalDateTime;
+
+import lombok.Value;
+
+// Where a filtered page of Characters ended: the last Character's id and the
+// values it was sorted on, as they were when the page was read. Only the
+// value of the filter's sort is used.
+@Value
+public class CharacterPosition
+{
+    private Long id;
+
+    private String name;
+    private LocalDateTime createDate;
+}
@@ -1,19 +1,123 @@
 package ktpweb.adventurergroups.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-import org.springframework.data.repository.CrudRepository;
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import ktpweb.adventurergroups.entity.Character;
 import ktpweb.adventurergroups.entity.CharacterGroup;
-import ktpweb.adventurergroups.entity.Instance;
-import ktpweb.adventurergroups.entity.UserAccount;
+import ktpweb.adventurergroups.util.UserAccountUtils.UserAccountRoles;
 
-public interface CharacterRepository extends CrudRepository<Character, Long>
+public interface CharacterRepository extends JpaRepository<Character, Long>, CharacterRepositoryCustom
 {
-    List<Character> findAllByInstance(Instance instance);
+    Optional<Character> findByIdAndDeletedFalse(Long id);
+
+    @EntityGraph("Character.full")
+    Optional<Character> findFullByIdAndDeletedFalse(Long id);
+
+    List<Character> findByInstanceIdAndIdInAndDeletedFalse(Long instanceId,
+        Collection<Long> ids);
+
+    // Keyset-paginated summaries: rows with an id greater than afterId, in id
+    // order, with the page size taken from the Pageable.
+
+    @Query("select new ktpweb.adventurergroups.repository.CharacterSummary("
+        + "c.id, c.name, c.description, c.colorPrimary, c.colorSecondary) "
+        + "from characterobject c "
+        + "where c.instance.id = :instanceId and c.deleted = false "
+        + "and c.id > :afterId order by c.id")
+    List<CharacterSummary> findSummariesByInstanceId(
+        @Param("instanceId") Long instanceId, @Param("afterId") Long afterId,
+        Pageable pageable);
+
+    // Every summary of the Instance, read through a cursor so the rows never
+    // sit in memory together. Must be consumed and closed inside a
+    // transaction. MySQL only honours the fetch size with useCursorFetch=true.
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "100"))
+    @Query("select new ktpweb.adventurergroups.repository.CharacterSummary("
+        + "c.id, c.name, c.description, c.colorPrimary, c.colorSecondary) "
+        + "from characterobject c "
+        + "where c.instance.id = :instanceId and c.deleted = false "
+        + "order by c.id")
+    Stream<CharacterSummary> streamSummariesByInstanceId(
+        @Param("instanceId") Long instanceId);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "100"))
+    @Query("select new ktpweb.adventurergroups.repository.NameSummary("
+        + "c.id, c.name) from characterobject c "
+        + "where c.instance.id = :instanceId and c.deleted = false")
+    Stream<NameSummary> streamNamesByInstanceId(
+        @Param("instanceId") Long instanceId);
+
+    @Query("select new ktpweb.adventurergroups.repository.CharacterSummary("
+        + "c.id, c.name, c.description, c.colorPrimary, c.colorSecondary) "
+        + "from characterobject c "
+        + "where c.maintainer.id = :maintainerId and c.deleted = false "
+        + "and c.id > :afterId order by c.id")
+    List<CharacterSummary> findSummariesByMaintainerId(
+        @Param("maintainerId") Long maintainerId,
+        @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select new ktpweb.adventurergroups.repository.CharacterSummary("
+        + "c.id, c.name, c.description, c.colorPrimary, c.colorSecondary) "
+        + "from characterobject c "
+        + "where c.characterGroup.id = :characterGroupId "
+        + "and c.deleted = false and c.id > :afterId order by c.id")
+    List<CharacterSummary> findSummariesByCharacterGroupId(
+        @Param("characterGroupId") Long characterGroupId,
+        @Param("afterId") Long afterId, Pageable pageable);
+
+    // Ownership check answered from the indexes, without loading entities. An
+    // owner owns every character in their instances, any other account owns
+    // the characters it maintains.
+    @Query("select case when count(c) > 0 then true else false end "
+        + "from characterobject c join c.instance i join i.owner o "
+        + "left join c.maintainer m "
+        + "where c.id = :characterId and c.deleted = false "
+        + "and i.deleted = false "
+        + "and ((o.id = :userId and o.deleted = false "
+        + "and o.role = :ownerRole) "
+        + "or (m.id = :userId and m.deleted = false "
+        + "and m.role <> :ownerRole))")
+    boolean existsByIdAndOwnerOrMaintainer(
+        @Param("characterId") Long characterId, @Param("userId") Long userId,
+        @Param("ownerRole") UserAccountRoles ownerRole);
+
+    @Query("select new ktpweb.adventurergroups.repository."
+        + "InstanceContentVersion(i.id, i.contentVersion, i.lastModifiedDate) "
+        + "from characterobject c join c.instance i "
+        + "where c.id = :characterId and c.deleted = false")
+    Optional<InstanceContentVersion> findContentVersionById(
+        @Param("characterId") Long characterId);
 
-    List<Character> findAllByMaintainer(UserAccount userAccount);
+    // Moves every member of a Character Group into another group, or out of
+    // any group when the new group is null.
+    @Modifying
+    @Query("update characterobject c set c.characterGroup = :newGroup, "
+        + "c.version = c.version + 1 "
+        + "where c.characterGroup.id = :characterGroupId "
+        + "and c.deleted = false")
+    int reassignCharacterGroup(
+        @Param("characterGroupId") Long characterGroupId,
+        @Param("newGroup") CharacterGroup newGroup);
 
-    List<Character> findAllByCharacterGroup(CharacterGroup characterGroup);
-}
\ No newline at end of file
+    @Modifying
+    @Query("update characterobject c set c.deleted = true, "
+        + "c.deleteDate = :deleteDate, c.version = c.version + 1 "
+        + "where c.instance.id in :instanceIds and c.deleted = false")
+    int softDeleteByInstanceIds(
+        @Param("instanceIds") Collection<Long> instanceIds,
+        @Param("deleteDate") LocalDateTime deleteDate);
+}
@@ -0,0 +1,22 @@
+package ktpweb.adventurergroups.repository;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.Tuple;
+
+public interface CharacterRepositoryCustom
+{
+    // Keyset-paginated like findSummariesByInstanceId, but selecting only the
+    // named Character attributes, each aliased by its name. The id is always
+    // selected, as the cursor is built from it.
+    List<Tuple> findFieldsByInstanceId(Long instanceId, Set<String> fields,
+        Long afterId, int maxResults);
+
+    // One page of the summaries of the Instance's Characters matching the
+    // filter, in its order, starting after the position where the previous
+    // page ended, or from the top when it is null. Summaries include their
+    // create date.
+    List<CharacterSummary> findSummariesByFilter(Long instanceId,
+        CharacterFilter filter, CharacterPosition last, int maxResults);
+}
@@ -0,0 +1,92 @@
+package ktpweb.adventurergroups.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import ktpweb.adventurergroups.entity.Character;
+
+public class CharacterRepositoryCustomImpl implements CharacterRepositoryCustom
+{
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Tuple> findFieldsByInstanceId(Long instanceId,
+        Set<String> fields, Long afterId, int maxResults)
+    {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Character> c = query.from(Character.class);
+
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(c.get("id").alias("id"));
+
+        for (String field : fields)
+        {
+            if (!field.equals("id"))
+            {
+                selections.add(c.get(field).alias(field));
+            }
+        }
+
+        query.multiselect(selections)
+            .where(cb.equal(c.get("instance").get("id"), instanceId),
+                cb.isFalse(c.get("deleted")), cb.gt(c.get("id"), afterId))
+            .orderBy(cb.asc(c.get("id")));
+
+        return entityManager.createQuery(query).setMaxResults(maxResults)
+            .getResultList();
+    }
+
+    @Override
+    public List<CharacterSummary> findSummariesByFilter(Long instanceId,
+        CharacterFilter filter, CharacterPosition last, int maxResults)
+    {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CharacterSummary> query = cb
+            .createQuery(CharacterSummary.class);
+        Root<Character> c = query.from(Character.class);
+
+        Specification<Character> specification = CharacterSpecifications
+            .matching(instanceId, filter);
+
+        if (last != null)
+        {
+            specification = specification
+                .and(CharacterSpecifications.after(filter, last));
+        }
+
+        List<Order> order = new ArrayList<>();
+
+        if (filter.getSort() != CharacterFilter.Sort.ID)
+        {
+            Path<?> attribute = c.get(filter.getSort().getAttribute());
+            order.add(filter.isDescending() ? cb.desc(attribute)
+                : cb.asc(attribute));
+        }
+
+        order.add(filter.isDescending() ? cb.desc(c.get("id"))
+            : cb.asc(c.get("id")));
+
+        query.select(cb.construct(CharacterSummary.class, c.get("id"),
+            c.get("name"), c.get("description"), c.get("colorPrimary"),
+            c.get("colorSecondary"), c.get("createDate")))
+            .where(specification.toPredicate(c, query, cb)).orderBy(order);
+
+        return entityManager.createQuery(query).setMaxResults(maxResults)
+            .getResultList();
+    }
+}
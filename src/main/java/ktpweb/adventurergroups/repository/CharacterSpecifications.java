@@ -0,0 +1,134 @@
+package ktpweb.adventurergroups.repository;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import ktpweb.adventurergroups.entity.Character;
+
+/**
+ * Conditions on Characters, combined into the where clause of the filtered
+ * keyset pages. Each is a plain comparison on a column, so the database can
+ * serve it from the indexes of V2 and V6.
+ */
+public final class CharacterSpecifications
+{
+    private CharacterSpecifications()
+    {
+    }
+
+    // The undeleted Characters of the Instance matching every condition set
+    // in the filter.
+    public static Specification<Character> matching(Long instanceId,
+        CharacterFilter filter)
+    {
+        Specification<Character> specification = inInstance(instanceId);
+
+        if (filter.getCharacterGroupId() != null)
+        {
+            specification = specification
+                .and(inGroup(filter.getCharacterGroupId()));
+        }
+
+        if (filter.getMaintainerId() != null)
+        {
+            specification = specification
+                .and(maintainedBy(filter.getMaintainerId()));
+        }
+
+        if (filter.getHasMaintainer() != null)
+        {
+            specification = specification
+                .and(hasMaintainer(filter.getHasMaintainer()));
+        }
+
+        if (filter.getColor() != null)
+        {
+            specification = specification.and(hasColor(filter.getColor()));
+        }
+
+        return specification;
+    }
+
+    public static Specification<Character> inInstance(Long instanceId)
+    {
+        return (c, query, cb) -> cb.and(
+            cb.equal(c.get("instance").get("id"), instanceId),
+            cb.isFalse(c.get("deleted")));
+    }
+
+    public static Specification<Character> inGroup(Long characterGroupId)
+    {
+        return (c, query, cb) -> cb
+            .equal(c.get("characterGroup").get("id"), characterGroupId);
+    }
+
+    public static Specification<Character> maintainedBy(Long maintainerId)
+    {
+        return (c, query, cb) -> cb.equal(c.get("maintainer").get("id"),
+            maintainerId);
+    }
+
+    public static Specification<Character> hasMaintainer(boolean maintained)
+    {
+        return (c, query, cb) -> maintained
+            ? cb.isNotNull(c.get("maintainer"))
+            : cb.isNull(c.get("maintainer"));
+    }
+
+    public static Specification<Character> hasColor(Integer color)
+    {
+        return (c, query, cb) -> cb.or(cb.equal(c.get("colorPrimary"), color),
+            cb.equal(c.get("colorSecondary"), color));
+    }
+
+    // The Characters ordered after the position by the filter's sort, then
+    // by id in the same direction. Both H2 and MySQL sort nulls as the
+    // lowest value, so they come first ascending and last descending.
+    public static Specification<Character> after(CharacterFilter filter,
+        CharacterPosition last)
+    {
+        return (c, query, cb) -> {
+            Path<Long> id = c.get("id");
+
+            switch (filter.getSort())
+            {
+            case NAME:
+                return after(cb, c.<String> get("name"), last.getName(), id,
+                    last.getId(), filter.isDescending());
+            case CREATE_DATE:
+                return after(cb, c.<LocalDateTime> get("createDate"),
+                    last.getCreateDate(), id, last.getId(),
+                    filter.isDescending());
+            default:
+                return filter.isDescending() ? cb.lt(id, last.getId())
+                    : cb.gt(id, last.getId());
+            }
+        };
+    }
+
+    private static <T extends Comparable<? super T>> Predicate after(
+        CriteriaBuilder cb, Path<T> attribute, T lastValue, Path<Long> id,
+        Long lastId, boolean descending)
+    {
+        if (lastValue == null)
+        {
+            Predicate tied = cb.and(cb.isNull(attribute),
+                descending ? cb.lt(id, lastId) : cb.gt(id, lastId));
+
+            return descending ? tied : cb.or(tied, cb.isNotNull(attribute));
+        }
+
+        Predicate tied = cb.and(cb.equal(attribute, lastValue),
+            descending ? cb.lt(id, lastId) : cb.gt(id, lastId));
+
+        return descending
+            ? cb.or(cb.lessThan(attribute, lastValue), tied,
+                cb.isNull(attribute))
+            : cb.or(cb.greaterThan(attribute, lastValue), tied);
+    }
+}
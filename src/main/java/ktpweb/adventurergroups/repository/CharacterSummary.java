@@ -0,0 +1,29 @@
+package ktpweb.adventurergroups.repository;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+// Read-only projection of the columns exposed by the simple Character view,
+// built directly by JPQL constructor expressions.
+@Value
+@AllArgsConstructor
+public class CharacterSummary
+{
+    private Long id;
+
+    private String name;
+    private String description;
+    private Integer colorPrimary;
+    private Integer colorSecondary;
+
+    // Read only by the filtered pages, whose cursors may sort on it.
+    private LocalDateTime createDate;
+
+    public CharacterSummary(Long id, String name, String description,
+        Integer colorPrimary, Integer colorSecondary)
+    {
+        this(id, name, description, colorPrimary, colorSecondary, null);
+    }
+}
@@ -0,0 +1,16 @@
+package ktpweb.adventurergroups.repository;
+
+import java.time.LocalDateTime;
+
+import lombok.Value;
+
+// Read-only projection of an Instance's aggregate content version, enough to
+// answer a conditional request without loading any content.
+@Value
+public class InstanceContentVersion
+{
+    private Long instanceId;
+
+    private Long contentVersion;
+    private LocalDateTime lastModifiedDate;
+}
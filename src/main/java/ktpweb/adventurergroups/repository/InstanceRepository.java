@@ -1,13 +1,72 @@
 package ktpweb.adventurergroups.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import ktpweb.adventurergroups.entity.Instance;
-import ktpweb.adventurergroups.entity.UserAccount;
+import ktpweb.adventurergroups.util.UserAccountUtils.UserAccountRoles;
 
 public interface InstanceRepository extends JpaRepository<Instance, Long>
 {
-    List<Instance> findAllByOwner(UserAccount userAccount);
-}
\ No newline at end of file
+    Optional<Instance> findByIdAndDeletedFalse(Long id);
+
+    @EntityGraph("Instance.full")
+    Optional<Instance> findFullByIdAndDeletedFalse(Long id);
+
+    List<Instance> findByOwnerIdAndDeletedFalseAndIdGreaterThanOrderByIdAsc(
+        Long ownerId, Long afterId, Pageable pageable);
+
+    // Ownership check answered from the indexes, without loading entities.
+    @Query("select case when count(i) > 0 then true else false end "
+        + "from Instance i join i.owner o "
+        + "where i.id = :instanceId and i.deleted = false "
+        + "and o.id = :ownerId and o.deleted = false and o.role = :ownerRole")
+    boolean existsByIdAndOwner(@Param("instanceId") Long instanceId,
+        @Param("ownerId") Long ownerId,
+        @Param("ownerRole") UserAccountRoles ownerRole);
+
+    // Every instance the public site can route to.
+    @Query("select new ktpweb.adventurergroups.repository.InstanceSubdomain("
+        + "i.id, i.subdomainName) from Instance i "
+        + "where i.deleted = false and i.active = true")
+    List<InstanceSubdomain> findRoutableSubdomains();
+
+    @Query("select new ktpweb.adventurergroups.repository."
+        + "InstanceContentVersion(i.id, i.contentVersion, i.lastModifiedDate) "
+        + "from Instance i where i.id = :instanceId and i.deleted = false")
+    Optional<InstanceContentVersion> findContentVersionById(
+        @Param("instanceId") Long instanceId);
+
+    // Bypasses the entity, so it never conflicts with the Instance's own
+    // optimistic lock.
+    @Modifying
+    @Query("update Instance i set i.contentVersion = i.contentVersion + 1, "
+        + "i.lastModifiedDate = :modifiedDate where i.id = :instanceId")
+    int incrementContentVersion(@Param("instanceId") Long instanceId,
+        @Param("modifiedDate") LocalDateTime modifiedDate);
+
+    @Query("select i.id from Instance i "
+        + "where i.owner.id = :ownerId and i.deleted = false")
+    List<Long> findIdsByOwnerId(@Param("ownerId") Long ownerId);
+
+    // Bulk soft-deletes. Each also bumps the optimistic lock version, so a
+    // concurrent update of a row fails instead of quietly undeleting it.
+
+    @Modifying
+    @Query("update Instance i set i.deleted = true, "
+        + "i.deleteDate = :deleteDate, i.version = i.version + 1, "
+        + "i.contentVersion = i.contentVersion + 1, "
+        + "i.lastModifiedDate = :deleteDate "
+        + "where i.id in :instanceIds and i.deleted = false")
+    int softDeleteByIds(@Param("instanceIds") Collection<Long> instanceIds,
+        @Param("deleteDate") LocalDateTime deleteDate);
+}
@@ -0,0 +1,12 @@
+package ktpweb.adventurergroups.repository;
+
+import lombok.Value;
+
+// Read-only projection used to build the in-memory subdomain routing table.
+@Value
+public class InstanceSubdomain
+{
+    private Long id;
+
+    private String subdomainName;
+}
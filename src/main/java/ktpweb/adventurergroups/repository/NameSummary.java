@@ -0,0 +1,12 @@
+package ktpweb.adventurergroups.repository;
+
+import lombok.Value;
+
+// Read-only projection of an object's id and name, for name completion.
+@Value
+public class NameSummary
+{
+    private Long id;
+
+    private String name;
+}
@@ -1,12 +1,49 @@
 package ktpweb.adventurergroups.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import ktpweb.adventurergroups.entity.UserAccount;
 
 public interface UserAccountRepository extends JpaRepository<UserAccount, Long>
 {
-    Optional<UserAccount> findByInviteToken(String inviteToken);
-}
\ No newline at end of file
+    Optional<UserAccount> findByIdAndDeletedFalse(Long id);
+
+    @EntityGraph("UserAccount.owner")
+    Optional<UserAccount> findOwnerByIdAndDeletedFalse(Long id);
+
+    @EntityGraph("UserAccount.maintainer")
+    Optional<UserAccount> findMaintainerByIdAndDeletedFalse(Long id);
+
+    Optional<UserAccount> findByInviteTokenAndDeletedFalse(String inviteToken);
+
+    List<UserAccount> findByParentInstanceIdAndDeletedFalseAndIdGreaterThanOrderByIdAsc(
+        Long parentInstanceId, Long afterId, Pageable pageable);
+
+    List<UserAccount> findByParentInstanceIdAndIdInAndDeletedFalse(
+        Long parentInstanceId, Collection<Long> ids);
+
+    @Query("select new ktpweb.adventurergroups.repository."
+        + "InstanceContentVersion(i.id, i.contentVersion, i.lastModifiedDate) "
+        + "from UserAccount u join u.parentInstance i "
+        + "where u.id = :userId and u.deleted = false")
+    Optional<InstanceContentVersion> findContentVersionById(
+        @Param("userId") Long userId);
+
+    @Modifying
+    @Query("update UserAccount u set u.deleted = true, "
+        + "u.deleteDate = :deleteDate, u.version = u.version + 1 "
+        + "where u.parentInstance.id in :instanceIds and u.deleted = false")
+    int softDeleteByParentInstanceIds(
+        @Param("instanceIds") Collection<Long> instanceIds,
+        @Param("deleteDate") LocalDateTime deleteDate);
+}
@@ -294,11 +294,8 @@ public class AdminAccountService
     {
         try
         {
-            AdminAccount adminAccount = adminAccountRepository.findById(id)
+            return adminAccountRepository.findByIdAndDeletedFalse(id)
                 .orElse(null);
-
-            return (adminAccount == null || adminAccount.getDeleted()) ? null
-                : adminAccount;
         }
         catch (IllegalArgumentException iae)
         {
@@ -0,0 +1,776 @@
+package ktpweb.adventurergroups.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ktpweb.adventurergroups.repository.CharacterRepository;
+import ktpweb.adventurergroups.repository.CharacterSummary;
+import ktpweb.adventurergroups.util.InstanceGenerations;
+import ktpweb.adventurergroups.util.TransactionUtils;
+
+/**
+ * In-memory inverted index over the names and descriptions of each
+ * Instance's Characters, so searches never scan the characterobject table.
+ *
+ * Words are case- and accent-folded. Every query term must match a word of
+ * the Character, either whole or as its start. Results are ranked by the
+ * summed weight of their matches: name words count twice, rarer words count
+ * more, and words matched by a prefix count for the share of the word the
+ * term covers.
+ *
+ * An Instance's index is built from the database on its first search and
+ * then kept current by CharacterService, each change applied after its
+ * transaction commits. Indexes are held in a cache bounded by their number
+ * of postings, evicting the coldest Instances first. As in SnapshotService,
+ * InstanceGenerations keeps an index whose build raced with a change out of
+ * the cache.
+ */
+@Service
+public class CharacterSearchService
+{
+    private static final Pattern SEPARATORS = Pattern
+        .compile("[^\\p{L}\\p{Nd}]+");
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    // Query terms past this are ignored.
+    private static final int MAX_QUERY_TERMS = 8;
+
+    // Most words a term is matched against as their start.
+    private static final int MAX_EXPANSIONS = 64;
+
+    private static final float NAME_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    @Autowired
+    private CharacterRepository characterRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${adventurergroups.search.budget:5000000}")
+    private Long budget;
+
+    private Cache<Long, InstanceIndex> indexes;
+
+    private final InstanceGenerations generations = new InstanceGenerations();
+
+    private Timer queryTime;
+
+    @PostConstruct
+    private void init()
+    {
+        indexes = Caffeine.newBuilder().maximumWeight(budget)
+            .<Long, InstanceIndex>weigher((k, v) -> v.getWeight())
+            .recordStats().build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, indexes,
+            "characterSearchIndexes");
+
+        queryTime = Timer.builder("adventurergroups.search.query")
+            .description("Time spent searching a loaded Character index")
+            .register(meterRegistry);
+    }
+
+    // Returns up to limit Characters of the Instance matching every term of
+    // the query, best first. Must be called in a transaction, which a missing
+    // index is read in.
+    public List<CharacterSummary> search(Long instanceId, String query,
+        int limit)
+    {
+        List<String> terms = tokenize(query).stream().distinct()
+            .limit(MAX_QUERY_TERMS).collect(Collectors.toList());
+
+        if (terms.isEmpty())
+        {
+            return List.of();
+        }
+
+        InstanceIndex index = getIndex(instanceId);
+
+        return queryTime.record(() -> index.search(terms, limit));
+    }
+
+    // Indexes the Character's current name and description once the current
+    // transaction commits.
+    public void characterChanged(Long instanceId, CharacterSummary summary)
+    {
+        TransactionUtils.afterCommit(() -> {
+            generations.changed(instanceId);
+            update(instanceId, index -> index.put(summary));
+        });
+    }
+
+    public void characterRemoved(Long instanceId, Long characterId)
+    {
+        TransactionUtils.afterCommit(() -> {
+            generations.changed(instanceId);
+            update(instanceId, index -> index.remove(characterId));
+        });
+    }
+
+    public void instanceRemoved(Long instanceId)
+    {
+        TransactionUtils.afterCommit(() -> {
+            generations.removed(instanceId);
+            indexes.invalidate(instanceId);
+        });
+    }
+
+    // Changes a cached index in place, putting it back so the cache weighs it
+    // again, as it only weighs an entry when it is written.
+    private void update(Long instanceId, Consumer<InstanceIndex> change)
+    {
+        indexes.asMap().computeIfPresent(instanceId, (id, index) -> {
+            change.accept(index);
+            return index;
+        });
+    }
+
+    private InstanceIndex getIndex(Long instanceId)
+    {
+        InstanceIndex index = indexes.getIfPresent(instanceId);
+
+        if (index != null)
+        {
+            return index;
+        }
+
+        long generation = generations.current();
+
+        InstanceIndex loaded = new InstanceIndex();
+
+        try (Stream<CharacterSummary> summaries = characterRepository
+            .streamSummariesByInstanceId(instanceId))
+        {
+            loaded.load(summaries);
+        }
+
+        // Changes bump the generation before looking for the index, so either
+        // they find it in the cache, or we see them here and only use this
+        // copy once.
+        index = indexes.asMap().compute(instanceId,
+            (id, existing) -> existing != null ? existing
+                : !generations.changedSince(id, generation) ? loaded : null);
+
+        return index != null ? index : loaded;
+    }
+
+    // Splits text into case- and accent-folded words.
+    protected static List<String> tokenize(String text)
+    {
+        if (text == null || text.isEmpty())
+        {
+            return List.of();
+        }
+
+        String folded = MARKS
+            .matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+            .replaceAll("").toLowerCase(Locale.ROOT);
+
+        return Arrays.stream(SEPARATORS.split(folded))
+            .filter(word -> !word.isEmpty()).collect(Collectors.toList());
+    }
+
+    // Orders words by their length first. Longer words than a char can
+    // count share the last length.
+    private static String lengthKey(int length, String word)
+    {
+        return (char) Math.min(length, Character.MAX_VALUE) + word;
+    }
+
+    @lombok.Value
+    private static class Document
+    {
+        private CharacterSummary summary;
+
+        // The weight of each of the Character's words.
+        private Map<String, Float> weights;
+    }
+
+    // The Characters holding a word, in id order, and the word's weight in
+    // each. Never modified, changes replace it with a copy, so readers always
+    // see a consistent list without locking.
+    @lombok.Value
+    private static class Postings
+    {
+        private long[] ids;
+        private float[] weights;
+
+        public int size()
+        {
+            return ids.length;
+        }
+
+        public Postings with(long id, float weight)
+        {
+            int index = Arrays.binarySearch(ids, id);
+
+            if (index >= 0)
+            {
+                float[] newWeights = weights.clone();
+                newWeights[index] = weight;
+
+                return new Postings(ids, newWeights);
+            }
+
+            int insertAt = -index - 1;
+
+            long[] newIds = new long[ids.length + 1];
+            float[] newWeights = new float[ids.length + 1];
+
+            System.arraycopy(ids, 0, newIds, 0, insertAt);
+            System.arraycopy(weights, 0, newWeights, 0, insertAt);
+            newIds[insertAt] = id;
+            newWeights[insertAt] = weight;
+            System.arraycopy(ids, insertAt, newIds, insertAt + 1,
+                ids.length - insertAt);
+            System.arraycopy(weights, insertAt, newWeights, insertAt + 1,
+                ids.length - insertAt);
+
+            return new Postings(newIds, newWeights);
+        }
+
+        // The Characters in either, with the higher weight of the two.
+        public Postings union(Postings other)
+        {
+            long[] newIds = new long[ids.length + other.ids.length];
+            float[] newWeights = new float[newIds.length];
+            int i = 0, j = 0, size = 0;
+
+            while (i < ids.length || j < other.ids.length)
+            {
+                if (j == other.ids.length
+                    || (i < ids.length && ids[i] < other.ids[j]))
+                {
+                    newIds[size] = ids[i];
+                    newWeights[size++] = weights[i++];
+                }
+                else if (i == ids.length || other.ids[j] < ids[i])
+                {
+                    newIds[size] = other.ids[j];
+                    newWeights[size++] = other.weights[j++];
+                }
+                else
+                {
+                    newIds[size] = ids[i];
+                    newWeights[size++] = Math.max(weights[i++],
+                        other.weights[j++]);
+                }
+            }
+
+            return new Postings(Arrays.copyOf(newIds, size),
+                Arrays.copyOf(newWeights, size));
+        }
+
+        // Returns null once no Character is left.
+        public Postings without(long id)
+        {
+            int index = Arrays.binarySearch(ids, id);
+
+            if (index < 0)
+            {
+                return this;
+            }
+
+            if (ids.length == 1)
+            {
+                return null;
+            }
+
+            long[] newIds = new long[ids.length - 1];
+            float[] newWeights = new float[ids.length - 1];
+
+            System.arraycopy(ids, 0, newIds, 0, index);
+            System.arraycopy(weights, 0, newWeights, 0, index);
+            System.arraycopy(ids, index + 1, newIds, index,
+                ids.length - index - 1);
+            System.arraycopy(weights, index + 1, newWeights, index,
+                ids.length - index - 1);
+
+            return new Postings(newIds, newWeights);
+        }
+    }
+
+    // Postings added to in increasing id order.
+    private static class PostingsBuilder
+    {
+        private long[] ids = new long[4];
+        private float[] weights = new float[4];
+        private int size;
+
+        public void add(long id, float weight)
+        {
+            if (size == ids.length)
+            {
+                ids = Arrays.copyOf(ids, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+
+            ids[size] = id;
+            weights[size++] = weight;
+        }
+
+        public Postings build()
+        {
+            return new Postings(Arrays.copyOf(ids, size),
+                Arrays.copyOf(weights, size));
+        }
+    }
+
+    @lombok.Value
+    private static class WordMatch
+    {
+        private Postings characters;
+
+        // What the word's weight in a Character is multiplied by.
+        private float factor;
+    }
+
+    @lombok.Value
+    private static class TermMatches
+    {
+        // The words starting with the term.
+        private List<WordMatch> words;
+
+        private long postingCount;
+
+        // The Character's score for its best word, or -1 if it holds none.
+        public float weightOf(long id)
+        {
+            float best = -1;
+
+            for (WordMatch word : words)
+            {
+                Postings characters = word.getCharacters();
+                int index = Arrays.binarySearch(characters.getIds(), id);
+
+                if (index >= 0)
+                {
+                    best = Math.max(best,
+                        characters.getWeights()[index] * word.getFactor());
+                }
+            }
+
+            return best;
+        }
+
+        // The Characters holding any of the words, sorted by id, each scoring
+        // its best word.
+        public Postings score()
+        {
+            List<Postings> scored = new ArrayList<>(words.size());
+
+            for (WordMatch word : words)
+            {
+                float[] weights = word.getCharacters().getWeights().clone();
+
+                for (int i = 0; i < weights.length; i++)
+                {
+                    weights[i] *= word.getFactor();
+                }
+
+                scored.add(new Postings(word.getCharacters().getIds(), weights));
+            }
+
+            if (scored.isEmpty())
+            {
+                return new Postings(new long[0], new float[0]);
+            }
+
+            // Merge in pairs, so each posting is copied once per round.
+            while (scored.size() > 1)
+            {
+                List<Postings> merged = new ArrayList<>(scored.size() / 2 + 1);
+
+                for (int i = 0; i < scored.size(); i += 2)
+                {
+                    merged.add(i + 1 < scored.size()
+                        ? scored.get(i).union(scored.get(i + 1))
+                        : scored.get(i));
+                }
+
+                scored = merged;
+            }
+
+            return scored.get(0);
+        }
+    }
+
+    @lombok.Value
+    private static class Match
+    {
+        private long id;
+        private float score;
+    }
+
+    // The best matches seen so far, lowest ids first among equal scores. A
+    // Character offered again keeps its best score.
+    private static class TopMatches
+    {
+        private final int limit;
+
+        private final PriorityQueue<Match> worstFirst;
+
+        private final Map<Long, Match> kept = new HashMap<>();
+
+        public TopMatches(int limit)
+        {
+            this.limit = limit;
+            worstFirst = new PriorityQueue<>(limit + 1,
+                Comparator.comparingDouble(Match::getScore)
+                    .thenComparing(Comparator
+                        .comparingLong(Match::getId).reversed()));
+        }
+
+        // Whether a match would be kept, checked before creating it.
+        public boolean accepts(long id, float score)
+        {
+            if (worstFirst.size() < limit)
+            {
+                return true;
+            }
+
+            Match worst = worstFirst.peek();
+
+            return score > worst.getScore()
+                || (score == worst.getScore() && id < worst.getId());
+        }
+
+        // A Character dropped earlier scored below every kept one, so it can
+        // only come back with a better score.
+        public void offer(long id, float score)
+        {
+            if (!accepts(id, score))
+            {
+                return;
+            }
+
+            Match previous = kept.get(id);
+
+            if (previous != null)
+            {
+                if (previous.getScore() >= score)
+                {
+                    return;
+                }
+
+                worstFirst.remove(previous);
+            }
+
+            Match match = new Match(id, score);
+
+            worstFirst.add(match);
+            kept.put(id, match);
+
+            if (worstFirst.size() > limit)
+            {
+                kept.remove(worstFirst.poll().getId());
+            }
+        }
+
+        public List<Long> getIds()
+        {
+            List<Long> ids = new ArrayList<>(worstFirst.size());
+
+            while (!worstFirst.isEmpty())
+            {
+                ids.add(worstFirst.poll().getId());
+            }
+
+            Collections.reverse(ids);
+
+            return ids;
+        }
+    }
+
+    private static class InstanceIndex
+    {
+        private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+
+        // Word to the Characters containing it. Sorted, so the words starting
+        // with a prefix are one range.
+        private final ConcurrentNavigableMap<String, Postings> postings =
+            new ConcurrentSkipListMap<>();
+
+        // The same words, each prefixed with its length, so the shortest
+        // words starting with a prefix are found without walking the others.
+        private final ConcurrentSkipListSet<String> wordsByLength =
+            new ConcurrentSkipListSet<>();
+
+        // Number of postings when the index was cached.
+        private volatile int weight;
+
+        public int getWeight()
+        {
+            return Math.max(weight, 1);
+        }
+
+        // Fills an empty index from Characters in id order, growing each
+        // word's postings in place rather than copying them per Character.
+        public synchronized void load(Stream<CharacterSummary> summaries)
+        {
+            Map<String, PostingsBuilder> builders = new HashMap<>();
+
+            summaries.forEach(summary -> {
+                Map<String, Float> weights = weigh(summary);
+
+                documents.put(summary.getId(), new Document(summary, weights));
+
+                weights.forEach((word, w) -> builders
+                    .computeIfAbsent(word, k -> new PostingsBuilder())
+                    .add(summary.getId(), w));
+
+                weight += weights.size();
+            });
+
+            builders.forEach((word, builder) -> {
+                postings.put(word, builder.build());
+                wordsByLength.add(lengthKey(word.length(), word));
+            });
+        }
+
+        // Writers are serialized, readers never block. A reader may see a
+        // Character with only part of its words while it is being changed.
+        public synchronized void put(CharacterSummary summary)
+        {
+            remove(summary.getId());
+
+            Map<String, Float> weights = weigh(summary);
+
+            documents.put(summary.getId(), new Document(summary, weights));
+
+            weights.forEach((word, w) -> {
+                postings.merge(word,
+                    new Postings(new long[] { summary.getId() },
+                        new float[] { w }),
+                    (existing, added) -> existing.with(summary.getId(), w));
+                wordsByLength.add(lengthKey(word.length(), word));
+            });
+
+            weight += weights.size();
+        }
+
+        private Map<String, Float> weigh(CharacterSummary summary)
+        {
+            Map<String, Float> weights = new HashMap<>();
+
+            for (String word : tokenize(summary.getName()))
+            {
+                weights.merge(word, NAME_WEIGHT, Float::sum);
+            }
+
+            for (String word : tokenize(summary.getDescription()))
+            {
+                weights.merge(word, DESCRIPTION_WEIGHT, Float::sum);
+            }
+
+            return weights;
+        }
+
+        public synchronized void remove(Long characterId)
+        {
+            Document document = documents.remove(characterId);
+
+            if (document == null)
+            {
+                return;
+            }
+
+            for (String word : document.getWeights().keySet())
+            {
+                if (postings.computeIfPresent(word,
+                    (k, existing) -> existing.without(characterId)) == null)
+                {
+                    wordsByLength.remove(lengthKey(word.length(), word));
+                }
+            }
+
+            weight -= document.getWeights().size();
+        }
+
+        public List<CharacterSummary> search(List<String> terms, int limit)
+        {
+            // Each term, not only the last one typed, scores the Characters
+            // holding any of the words it starts, and the rarest term's
+            // Characters are looked up in the others.
+            List<TermMatches> matches = terms.stream().map(this::expand)
+                .sorted(Comparator.comparingLong(TermMatches::getPostingCount))
+                .collect(Collectors.toList());
+
+            TermMatches seed = matches.get(0);
+
+            // The other terms' words are merged, unless looking each candidate
+            // up in every one of them is cheaper.
+            List<Postings> scores = new ArrayList<>(matches.size());
+
+            scores.add(null);
+
+            for (int t = 1; t < matches.size(); t++)
+            {
+                TermMatches term = matches.get(t);
+
+                scores.add(seed.getPostingCount() * term.getWords().size() < term
+                    .getPostingCount() ? null : term.score());
+            }
+
+            // The rarest term's words are read one at a time rather than
+            // merged, as a broad last term typed alone would cost most to
+            // merge. A Character holding several of them is offered once for
+            // each, and ranked by the best.
+            TopMatches best = new TopMatches(limit);
+
+            for (WordMatch word : seed.getWords())
+            {
+                long[] ids = word.getCharacters().getIds();
+                float[] weights = word.getCharacters().getWeights();
+                int[] positions = new int[scores.size()];
+
+                candidates: for (int i = 0; i < ids.length; i++)
+                {
+                    long id = ids[i];
+                    float score = weights[i] * word.getFactor();
+
+                    for (int t = 1; t < scores.size(); t++)
+                    {
+                        Postings other = scores.get(t);
+
+                        if (other == null)
+                        {
+                            float weight = matches.get(t).weightOf(id);
+
+                            if (weight < 0)
+                            {
+                                continue candidates;
+                            }
+
+                            score += weight;
+                            continue;
+                        }
+
+                        // Both are sorted by id, so each search starts where
+                        // the last one ended.
+                        int index = Arrays.binarySearch(other.getIds(),
+                            positions[t], other.size(), id);
+
+                        if (index < 0)
+                        {
+                            positions[t] = -index - 1;
+                            continue candidates;
+                        }
+
+                        positions[t] = index;
+                        score += other.getWeights()[index];
+                    }
+
+                    best.offer(id, score);
+                }
+            }
+
+            return getSummaries(best);
+        }
+
+        private List<CharacterSummary> getSummaries(TopMatches best)
+        {
+            List<Long> ids = best.getIds();
+            List<CharacterSummary> results = new ArrayList<>(ids.size());
+
+            for (Long id : ids)
+            {
+                Document document = documents.get(id);
+
+                if (document != null)
+                {
+                    results.add(document.getSummary());
+                }
+            }
+
+            return results;
+        }
+
+        // The words starting with the term. Short terms can start thousands
+        // of words, so only the shortest, which would score highest, are
+        // kept. They are read a length at a time, shortest first, jumping
+        // over the lengths no word has, so a broad prefix costs a lookup per
+        // length rather than a walk over every word it starts.
+        private TermMatches expand(String term)
+        {
+            List<Map.Entry<String, Postings>> words = new ArrayList<>();
+            String next = wordsByLength
+                .ceiling(lengthKey(term.length(), term));
+
+            while (next != null && words.size() < MAX_EXPANSIONS)
+            {
+                String from = lengthKey(next.charAt(0), term);
+
+                for (String key : wordsByLength.subSet(from, true,
+                    from + Character.MAX_VALUE, true))
+                {
+                    String word = key.substring(1);
+                    Postings characters = postings.get(word);
+
+                    // Removed since, by a concurrent writer.
+                    if (characters != null)
+                    {
+                        words.add(Map.entry(word, characters));
+                    }
+
+                    if (words.size() >= MAX_EXPANSIONS)
+                    {
+                        break;
+                    }
+                }
+
+                next = next.charAt(0) < Character.MAX_VALUE ? wordsByLength
+                    .ceiling(lengthKey(next.charAt(0) + 1, term)) : null;
+            }
+
+            List<WordMatch> wordMatches = new ArrayList<>(words.size());
+            long postingCount = 0;
+
+            for (Map.Entry<String, Postings> word : words)
+            {
+                Postings characters = word.getValue();
+
+                // Rarer words count more, and words matched by their start
+                // count for the share of them the term covers.
+                float idf = (float) Math.log(1.0 + (documents.size() + 1.0)
+                    / (characters.size() + 1.0));
+
+                wordMatches.add(new WordMatch(characters,
+                    idf * term.length() / word.getKey().length()));
+                postingCount += characters.size();
+            }
+
+            return new TermMatches(wordMatches, postingCount);
+        }
+    }
+}
@@ -1,15 +1,30 @@
 package ktpweb.adventurergroups.service;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.persistence.Tuple;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.databind.SequenceWriter;
 
 import ktpweb.adventurergroups.entity.Character;
 import ktpweb.adventurergroups.entity.CharacterGroup;
@@ -18,10 +33,22 @@ import ktpweb.adventurergroups.entity.UserAccount;
 import ktpweb.adventurergroups.exception.CharacterServiceException;
 import ktpweb.adventurergroups.model.CharacterDto;
 import ktpweb.adventurergroups.model.CharacterGroupDto;
+import ktpweb.adventurergroups.model.CursorPage;
 import ktpweb.adventurergroups.model.InstanceDto;
 import ktpweb.adventurergroups.model.MaintainerDto;
+import ktpweb.adventurergroups.model.NameSuggestionDto;
+import ktpweb.adventurergroups.model.NameSuggestionDto.Type;
+import ktpweb.adventurergroups.repository.CharacterFilter;
 import ktpweb.adventurergroups.repository.CharacterGroupRepository;
+import ktpweb.adventurergroups.repository.CharacterPosition;
 import ktpweb.adventurergroups.repository.CharacterRepository;
+import ktpweb.adventurergroups.repository.CharacterSummary;
+import ktpweb.adventurergroups.repository.InstanceContentVersion;
+import ktpweb.adventurergroups.repository.InstanceRepository;
+import ktpweb.adventurergroups.service.InstanceStatisticsService.Change;
+import ktpweb.adventurergroups.service.OwnershipCacheService.ResourceType;
+import ktpweb.adventurergroups.service.PaginationService.SortCursor;
+import ktpweb.adventurergroups.util.UserAccountUtils.UserAccountRoles;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
@@ -34,12 +61,33 @@ public class CharacterService
     @Autowired
     private CharacterGroupRepository characterGroupRepository;
 
+    @Autowired
+    private InstanceRepository instanceRepository;
+
     @Autowired
     private UserAccountService userAccountService;
 
     @Autowired
     private InstanceService instanceService;
 
+    @Autowired
+    private PaginationService paginationService;
+
+    @Autowired
+    private OwnershipCacheService ownershipCacheService;
+
+    @Autowired
+    private CharacterSearchService characterSearchService;
+
+    @Autowired
+    private NameCompletionService nameCompletionService;
+
+    @Autowired
+    private InstanceStatisticsService instanceStatisticsService;
+
+    @Value("${adventurergroups.characters.bulkMaxSize:500}")
+    private Integer maxBulkSize;
+
     // -----------------------------------------------------------------------------------------------------------------
     // Character-related public methods.
     // -----------------------------------------------------------------------------------------------------------------
@@ -52,10 +100,13 @@ public class CharacterService
     private final String EXCEPTION_CHARACTER_DELETE = "Cannot delete Character with id: ";
 
     private final String EXCEPTION_CHARACTER_CREATE_FOR_MAINTAINER = "Cannot create Character for Maintainer id: ";
+    private final String EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE = "Cannot save Characters for Instance id: ";
 
     private final String EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE = "Cannot retrieve Characters for instance id: ";
     private final String EXCEPTION_CHARACTER_RETRIEVE_FOR_MAINTAINER = "Cannot retrieve Characters for maintainer id: ";
     private final String EXCEPTION_CHARACTER_RETRIEVE_FOR_GROUP = "Cannot retrieve Characters for group id: ";
+    private final String EXCEPTION_CHARACTER_SEARCH_FOR_INSTANCE = "Cannot search Characters for instance id: ";
+    private final String EXCEPTION_NAME_COMPLETE_FOR_INSTANCE = "Cannot complete names for instance id: ";
 
     private final String EXCEPTION_CHARACTER_MODEL = "Cannot return model for Character with id: ";
 
@@ -116,6 +167,13 @@ public class CharacterService
         log.info("Created Character with id: {} for instance with id: {}",
             characterEntity.getId(), instance.getId());
 
+        ownershipCacheService.evictResource(ResourceType.CHARACTER,
+            characterEntity.getId());
+        instanceService.instanceContentChanged(instance.getId());
+        instanceStatisticsService.apply(instance.getId(),
+            new Change().characters(1, null));
+        characterChanged(characterEntity);
+
         // Return full DTO.
         try
         {
@@ -140,7 +198,7 @@ public class CharacterService
 
         try
         {
-            characterEntity = getCharacterEntity(characterId);
+            characterEntity = getCharacterEntity(characterId, false);
         }
         catch (Exception ex)
         {
@@ -207,18 +265,40 @@ public class CharacterService
                 CharacterServiceException.Codes.CHARACTER_NOT_FOUND);
         }
 
+        // Reject an update made against an older copy of the character.
+        if (isStale(characterUpdate.getVersion(), characterEntity.getVersion()))
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_UPDATE + characterId
+                    + ". Character was modified by another request",
+                CharacterServiceException.Codes.VERSION_CONFLICT);
+        }
+
         // Attempt to modify and save character.
+        Long previousMaintainerId = characterEntity.getMaintainer() != null
+            ? characterEntity.getMaintainer().getId()
+            : null;
+        Long previousGroupId = characterEntity.getCharacterGroup() != null
+            ? characterEntity.getCharacterGroup().getId()
+            : null;
+
         characterEntity.setName(characterUpdate.getName());
         characterEntity.setDescription(characterUpdate.getDescription());
         characterEntity.setColorPrimary(characterUpdate.getColorPrimary());
         characterEntity.setColorSecondary(characterUpdate.getColorSecondary());
 
+        // As in saveCharactersForInstance, the Maintainer and Character
+        // Group must belong to the Character's Instance.
+        Long instanceId = characterEntity.getInstance().getId();
+
         if (characterUpdate.getMaintainer() != null)
         {
+            UserAccount maintainerEntity;
+
             try
             {
-                characterEntity.setMaintainer(userAccountService
-                    .getUserAccountEntity(characterUpdate.getMaintainer()));
+                maintainerEntity = userAccountService
+                    .getUserAccountEntity(characterUpdate.getMaintainer());
             }
             catch (Exception ex)
             {
@@ -227,6 +307,20 @@ public class CharacterService
                         + ". Error reading from database",
                     CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
             }
+
+            if (maintainerEntity == null
+                || maintainerEntity.getParentInstance() == null
+                || !instanceId
+                    .equals(maintainerEntity.getParentInstance().getId()))
+            {
+                throw generateException(
+                    EXCEPTION_CHARACTER_UPDATE + characterId
+                        + ". Maintainer not found with id: "
+                        + characterUpdate.getMaintainer().getId(),
+                    CharacterServiceException.Codes.MAINTAINER_NOT_FOUND);
+            }
+
+            characterEntity.setMaintainer(maintainerEntity);
         }
         else
         {
@@ -235,10 +329,12 @@ public class CharacterService
 
         if (characterUpdate.getCharacterGroup() != null)
         {
+            CharacterGroup groupEntity;
+
             try
             {
-                characterEntity.setCharacterGroup(getCharacterGroupEntity(
-                    characterUpdate.getCharacterGroup()));
+                groupEntity = getCharacterGroupEntity(
+                    characterUpdate.getCharacterGroup());
             }
             catch (Exception ex)
             {
@@ -247,15 +343,36 @@ public class CharacterService
                         + ". Error reading from database",
                     CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
             }
+
+            if (groupEntity == null
+                || !instanceId.equals(groupEntity.getInstance().getId()))
+            {
+                throw generateException(
+                    EXCEPTION_CHARACTER_UPDATE + characterId
+                        + ". Character Group not found with id: "
+                        + characterUpdate.getCharacterGroup().getId(),
+                    CharacterServiceException.Codes.CHARACTER_GROUP_NOT_FOUND);
+            }
+
+            characterEntity.setCharacterGroup(groupEntity);
         }
         else
         {
             characterEntity.setCharacterGroup(null);
         }
 
+        // Flush now, so a concurrent update is reported as a conflict
+        // rather than failing the commit.
         try
         {
-            characterEntity = characterRepository.save(characterEntity);
+            characterEntity = characterRepository.saveAndFlush(characterEntity);
+        }
+        catch (ObjectOptimisticLockingFailureException ex)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_UPDATE + characterId
+                    + ". Character was modified by another request",
+                CharacterServiceException.Codes.VERSION_CONFLICT, ex);
         }
         catch (Exception ex)
         {
@@ -267,6 +384,25 @@ public class CharacterService
 
         log.info("Updated Character with id: {}", characterId);
 
+        instanceService
+            .instanceContentChanged(characterEntity.getInstance().getId());
+        instanceStatisticsService.apply(characterEntity.getInstance().getId(),
+            new Change().characterMoved(previousGroupId,
+                characterEntity.getCharacterGroup() != null
+                    ? characterEntity.getCharacterGroup().getId()
+                    : null));
+        characterChanged(characterEntity);
+
+        // A new maintainer changes who may edit the character.
+        if (!Objects.equals(previousMaintainerId,
+            characterEntity.getMaintainer() != null
+                ? characterEntity.getMaintainer().getId()
+                : null))
+        {
+            ownershipCacheService.evictResource(ResourceType.CHARACTER,
+                characterId);
+        }
+
         // Return full DTO.
         try
         {
@@ -326,6 +462,288 @@ public class CharacterService
         }
 
         log.info("Deleted Character with id: {}", characterId);
+
+        ownershipCacheService.evictResource(ResourceType.CHARACTER,
+            characterId);
+        instanceService
+            .instanceContentChanged(characterEntity.getInstance().getId());
+        instanceStatisticsService.apply(characterEntity.getInstance().getId(),
+            new Change().characters(-1,
+                characterEntity.getCharacterGroup() != null
+                    ? characterEntity.getCharacterGroup().getId()
+                    : null));
+        characterSearchService.characterRemoved(
+            characterEntity.getInstance().getId(), characterId);
+        nameCompletionService.nameRemoved(
+            characterEntity.getInstance().getId(), Type.CHARACTER,
+            characterId);
+    }
+
+    // Creates the Characters without an id and updates the others, all in one
+    // transaction. Every Character, Maintainer and Character Group referenced
+    // must belong to the Instance, so callers only need to check ownership of
+    // the Instance. Rows are loaded with one query per kind and written in
+    // JDBC batches. Any failure rolls back the whole list, including the
+    // changes already applied to earlier Characters.
+    @Transactional(rollbackFor = CharacterServiceException.class)
+    public List<CharacterDto> saveCharactersForInstance(Long instanceId,
+        List<CharacterDto> characters) throws CharacterServiceException
+    {
+        // Validate the request.
+        if (characters == null || characters.isEmpty()
+            || characters.stream().anyMatch(Objects::isNull))
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE + instanceId
+                    + ". Null or empty Character list",
+                CharacterServiceException.Codes.NULL_CHARACTER_OBJECT);
+        }
+
+        if (characters.size() > maxBulkSize)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE + instanceId + ". "
+                    + characters.size() + " Characters exceed the limit of "
+                    + maxBulkSize,
+                CharacterServiceException.Codes.TOO_MANY_CHARACTERS);
+        }
+
+        // Load the Instance and everything the Characters refer to.
+        Instance instanceEntity;
+        Map<Long, Character> characterEntities;
+        Map<Long, CharacterGroup> groupEntities;
+        Map<Long, UserAccount> maintainerEntities;
+
+        try
+        {
+            instanceEntity = instanceService.getInstanceEntity(instanceId);
+
+            // An empty IN list is not valid SQL everywhere, so lists without
+            // references skip their query.
+            Set<Long> characterIds = getIds(characters, CharacterDto::getId);
+            Set<Long> groupIds = getIds(characters,
+                c -> c.getCharacterGroup() != null
+                    ? c.getCharacterGroup().getId()
+                    : null);
+            Set<Long> maintainerIds = getIds(characters,
+                c -> c.getMaintainer() != null ? c.getMaintainer().getId()
+                    : null);
+
+            characterEntities = (characterIds.isEmpty() ? List.<Character>of()
+                : characterRepository.findByInstanceIdAndIdInAndDeletedFalse(
+                    instanceId, characterIds))
+                .stream()
+                .collect(Collectors.toMap(Character::getId, c -> c));
+
+            groupEntities = (groupIds.isEmpty() ? List.<CharacterGroup>of()
+                : characterGroupRepository
+                    .findByInstanceIdAndIdInAndDeletedFalse(instanceId,
+                        groupIds))
+                .stream()
+                .collect(Collectors.toMap(CharacterGroup::getId, cg -> cg));
+
+            maintainerEntities = (maintainerIds.isEmpty()
+                ? List.<UserAccount>of()
+                : userAccountService.getMaintainerAccountEntities(instanceId,
+                    maintainerIds))
+                .stream()
+                .collect(Collectors.toMap(UserAccount::getId, m -> m));
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE + instanceId
+                    + ". Error reading from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        if (instanceEntity == null)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE + instanceId
+                    + ". Instance not found",
+                CharacterServiceException.Codes.INSTANCE_NOT_FOUND);
+        }
+
+        // Apply each Character's changes.
+        List<Character> saved = new ArrayList<>(characters.size());
+        Set<Long> maintainerChanged = new HashSet<>();
+        Change statistics = new Change();
+
+        for (CharacterDto characterUpdate : characters)
+        {
+            Character characterEntity;
+
+            if (characterUpdate.getId() == null)
+            {
+                characterEntity = new Character();
+
+                characterEntity.setInstance(instanceEntity);
+                characterEntity.setCreateDate(LocalDateTime.now());
+            }
+            else
+            {
+                characterEntity = characterEntities
+                    .get(characterUpdate.getId());
+
+                if (characterEntity == null)
+                {
+                    throw generateException(
+                        EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE + instanceId
+                            + ". Character not found with id: "
+                            + characterUpdate.getId(),
+                        CharacterServiceException.Codes.CHARACTER_NOT_FOUND);
+                }
+
+                if (isStale(characterUpdate.getVersion(),
+                    characterEntity.getVersion()))
+                {
+                    throw generateException(
+                        EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE + instanceId
+                            + ". Character with id: " + characterUpdate.getId()
+                            + " was modified by another request",
+                        CharacterServiceException.Codes.VERSION_CONFLICT);
+                }
+            }
+
+            UserAccount maintainerEntity = null;
+
+            if (characterUpdate.getMaintainer() != null)
+            {
+                maintainerEntity = maintainerEntities
+                    .get(characterUpdate.getMaintainer().getId());
+
+                if (maintainerEntity == null)
+                {
+                    throw generateException(
+                        EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE + instanceId
+                            + ". Maintainer not found with id: "
+                            + characterUpdate.getMaintainer().getId(),
+                        CharacterServiceException.Codes.MAINTAINER_NOT_FOUND);
+                }
+            }
+
+            CharacterGroup groupEntity = null;
+
+            if (characterUpdate.getCharacterGroup() != null)
+            {
+                groupEntity = groupEntities
+                    .get(characterUpdate.getCharacterGroup().getId());
+
+                if (groupEntity == null)
+                {
+                    throw generateException(
+                        EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE + instanceId
+                            + ". Character Group not found with id: "
+                            + characterUpdate.getCharacterGroup().getId(),
+                        CharacterServiceException.Codes.CHARACTER_GROUP_NOT_FOUND);
+                }
+            }
+
+            if (characterEntity.getId() != null && !Objects.equals(
+                getId(characterEntity.getMaintainer()),
+                getId(maintainerEntity)))
+            {
+                maintainerChanged.add(characterEntity.getId());
+            }
+
+            // New Characters keep createCharacter's defaults for a missing
+            // name or description.
+            if (characterEntity.getId() == null)
+            {
+                characterEntity.setName(Objects.requireNonNullElse(
+                    characterUpdate.getName(), DEFAULT_CHARACTER_NAME));
+                characterEntity.setDescription(Objects
+                    .requireNonNullElse(characterUpdate.getDescription(), ""));
+            }
+            else
+            {
+                characterEntity.setName(characterUpdate.getName());
+                characterEntity
+                    .setDescription(characterUpdate.getDescription());
+            }
+
+            characterEntity.setColorPrimary(characterUpdate.getColorPrimary());
+            characterEntity
+                .setColorSecondary(characterUpdate.getColorSecondary());
+            if (characterEntity.getId() == null)
+            {
+                statistics.characters(1, getId(groupEntity));
+            }
+            else
+            {
+                statistics.characterMoved(
+                    getId(characterEntity.getCharacterGroup()),
+                    getId(groupEntity));
+            }
+
+            characterEntity.setMaintainer(maintainerEntity);
+            characterEntity.setCharacterGroup(groupEntity);
+
+            saved.add(characterEntity);
+        }
+
+        // Flush now, so a concurrent update is reported as a conflict rather
+        // than failing the commit.
+        try
+        {
+            saved = characterRepository.saveAll(saved);
+            characterRepository.flush();
+        }
+        catch (ObjectOptimisticLockingFailureException ex)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE + instanceId
+                    + ". A Character was modified by another request",
+                CharacterServiceException.Codes.VERSION_CONFLICT, ex);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE + instanceId
+                    + ". Error writing to database",
+                CharacterServiceException.Codes.DATABASE_ERROR_WRITE, ex);
+        }
+
+        log.info("Saved {} Characters for Instance with id: {}", saved.size(),
+            instanceId);
+
+        // New Characters and changed Maintainers change who may edit them.
+        for (int i = 0; i < saved.size(); i++)
+        {
+            if (characters.get(i).getId() == null
+                || maintainerChanged.contains(saved.get(i).getId()))
+            {
+                ownershipCacheService.evictResource(ResourceType.CHARACTER,
+                    saved.get(i).getId());
+            }
+        }
+
+        instanceService.instanceContentChanged(instanceId);
+        instanceStatisticsService.apply(instanceId, statistics);
+        saved.forEach(this::characterChanged);
+
+        // Return the Characters without their nested objects, which the
+        // caller already has.
+        try
+        {
+            List<CharacterDto> dtos = new ArrayList<>(saved.size());
+
+            for (Character characterEntity : saved)
+            {
+                dtos.add(getCharacterDto(characterEntity, true));
+            }
+
+            return dtos;
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_SAVE_FOR_INSTANCE + instanceId
+                    + ". Error reading from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ_MAPPING,
+                ex);
+        }
     }
 
     @Transactional
@@ -379,6 +797,14 @@ public class CharacterService
         log.info("Created Character with id: {} for maintainer with id: {}",
             characterEntity.getId(), maintainer.getId());
 
+        ownershipCacheService.evictResource(ResourceType.CHARACTER,
+            characterEntity.getId());
+        instanceService
+            .instanceContentChanged(characterEntity.getInstance().getId());
+        instanceStatisticsService.apply(characterEntity.getInstance().getId(),
+            new Change().characters(1, null));
+        characterChanged(characterEntity);
+
         // Return full DTO.
         try
         {
@@ -394,205 +820,430 @@ public class CharacterService
         }
     }
 
-    @Transactional
-    public List<CharacterDto> retrieveCharactersForInstance(
-        InstanceDto instance) throws CharacterServiceException
+    @Transactional(readOnly = true)
+    public CursorPage<CharacterDto> retrieveCharactersForInstance(
+        Long instanceId, String after, Integer limit)
+        throws CharacterServiceException
     {
         // Load and validate Instance.
-        if (instance == null)
-        {
-            throw generateException(
-                "Attempted retrieval of characters for a null Instance",
-                CharacterServiceException.Codes.INVALID_INSTANCE_OBJECT);
-        }
-
         Instance instanceEntity;
 
         try
         {
-            instanceEntity = instanceService.getInstanceEntity(instance);
+            instanceEntity = instanceService.getInstanceEntity(instanceId);
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instance.getId()
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId
                     + ". Error reading Instance from database",
                 CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
 
-        // Attempt to read from the database.
-        List<Character> characterEntities;
+        if (instanceEntity == null)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Instance not found",
+                CharacterServiceException.Codes.INSTANCE_NOT_FOUND);
+        }
+
+        Long afterId = decodeCursor(after,
+            EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId);
+
+        // Attempt to read one page of the simple columns from the database,
+        // without loading any Character entities.
+        List<CharacterSummary> characterSummaries;
 
         try
         {
-            characterEntities = getCharacterEntitiesForInstance(instanceEntity);
+            characterSummaries = characterRepository.findSummariesByInstanceId(
+                instanceId, afterId, paginationService.getPageable(limit));
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instance.getId()
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId
                     + ". Error reading from database",
                 CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
 
-        // Return DTO list.
+        // Return DTO page.
+        return paginationService.getPage(characterSummaries, limit,
+            CharacterSummary::getId, this::getCharacterDto);
+    }
+
+    // Reads only the given fields of one page of Characters, for clients that
+    // need fewer columns than the simple view. The fields must be attributes
+    // of Character, as checked by FieldSetService.
+    @Transactional(readOnly = true)
+    public CursorPage<CharacterDto> retrieveCharactersForInstance(
+        Long instanceId, Set<String> fields, String after, Integer limit)
+        throws CharacterServiceException
+    {
+        // Load and validate Instance.
+        Instance instanceEntity;
+
         try
         {
-            return Optional.ofNullable(characterEntities).map(List::stream)
-                .orElseGet(Stream::empty).map(c -> {
-                    try
-                    {
-                        return getCharacterDto(c, true);
-                    }
-                    catch (Exception e)
-                    {
-                        throw new RuntimeException(e);
-                    }
-                }).collect(Collectors.toList());
+            instanceEntity = instanceService.getInstanceEntity(instanceId);
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instance.getId()
-                    + ". Error reading from database",
-                CharacterServiceException.Codes.DATABASE_ERROR_READ_MAPPING,
-                ex);
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Error reading Instance from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
-    }
 
-    @Transactional
-    public List<CharacterDto> retrieveCharactersForMaintainer(
-        MaintainerDto maintainer) throws CharacterServiceException
-    {
-        // Load and validate Maintainer.
-        if (maintainer == null)
+        if (instanceEntity == null)
         {
             throw generateException(
-                "Attempted retrieval of characters for a null user account",
-                CharacterServiceException.Codes.INVALID_MAINTAINER_OBJECT);
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Instance not found",
+                CharacterServiceException.Codes.INSTANCE_NOT_FOUND);
         }
 
-        UserAccount maintainerEntity;
+        Long afterId = decodeCursor(after,
+            EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId);
+
+        // Attempt to read one page of the selected columns.
+        List<Tuple> characterTuples;
 
         try
         {
-            maintainerEntity = userAccountService
-                .getUserAccountEntity(maintainer);
+            characterTuples = characterRepository.findFieldsByInstanceId(
+                instanceId, fields, afterId,
+                paginationService.getLimit(limit) + 1);
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_CHARACTER_RETRIEVE_FOR_MAINTAINER + maintainer.getId()
-                    + ". Error reading user account from database",
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Error reading from database",
                 CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
 
-        // Attempt to read from the database.
-        List<Character> characterEntities;
+        // Return DTO page.
+        return paginationService.getPage(characterTuples, limit,
+            t -> t.get("id", Long.class), t -> getCharacterDto(t, fields));
+    }
+
+    // One page of the Characters matching the filter, in its order. Unless
+    // sorted by id, the cursor also carries the sort value of the last
+    // Character of the previous page as it was read, so the page continues
+    // from there whatever has happened to that Character since.
+    @Transactional(readOnly = true)
+    public CursorPage<CharacterDto> filterCharactersForInstance(
+        Long instanceId, CharacterFilter filter, String after, Integer limit)
+        throws CharacterServiceException
+    {
+        // Load and validate Instance.
+        Instance instanceEntity;
 
         try
         {
-            characterEntities = getCharacterEntitiesForMaintainer(
-                maintainerEntity);
+            instanceEntity = instanceService.getInstanceEntity(instanceId);
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_CHARACTER_RETRIEVE_FOR_MAINTAINER + maintainer.getId()
-                    + ". Error reading from database",
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Error reading Instance from database",
                 CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
 
-        // Return DTO list.
+        if (instanceEntity == null)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Instance not found",
+                CharacterServiceException.Codes.INSTANCE_NOT_FOUND);
+        }
+
+        CharacterPosition last = decodePosition(filter, after,
+            EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId);
+
+        // Attempt to read one page from the database.
+        List<CharacterSummary> characterSummaries;
+
         try
         {
-            return Optional.ofNullable(characterEntities).map(List::stream)
-                .orElseGet(Stream::empty).map(c -> {
-                    try
-                    {
-                        return getCharacterDto(c, true);
-                    }
-                    catch (Exception e)
-                    {
-                        throw new RuntimeException(e);
-                    }
-                }).collect(Collectors.toList());
+            characterSummaries = characterRepository.findSummariesByFilter(
+                instanceId, filter, last,
+                paginationService.getLimit(limit) + 1);
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_CHARACTER_RETRIEVE_FOR_MAINTAINER + maintainer.getId()
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId
                     + ". Error reading from database",
-                CharacterServiceException.Codes.DATABASE_ERROR_READ_MAPPING,
-                ex);
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
+
+        // Return DTO page.
+        return paginationService.getPageWithCursors(characterSummaries, limit,
+            summary -> encodePosition(filter, summary),
+            this::getCharacterDto);
     }
 
-    @Transactional
-    public List<CharacterDto> retrieveCharactersForGroup(
-        CharacterGroupDto characterGroup) throws CharacterServiceException
+    // Writes every Character of the Instance to the writer as its row is
+    // read, so memory use does not grow with the Instance. Callers check that
+    // the Instance exists first, while an error can still be reported.
+    @Transactional(readOnly = true)
+    public void streamCharactersForInstance(Long instanceId,
+        SequenceWriter writer) throws CharacterServiceException, IOException
     {
-        // Load and validate Group.
-        if (characterGroup == null)
+        try (Stream<CharacterSummary> characterSummaries = characterRepository
+            .streamSummariesByInstanceId(instanceId))
         {
-            throw generateException(
-                "Attempted retrieval of characters for a null group",
-                CharacterServiceException.Codes.INVALID_CHARACTER_GROUP_OBJECT);
-        }
-
-        CharacterGroup characterGroupEntity;
+            Iterator<CharacterSummary> iterator = characterSummaries
+                .iterator();
 
-        try
+            while (iterator.hasNext())
+            {
+                writer.write(getCharacterDto(iterator.next()));
+            }
+        }
+        catch (IOException ex)
         {
-            characterGroupEntity = getCharacterGroupEntity(characterGroup);
+            throw ex;
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_CHARACTER_RETRIEVE_FOR_GROUP + characterGroup.getId()
-                    + ". Error reading character group from database",
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Error reading from database",
                 CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
+    }
 
-        // Attempt to read from the database.
-        List<Character> characterEntities;
+    // Ranks the Instance's Characters against the terms of the query, using
+    // the in-memory index of CharacterSearchService rather than the table.
+    @Transactional(readOnly = true)
+    public List<CharacterDto> searchCharactersForInstance(Long instanceId,
+        String query, Integer limit) throws CharacterServiceException
+    {
+        // Load and validate Instance.
+        Instance instanceEntity;
 
         try
         {
-            characterEntities = getCharacterEntitiesForCharacterGroup(
-                characterGroupEntity);
+            instanceEntity = instanceService.getInstanceEntity(instanceId);
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_CHARACTER_RETRIEVE_FOR_GROUP + characterGroup.getId()
-                    + ". Error reading from database",
+                EXCEPTION_CHARACTER_SEARCH_FOR_INSTANCE + instanceId
+                    + ". Error reading Instance from database",
                 CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
 
-        // Return DTO list.
-        try
+        if (instanceEntity == null)
         {
-            return Optional.ofNullable(characterEntities).map(List::stream)
-                .orElseGet(Stream::empty).map(c -> {
-                    try
-                    {
-                        return getCharacterDto(c, true);
-                    }
-                    catch (Exception e)
-                    {
-                        throw new RuntimeException(e);
-                    }
-                }).collect(Collectors.toList());
+            throw generateException(
+                EXCEPTION_CHARACTER_SEARCH_FOR_INSTANCE + instanceId
+                    + ". Instance not found",
+                CharacterServiceException.Codes.INSTANCE_NOT_FOUND);
+        }
+
+        if (!StringUtils.hasText(query))
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_SEARCH_FOR_INSTANCE + instanceId
+                    + ". Empty query",
+                CharacterServiceException.Codes.INVALID_QUERY);
+        }
+
+        // Attempt to search, reading the index from the database if it is
+        // not loaded yet.
+        List<CharacterSummary> characterSummaries;
+
+        try
+        {
+            characterSummaries = characterSearchService.search(instanceId,
+                query, paginationService.getLimit(limit));
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_CHARACTER_RETRIEVE_FOR_GROUP + characterGroup.getId()
+                EXCEPTION_CHARACTER_SEARCH_FOR_INSTANCE + instanceId
                     + ". Error reading from database",
-                CharacterServiceException.Codes.DATABASE_ERROR_READ_MAPPING,
-                ex);
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
+
+        return characterSummaries.stream().map(this::getCharacterDto)
+            .collect(Collectors.toList());
+    }
+
+    // Character and Character Group names of the Instance starting with the
+    // prefix, from the in-memory index of NameCompletionService.
+    @Transactional(readOnly = true)
+    public List<NameSuggestionDto> completeNamesForInstance(Long instanceId,
+        String prefix, Integer limit) throws CharacterServiceException
+    {
+        // Load and validate Instance.
+        Instance instanceEntity;
+
+        try
+        {
+            instanceEntity = instanceService.getInstanceEntity(instanceId);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_NAME_COMPLETE_FOR_INSTANCE + instanceId
+                    + ". Error reading Instance from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        if (instanceEntity == null)
+        {
+            throw generateException(
+                EXCEPTION_NAME_COMPLETE_FOR_INSTANCE + instanceId
+                    + ". Instance not found",
+                CharacterServiceException.Codes.INSTANCE_NOT_FOUND);
+        }
+
+        if (!StringUtils.hasText(prefix))
+        {
+            throw generateException(
+                EXCEPTION_NAME_COMPLETE_FOR_INSTANCE + instanceId
+                    + ". Empty prefix",
+                CharacterServiceException.Codes.INVALID_QUERY);
+        }
+
+        // Attempt to complete, reading the index from the database if it is
+        // not loaded yet.
+        try
+        {
+            return nameCompletionService.complete(instanceId, prefix,
+                paginationService.getLimit(limit));
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_NAME_COMPLETE_FOR_INSTANCE + instanceId
+                    + ". Error reading from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<CharacterDto> retrieveCharactersForMaintainer(
+        Long instanceId, Long maintainerId, String after, Integer limit)
+        throws CharacterServiceException
+    {
+        // Load and validate Maintainer.
+        UserAccount maintainerEntity;
+
+        try
+        {
+            maintainerEntity = userAccountService
+                .getUserAccountEntity(maintainerId);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_MAINTAINER + maintainerId
+                    + ". Error reading user account from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        if (maintainerEntity == null
+            || (maintainerEntity
+                .getRole() != UserAccountRoles.USER_ROLE_MAINTAINER
+                && maintainerEntity
+                    .getRole() != UserAccountRoles.USER_ROLE_UNREGISTERED)
+            || maintainerEntity.getParentInstance() == null
+            || !maintainerEntity.getParentInstance().getId()
+                .equals(instanceId))
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_MAINTAINER + maintainerId
+                    + ". Maintainer not found in Instance id: " + instanceId,
+                CharacterServiceException.Codes.MAINTAINER_NOT_FOUND);
+        }
+
+        Long afterId = decodeCursor(after,
+            EXCEPTION_CHARACTER_RETRIEVE_FOR_MAINTAINER + maintainerId);
+
+        // Attempt to read one page from the database.
+        List<CharacterSummary> characterSummaries;
+
+        try
+        {
+            characterSummaries = characterRepository
+                .findSummariesByMaintainerId(maintainerId, afterId,
+                    paginationService.getPageable(limit));
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_MAINTAINER + maintainerId
+                    + ". Error reading from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        // Return DTO page.
+        return paginationService.getPage(characterSummaries, limit,
+            CharacterSummary::getId, this::getCharacterDto);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<CharacterDto> retrieveCharactersForGroup(Long instanceId,
+        Long characterGroupId, String after, Integer limit)
+        throws CharacterServiceException
+    {
+        // Load and validate Group.
+        CharacterGroup characterGroupEntity;
+
+        try
+        {
+            characterGroupEntity = getCharacterGroupEntity(characterGroupId);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_GROUP + characterGroupId
+                    + ". Error reading character group from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        if (characterGroupEntity == null
+            || characterGroupEntity.getInstance() == null
+            || !characterGroupEntity.getInstance().getId().equals(instanceId))
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_GROUP + characterGroupId
+                    + ". Character Group not found in Instance id: "
+                    + instanceId,
+                CharacterServiceException.Codes.CHARACTER_GROUP_NOT_FOUND);
+        }
+
+        Long afterId = decodeCursor(after,
+            EXCEPTION_CHARACTER_RETRIEVE_FOR_GROUP + characterGroupId);
+
+        // Attempt to read one page from the database.
+        List<CharacterSummary> characterSummaries;
+
+        try
+        {
+            characterSummaries = characterRepository
+                .findSummariesByCharacterGroupId(characterGroupId, afterId,
+                    paginationService.getPageable(limit));
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_CHARACTER_RETRIEVE_FOR_GROUP + characterGroupId
+                    + ". Error reading from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        // Return DTO page.
+        return paginationService.getPage(characterSummaries, limit,
+            CharacterSummary::getId, this::getCharacterDto);
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -668,6 +1319,11 @@ public class CharacterService
         log.info("Created Character Group with id: {}",
             characterGroupEntity.getId());
 
+        instanceService.instanceContentChanged(instance.getId());
+        instanceStatisticsService.apply(instance.getId(),
+            new Change().characterGroupCreated(characterGroupEntity.getId()));
+        characterGroupChanged(characterGroupEntity);
+
         // Return full DTO.
         try
         {
@@ -692,7 +1348,8 @@ public class CharacterService
 
         try
         {
-            characterGroupEntity = getCharacterGroupEntity(characterGroupId);
+            characterGroupEntity = getCharacterGroupEntity(characterGroupId,
+                false);
         }
         catch (Exception ex)
         {
@@ -759,6 +1416,16 @@ public class CharacterService
                 CharacterServiceException.Codes.CHARACTER_GROUP_NOT_FOUND);
         }
 
+        // Reject an update made against an older copy of the group.
+        if (isStale(characterGroupUpdate.getVersion(),
+            characterGroupEntity.getVersion()))
+        {
+            throw generateException(
+                EXCEPTION_GROUP_UPDATE + characterGroupId
+                    + ". Character Group was modified by another request",
+                CharacterServiceException.Codes.VERSION_CONFLICT);
+        }
+
         // Attempt to modify and save group.
         characterGroupEntity.setName(characterGroupUpdate.getName());
         characterGroupEntity
@@ -769,7 +1436,14 @@ public class CharacterService
         try
         {
             characterGroupEntity = characterGroupRepository
-                .save(characterGroupEntity);
+                .saveAndFlush(characterGroupEntity);
+        }
+        catch (ObjectOptimisticLockingFailureException ex)
+        {
+            throw generateException(
+                EXCEPTION_GROUP_UPDATE + characterGroupId
+                    + ". Character Group was modified by another request",
+                CharacterServiceException.Codes.VERSION_CONFLICT, ex);
         }
         catch (Exception ex)
         {
@@ -781,6 +1455,10 @@ public class CharacterService
 
         log.info("Updated Character Group with id: {}", characterGroupId);
 
+        instanceService.instanceContentChanged(
+            characterGroupEntity.getInstance().getId());
+        characterGroupChanged(characterGroupEntity);
+
         // Return full DTO.
         try
         {
@@ -799,6 +1477,15 @@ public class CharacterService
     @Transactional
     public void deleteCharacterGroup(Long characterGroupId)
         throws CharacterServiceException
+    {
+        deleteCharacterGroup(characterGroupId, null);
+    }
+
+    // Members are moved to the group with reassignToId, in the same Instance,
+    // or ungrouped when it is null.
+    @Transactional
+    public void deleteCharacterGroup(Long characterGroupId, Long reassignToId)
+        throws CharacterServiceException
     {
         // Attempt to read from the database.
         CharacterGroup characterGroupEntity;
@@ -823,18 +1510,51 @@ public class CharacterService
                 CharacterServiceException.Codes.CHARACTER_GROUP_NOT_FOUND);
         }
 
-        // Ungroup all of the group's characters, if there are any.
-        for (Character c : characterGroupEntity.getCharacters())
+        // Load and validate the group the characters move to, if any.
+        CharacterGroup reassignToEntity = null;
+
+        if (reassignToId != null)
         {
-            c.setCharacterGroup(null);
+            try
+            {
+                reassignToEntity = getCharacterGroupEntity(reassignToId);
+            }
+            catch (Exception ex)
+            {
+                throw generateException(
+                    EXCEPTION_GROUP_DELETE + characterGroupId
+                        + ". Error reading Character Group from database",
+                    CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
+            }
+
+            if (reassignToEntity == null
+                || reassignToId.equals(characterGroupId)
+                || !reassignToEntity.getInstance().getId().equals(
+                    characterGroupEntity.getInstance().getId()))
+            {
+                throw generateException(
+                    EXCEPTION_GROUP_DELETE + characterGroupId
+                        + ". Cannot move characters to Character Group id: "
+                        + reassignToId,
+                    CharacterServiceException.Codes.INVALID_CHARACTER_GROUP_OBJECT);
+            }
         }
 
-        // Attempt to soft-delete group.
+        // Attempt to soft-delete group, moving all of its characters in one
+        // bulk update rather than loading each of them.
         characterGroupEntity.setDeleted(true);
         characterGroupEntity.setDeleteDate(LocalDateTime.now());
 
+        int moved;
+
         try
         {
+            moved = characterRepository
+                .reassignCharacterGroup(characterGroupId, reassignToEntity);
+
+            log.debug("Moved {} Characters from Character Group id: {} to {}",
+                moved, characterGroupId, reassignToId);
+
             characterGroupEntity = characterGroupRepository
                 .save(characterGroupEntity);
         }
@@ -847,55 +1567,71 @@ public class CharacterService
         }
 
         log.info("Deleted Character Group with id: {}", characterGroupId);
+
+        instanceService.instanceContentChanged(
+            characterGroupEntity.getInstance().getId());
+        instanceStatisticsService.apply(
+            characterGroupEntity.getInstance().getId(),
+            new Change().charactersMoved(moved, characterGroupId, reassignToId)
+                .characterGroupRemoved(characterGroupId));
+        nameCompletionService.nameRemoved(
+            characterGroupEntity.getInstance().getId(), Type.CHARACTER_GROUP,
+            characterGroupId);
     }
 
-    @Transactional
-    public List<CharacterGroupDto> retrieveCharacterGroupsForInstance(
-        InstanceDto instance) throws CharacterServiceException
+    @Transactional(readOnly = true)
+    public CursorPage<CharacterGroupDto> retrieveCharacterGroupsForInstance(
+        Long instanceId, String after, Integer limit)
+        throws CharacterServiceException
     {
         // Load and validate Instance.
-        if (instance == null)
-        {
-            throw generateException(
-                "Attempted retrieval of characters for a null Instance",
-                CharacterServiceException.Codes.INVALID_INSTANCE_OBJECT);
-        }
-
         Instance instanceEntity;
 
         try
         {
-            instanceEntity = instanceService.getInstanceEntity(instance);
+            instanceEntity = instanceService.getInstanceEntity(instanceId);
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_GROUP_RETRIEVE_INSTANCE + instance.getId()
+                EXCEPTION_GROUP_RETRIEVE_INSTANCE + instanceId
                     + ". Error reading Instance from database",
                 CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
 
-        // Attempt to read from the database.
+        if (instanceEntity == null)
+        {
+            throw generateException(
+                EXCEPTION_GROUP_RETRIEVE_INSTANCE + instanceId
+                    + ". Instance not found",
+                CharacterServiceException.Codes.INSTANCE_NOT_FOUND);
+        }
+
+        Long afterId = decodeCursor(after,
+            EXCEPTION_GROUP_RETRIEVE_INSTANCE + instanceId);
+
+        // Attempt to read one page from the database.
         List<CharacterGroup> characterGroupEntities;
 
         try
         {
-            characterGroupEntities = getCharacterGroupEntitiesForInstance(
-                instanceEntity);
+            characterGroupEntities = characterGroupRepository
+                .findByInstanceIdAndDeletedFalseAndIdGreaterThanOrderByIdAsc(
+                    instanceId, afterId, paginationService.getPageable(limit));
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_GROUP_RETRIEVE_INSTANCE + instance.getId()
+                EXCEPTION_GROUP_RETRIEVE_INSTANCE + instanceId
                     + ". Error reading from database",
                 CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
 
-        // Return DTO list.
+        // Return DTO page.
         try
         {
-            return Optional.ofNullable(characterGroupEntities).map(List::stream)
-                .orElseGet(Stream::empty).map(cg -> {
+            return paginationService.getPage(characterGroupEntities, limit,
+                CharacterGroup::getId, cg -> {
                     try
                     {
                         return getCharacterGroupDto(cg, true);
@@ -904,18 +1640,118 @@ public class CharacterService
                     {
                         throw new RuntimeException(e);
                     }
-                }).collect(Collectors.toList());
+                });
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_GROUP_RETRIEVE_INSTANCE + instance.getId()
+                EXCEPTION_GROUP_RETRIEVE_INSTANCE + instanceId
                     + ". Error reading from database",
                 CharacterServiceException.Codes.DATABASE_ERROR_READ_MAPPING,
                 ex);
         }
     }
 
+    // -----------------------------------------------------------------------------------------------------------------
+    // Content version public methods. Each reads only the version of the
+    // Instance whose public views include the object, so a conditional
+    // request can be answered before any DTO is built.
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private final String EXCEPTION_VERSION_RETRIEVE_INSTANCE = "Cannot retrieve content version for Instance id: ";
+    private final String EXCEPTION_VERSION_RETRIEVE_CHARACTER = "Cannot retrieve content version for Character id: ";
+    private final String EXCEPTION_VERSION_RETRIEVE_GROUP = "Cannot retrieve content version for Character Group id: ";
+
+    @Transactional(readOnly = true)
+    public InstanceContentVersion retrieveContentVersionForInstance(
+        Long instanceId) throws CharacterServiceException
+    {
+        InstanceContentVersion version;
+
+        try
+        {
+            version = instanceRepository.findContentVersionById(instanceId)
+                .orElse(null);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_VERSION_RETRIEVE_INSTANCE + instanceId
+                    + ". Error reading from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        if (version == null)
+        {
+            throw generateException(
+                EXCEPTION_VERSION_RETRIEVE_INSTANCE + instanceId
+                    + ". Instance not found",
+                CharacterServiceException.Codes.INSTANCE_NOT_FOUND);
+        }
+
+        return version;
+    }
+
+    @Transactional(readOnly = true)
+    public InstanceContentVersion retrieveContentVersionForCharacter(
+        Long characterId) throws CharacterServiceException
+    {
+        InstanceContentVersion version;
+
+        try
+        {
+            version = characterRepository.findContentVersionById(characterId)
+                .orElse(null);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_VERSION_RETRIEVE_CHARACTER + characterId
+                    + ". Error reading from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        if (version == null)
+        {
+            throw generateException(
+                EXCEPTION_VERSION_RETRIEVE_CHARACTER + characterId
+                    + ". Character not found",
+                CharacterServiceException.Codes.CHARACTER_NOT_FOUND);
+        }
+
+        return version;
+    }
+
+    @Transactional(readOnly = true)
+    public InstanceContentVersion retrieveContentVersionForCharacterGroup(
+        Long characterGroupId) throws CharacterServiceException
+    {
+        InstanceContentVersion version;
+
+        try
+        {
+            version = characterGroupRepository
+                .findContentVersionById(characterGroupId).orElse(null);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_VERSION_RETRIEVE_GROUP + characterGroupId
+                    + ". Error reading from database",
+                CharacterServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        if (version == null)
+        {
+            throw generateException(
+                EXCEPTION_VERSION_RETRIEVE_GROUP + characterGroupId
+                    + ". Character Group not found",
+                CharacterServiceException.Codes.CHARACTER_GROUP_NOT_FOUND);
+        }
+
+        return version;
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     // General methods, not to be used with business layer.
     // -----------------------------------------------------------------------------------------------------------------
@@ -924,10 +1760,7 @@ public class CharacterService
     {
         try
         {
-            Character character = characterRepository.findById(id).orElse(null);
-
-            return (character == null || character.getDeleted()) ? null
-                : character;
+            return characterRepository.findByIdAndDeletedFalse(id).orElse(null);
         }
         catch (IllegalArgumentException iae)
         {
@@ -935,53 +1768,58 @@ public class CharacterService
         }
     }
 
-    protected Character getCharacterEntity(CharacterDto characterDto)
+    // Loads the entity along with the associations its full DTO needs.
+    protected Character getCharacterEntity(Long id, Boolean skipNested)
         throws Exception
     {
-        return getCharacterEntity(characterDto.getId());
+        if (skipNested)
+        {
+            return getCharacterEntity(id);
+        }
+
+        try
+        {
+            return characterRepository.findFullByIdAndDeletedFalse(id)
+                .orElse(null);
+        }
+        catch (IllegalArgumentException iae)
+        {
+            return null;
+        }
     }
 
-    protected List<Character> getCharacterEntitiesForInstance(Instance instance)
+    protected Character getCharacterEntity(CharacterDto characterDto)
         throws Exception
     {
-        return Optional
-            .ofNullable(characterRepository.findAllByInstance(instance))
-            .map(List::stream).orElseGet(Stream::empty).filter(c -> {
-                return c != null && !c.getDeleted();
-            }).collect(Collectors.toList());
+        return getCharacterEntity(characterDto.getId());
     }
 
-    protected List<Character> getCharacterEntitiesForMaintainer(
-        UserAccount userAccount) throws Exception
+    protected CharacterGroup getCharacterGroupEntity(Long id) throws Exception
     {
-        return Optional
-            .ofNullable(characterRepository.findAllByMaintainer(userAccount))
-            .map(List::stream).orElseGet(Stream::empty).filter(c -> {
-                return c != null && !c.getDeleted();
-            }).collect(Collectors.toList());
+        try
+        {
+            return characterGroupRepository.findByIdAndDeletedFalse(id)
+                .orElse(null);
+        }
+        catch (IllegalArgumentException iae)
+        {
+            return null;
+        }
     }
 
-    protected List<Character> getCharacterEntitiesForCharacterGroup(
-        CharacterGroup characterGroup) throws Exception
+    // Loads the entity along with the associations its full DTO needs.
+    protected CharacterGroup getCharacterGroupEntity(Long id,
+        Boolean skipNested) throws Exception
     {
-        return Optional
-            .ofNullable(
-                characterRepository.findAllByCharacterGroup(characterGroup))
-            .map(List::stream).orElseGet(Stream::empty).filter(c -> {
-                return c != null && !c.getDeleted();
-            }).collect(Collectors.toList());
-    }
+        if (skipNested)
+        {
+            return getCharacterGroupEntity(id);
+        }
 
-    protected CharacterGroup getCharacterGroupEntity(Long id) throws Exception
-    {
         try
         {
-            CharacterGroup characterGroup = characterGroupRepository
-                .findById(id).orElse(null);
-
-            return (characterGroup != null && !characterGroup.getDeleted())
-                ? characterGroup
-                : null;
+            return characterGroupRepository.findFullByIdAndDeletedFalse(id)
+                .orElse(null);
         }
         catch (IllegalArgumentException iae)
         {
@@ -995,14 +1833,121 @@ public class CharacterService
         return getCharacterGroupEntity(characterGroupDto.getId());
     }
 
-    protected List<CharacterGroup> getCharacterGroupEntitiesForInstance(
-        Instance instance) throws Exception
+    private Long decodeCursor(String cursor, String message)
+        throws CharacterServiceException
+    {
+        try
+        {
+            return paginationService.decodeCursor(cursor);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw generateException(message + ". Invalid cursor: " + cursor,
+                CharacterServiceException.Codes.INVALID_CURSOR, ex);
+        }
+    }
+
+    // Where the filtered page before the cursor ended, or null for the first
+    // page.
+    private CharacterPosition decodePosition(CharacterFilter filter,
+        String cursor, String message) throws CharacterServiceException
+    {
+        try
+        {
+            switch (filter.getSort())
+            {
+            case NAME:
+            case CREATE_DATE:
+                SortCursor sortCursor = paginationService
+                    .decodeSortCursor(cursor);
+
+                if (sortCursor == null)
+                {
+                    return null;
+                }
+
+                String value = sortCursor.getSortValue();
+
+                return filter.getSort() == CharacterFilter.Sort.NAME
+                    ? new CharacterPosition(sortCursor.getId(), value, null)
+                    : new CharacterPosition(sortCursor.getId(), null,
+                        value != null ? LocalDateTime.parse(value) : null);
+            default:
+                Long afterId = paginationService.decodeCursor(cursor);
+
+                return afterId != 0L
+                    ? new CharacterPosition(afterId, null, null)
+                    : null;
+            }
+        }
+        catch (IllegalArgumentException | DateTimeParseException ex)
+        {
+            throw generateException(message + ". Invalid cursor: " + cursor,
+                CharacterServiceException.Codes.INVALID_CURSOR, ex);
+        }
+    }
+
+    private String encodePosition(CharacterFilter filter,
+        CharacterSummary summary)
     {
-        return Optional
-            .ofNullable(characterGroupRepository.findAllByInstance(instance))
-            .map(List::stream).orElseGet(Stream::empty).filter(cg -> {
-                return cg != null && !cg.getDeleted();
-            }).collect(Collectors.toList());
+        switch (filter.getSort())
+        {
+        case NAME:
+            return paginationService.encodeCursor(summary.getId(),
+                summary.getName());
+        case CREATE_DATE:
+            return paginationService.encodeCursor(summary.getId(),
+                Objects.toString(summary.getCreateDate(), null));
+        default:
+            return paginationService.encodeCursor(summary.getId());
+        }
+    }
+
+    // The ids the DTOs refer to, skipping missing ones.
+    private static Set<Long> getIds(List<CharacterDto> characters,
+        Function<CharacterDto, Long> id)
+    {
+        return characters.stream().map(id).filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+    }
+
+    private static Long getId(UserAccount account)
+    {
+        return account != null ? account.getId() : null;
+    }
+
+    private static Long getId(CharacterGroup characterGroup)
+    {
+        return characterGroup != null ? characterGroup.getId() : null;
+    }
+
+    // Keeps the search and name completion indexes in step with the
+    // Character's name and description.
+    private void characterChanged(Character characterEntity)
+    {
+        characterSearchService.characterChanged(
+            characterEntity.getInstance().getId(),
+            new CharacterSummary(characterEntity.getId(),
+                characterEntity.getName(), characterEntity.getDescription(),
+                characterEntity.getColorPrimary(),
+                characterEntity.getColorSecondary()));
+        nameCompletionService.nameChanged(
+            characterEntity.getInstance().getId(), Type.CHARACTER,
+            characterEntity.getId(), characterEntity.getName());
+    }
+
+    private void characterGroupChanged(CharacterGroup characterGroupEntity)
+    {
+        nameCompletionService.nameChanged(
+            characterGroupEntity.getInstance().getId(), Type.CHARACTER_GROUP,
+            characterGroupEntity.getId(), characterGroupEntity.getName());
+    }
+
+    // An update without a version is applied as before, unconditionally.
+    private static boolean isStale(Long expectedVersion, Long currentVersion)
+    {
+        return expectedVersion != null
+            && !expectedVersion.equals(currentVersion);
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -1020,8 +1965,11 @@ public class CharacterService
         CharacterDto dto = new CharacterDto();
 
         dto.setId(character.getId());
+        dto.setVersion(character.getVersion());
         dto.setName(character.getName());
         dto.setDescription(character.getDescription());
+        dto.setColorPrimary(character.getColorPrimary());
+        dto.setColorSecondary(character.getColorSecondary());
 
         dto.setCreateDate(character.getCreateDate());
 
@@ -1044,6 +1992,55 @@ public class CharacterService
         return dto;
     }
 
+    protected CharacterDto getCharacterDto(CharacterSummary summary)
+    {
+        CharacterDto dto = new CharacterDto();
+
+        dto.setId(summary.getId());
+        dto.setName(summary.getName());
+        dto.setDescription(summary.getDescription());
+        dto.setColorPrimary(summary.getColorPrimary());
+        dto.setColorSecondary(summary.getColorSecondary());
+
+        return dto;
+    }
+
+    protected CharacterDto getCharacterDto(Tuple tuple, Set<String> fields)
+    {
+        CharacterDto dto = new CharacterDto();
+
+        dto.setId(tuple.get("id", Long.class));
+
+        for (String field : fields)
+        {
+            switch (field)
+            {
+            case "version":
+                dto.setVersion(tuple.get(field, Long.class));
+                break;
+            case "name":
+                dto.setName(tuple.get(field, String.class));
+                break;
+            case "description":
+                dto.setDescription(tuple.get(field, String.class));
+                break;
+            case "colorPrimary":
+                dto.setColorPrimary(tuple.get(field, Integer.class));
+                break;
+            case "colorSecondary":
+                dto.setColorSecondary(tuple.get(field, Integer.class));
+                break;
+            case "createDate":
+                dto.setCreateDate(tuple.get(field, LocalDateTime.class));
+                break;
+            default:
+                break;
+            }
+        }
+
+        return dto;
+    }
+
     protected CharacterGroupDto getCharacterGroupDto(CharacterGroup cg)
         throws Exception
     {
@@ -1056,6 +2053,7 @@ public class CharacterService
         CharacterGroupDto dto = new CharacterGroupDto();
 
         dto.setId(cg.getId());
+        dto.setVersion(cg.getVersion());
 
         dto.setName(cg.getName());
         dto.setDescription(cg.getDescription());
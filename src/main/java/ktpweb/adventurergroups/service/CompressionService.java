@@ -0,0 +1,167 @@
+package ktpweb.adventurergroups.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.WebRequest;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Gzip compression of cached response bodies, done once when they are built
+ * rather than by the servlet container on every request.
+ *
+ * Bodies under the same minimum size the container uses for dynamic
+ * responses are left alone, as are bodies gzip does not shrink. The
+ * compressed-to-original size ratio and the CPU time spent compressing are
+ * published as metrics.
+ */
+@Service
+public class CompressionService
+{
+    public static final String GZIP = "gzip";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${server.compression.min-response-size:2KB}")
+    private DataSize minSize;
+
+    private DistributionSummary ratio;
+
+    private Timer cpuTime;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @PostConstruct
+    private void init()
+    {
+        ratio = DistributionSummary
+            .builder("adventurergroups.compression.ratio")
+            .description("Compressed size over original size")
+            .tag("encoding", GZIP).register(meterRegistry);
+
+        cpuTime = Timer.builder("adventurergroups.compression.cpu")
+            .description("CPU time spent compressing cached bodies")
+            .tag("encoding", GZIP).register(meterRegistry);
+    }
+
+    // Returns the gzipped body, or null if it is too small or would not
+    // shrink.
+    public byte[] gzip(byte[] body)
+    {
+        if (body.length < minSize.toBytes())
+        {
+            return null;
+        }
+
+        long start = getCpuTime();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+            body.length / 4);
+
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed))
+        {
+            out.write(body);
+        }
+        catch (IOException ex)
+        {
+            // In-memory streams do not fail.
+            throw new IllegalStateException(ex);
+        }
+
+        cpuTime.record(getCpuTime() - start, TimeUnit.NANOSECONDS);
+        ratio.record((double) compressed.size() / body.length);
+
+        return compressed.size() < body.length ? compressed.toByteArray()
+            : null;
+    }
+
+    // True if the request's Accept-Encoding allows gzip with a non-zero
+    // quality. An explicit gzip takes precedence over the wildcard, which
+    // only counts when gzip is not listed.
+    public static boolean acceptsGzip(WebRequest request)
+    {
+        String header = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+
+        if (!StringUtils.hasText(header))
+        {
+            return false;
+        }
+
+        Boolean gzip = null;
+        Boolean wildcard = null;
+
+        for (String coding : header.split(","))
+        {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+
+            if (gzip == null && name.equalsIgnoreCase(GZIP))
+            {
+                gzip = isAccepted(parts);
+            }
+            else if (wildcard == null && name.equals("*"))
+            {
+                wildcard = isAccepted(parts);
+            }
+        }
+
+        if (gzip != null)
+        {
+            return gzip;
+        }
+
+        return wildcard != null && wildcard;
+    }
+
+    // False if the coding's parameters give it a zero quality.
+    private static boolean isAccepted(String[] parts)
+    {
+        for (int i = 1; i < parts.length; i++)
+        {
+            String param = parts[i].trim();
+
+            if (param.startsWith("q=") && isZero(param.substring(2)))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isZero(String quality)
+    {
+        try
+        {
+            return Double.parseDouble(quality.trim()) == 0;
+        }
+        catch (NumberFormatException ex)
+        {
+            return false;
+        }
+    }
+
+    // Falls back to wall time on JVMs without per-thread CPU accounting.
+    private long getCpuTime()
+    {
+        return threads.isCurrentThreadCpuTimeSupported()
+            ? threads.getCurrentThreadCpuTime()
+            : System.nanoTime();
+    }
+}
@@ -0,0 +1,89 @@
+package ktpweb.adventurergroups.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ktpweb.adventurergroups.modelfilter.CharacterDtoFilters;
+import ktpweb.adventurergroups.modelfilter.FieldSet;
+
+/**
+ * Parses the fields= parameter of the list endpoints into field sets.
+ *
+ * Each distinct set is built once, and kept in a bounded cache keyed by its
+ * sorted field names, so its filters and the serializers ViewWriters compiles
+ * for them are reused by every request asking for the same fields.
+ */
+@Service
+public class FieldSetService
+{
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${adventurergroups.fieldsets.maxSize:1000}")
+    private Long maxSize;
+
+    private Cache<String, FieldSet> characterListFieldSets;
+
+    @PostConstruct
+    private void init()
+    {
+        characterListFieldSets = Caffeine.newBuilder().maximumSize(maxSize)
+            .recordStats().build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, characterListFieldSets,
+            "characterListFieldSets");
+    }
+
+    // Returns the field set for a comma-separated list of Character fields.
+    // Throws if the list is empty or names a field lists cannot select.
+    public FieldSet getCharacterListFieldSet(String fields)
+        throws IllegalArgumentException
+    {
+        Set<String> fieldNames = parse(fields);
+
+        for (String field : fieldNames)
+        {
+            if (!CharacterDtoFilters.isListField(field))
+            {
+                throw new IllegalArgumentException(
+                    "Unknown Character field: " + field);
+            }
+        }
+
+        return characterListFieldSets.get(String.join(",", fieldNames),
+            k -> CharacterDtoFilters
+                .listFieldSet(Collections.unmodifiableSet(fieldNames)));
+    }
+
+    private static Set<String> parse(String fields)
+    {
+        Set<String> fieldNames = new TreeSet<>();
+
+        if (fields != null)
+        {
+            Arrays.stream(fields.split(",")).map(String::trim)
+                .filter(StringUtils::hasText).forEach(fieldNames::add);
+        }
+
+        if (fieldNames.isEmpty())
+        {
+            throw new IllegalArgumentException("No fields given");
+        }
+
+        return fieldNames;
+    }
+}
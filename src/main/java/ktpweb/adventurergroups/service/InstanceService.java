@@ -1,6 +1,7 @@
 package ktpweb.adventurergroups.service;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -14,14 +15,19 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
-import ktpweb.adventurergroups.entity.Character;
-import ktpweb.adventurergroups.entity.CharacterGroup;
 import ktpweb.adventurergroups.entity.Instance;
 import ktpweb.adventurergroups.entity.UserAccount;
 import ktpweb.adventurergroups.exception.InstanceServiceException;
+import ktpweb.adventurergroups.model.CursorPage;
 import ktpweb.adventurergroups.model.InstanceDto;
+import ktpweb.adventurergroups.model.InstanceOverviewDto;
+import ktpweb.adventurergroups.model.InstanceStatisticsDto;
 import ktpweb.adventurergroups.model.OwnerDto;
+import ktpweb.adventurergroups.repository.CharacterGroupRepository;
+import ktpweb.adventurergroups.repository.CharacterRepository;
 import ktpweb.adventurergroups.repository.InstanceRepository;
+import ktpweb.adventurergroups.repository.UserAccountRepository;
+import ktpweb.adventurergroups.service.OwnershipCacheService.ResourceType;
 import ktpweb.adventurergroups.util.UserAccountUtils.UserAccountRoles;
 import lombok.extern.slf4j.Slf4j;
 
@@ -32,18 +38,49 @@ public class InstanceService
     @Autowired
     private InstanceRepository instanceRepository;
 
+    @Autowired
+    private CharacterRepository characterRepository;
+
+    @Autowired
+    private CharacterGroupRepository characterGroupRepository;
+
+    @Autowired
+    private UserAccountRepository userAccountRepository;
+
     @Autowired
     private UserAccountService userAccountService;
 
     @Autowired
     private CharacterService characterService;
 
+    @Autowired
+    private PaginationService paginationService;
+
+    @Autowired
+    private OwnershipCacheService ownershipCacheService;
+
+    @Autowired
+    private SubdomainService subdomainService;
+
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private CharacterSearchService characterSearchService;
+
+    @Autowired
+    private NameCompletionService nameCompletionService;
+
+    @Autowired
+    private InstanceStatisticsService instanceStatisticsService;
+
     // -----------------------------------------------------------------------------------------------------------------
     // Instance-related public methods.
     // -----------------------------------------------------------------------------------------------------------------
 
     private final String EXCEPTION_CREATE = "Cannot create Instance for user account with id: ";
     private final String EXCEPTION_RETRIEVE = "Cannot retrieve Instance with id: ";
+    private final String EXCEPTION_RETRIEVE_STATISTICS = "Cannot retrieve statistics for Instance with id: ";
     private final String EXCEPTION_UPDATE = "Cannot update Instance with id: ";
     private final String EXCEPTION_DELETE = "Cannot delete Instance with id: ";
 
@@ -51,6 +88,7 @@ public class InstanceService
     private final String EXCEPTION_DEACTIVATE = "Cannot deactivate Instance with id: ";
 
     private final String EXCEPTION_RETRIEVE_FOR_OWNER = "Cannot retrieve Instances for user account with id: ";
+    private final String EXCEPTION_RETRIEVE_OVERVIEWS_FOR_OWNER = "Cannot retrieve Instance overviews for user account with id: ";
 
     private final String EXCEPTION_MODEL = "Cannot return model for Instance with id: ";
 
@@ -132,6 +170,13 @@ public class InstanceService
 
         log.info("Created Instance with id: {}", instanceEntity.getId());
 
+        ownershipCacheService.evictResource(ResourceType.INSTANCE,
+            instanceEntity.getId());
+        subdomainService.instanceChanged(instanceEntity.getId(),
+            instanceEntity.getSubdomainName(), instanceEntity.getActive());
+        instanceContentChanged(instanceEntity.getId());
+        instanceStatisticsService.instanceCreated(instanceEntity.getId());
+
         // Return full DTO.
         try
         {
@@ -168,7 +213,7 @@ public class InstanceService
 
         try
         {
-            instanceEntity = getInstanceEntity(instanceId);
+            instanceEntity = getInstanceEntity(instanceId, false);
         }
         catch (Exception ex)
         {
@@ -199,6 +244,38 @@ public class InstanceService
         }
     }
 
+    // Reads the Instance's counters rather than counting its contents, so
+    // the cost does not grow with the number of Characters.
+    @Transactional(readOnly = true)
+    public InstanceStatisticsDto retrieveStatisticsForInstance(Long instanceId)
+        throws InstanceServiceException
+    {
+        InstanceStatisticsDto statistics;
+
+        try
+        {
+            statistics = instanceStatisticsService.getStatistics(instanceId);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_RETRIEVE_STATISTICS + instanceId
+                    + ". Error reading from database",
+                InstanceServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        // Deleted Instances lose their counters along with their contents.
+        if (statistics == null)
+        {
+            throw generateException(
+                EXCEPTION_RETRIEVE_STATISTICS + instanceId
+                    + ". Instance not found",
+                InstanceServiceException.Codes.INSTANCE_NOT_FOUND);
+        }
+
+        return statistics;
+    }
+
     @Transactional
     public InstanceDto updateInstance(Long instanceId,
         InstanceDto instanceUpdate) throws InstanceServiceException
@@ -281,6 +358,10 @@ public class InstanceService
 
         log.info("Updated Instance with id: {}", instanceId);
 
+        subdomainService.instanceChanged(instanceId,
+            instanceEntity.getSubdomainName(), instanceEntity.getActive());
+        instanceContentChanged(instanceId);
+
         // Return full DTO.
         try
         {
@@ -319,43 +400,35 @@ public class InstanceService
                 InstanceServiceException.Codes.INSTANCE_NOT_FOUND);
         }
 
-        // Soft-delete all associated Maintainers, Characters, and
-        // Character Groups.
-        for (UserAccount m : instanceEntity.getMaintainers())
-        {
-            m.setDeleted(true);
-            m.setDeleteDate(LocalDateTime.now());
-        }
-
-        for (Character c : instanceEntity.getCharacters())
-        {
-            c.setDeleted(true);
-            c.setDeleteDate(LocalDateTime.now());
-        }
+        // Attempt to soft-delete instance, and all associated Maintainers,
+        // Characters, and Character Groups with it. The instance itself goes
+        // through its entity, as it is already loaded.
+        LocalDateTime deleteDate = LocalDateTime.now();
 
-        for (CharacterGroup cg : instanceEntity.getCharacterGroups())
-        {
-            cg.setDeleted(true);
-            cg.setDeleteDate(LocalDateTime.now());
-        }
-
-        // Attempt to soft-delete instance.
         instanceEntity.setDeleted(true);
-        instanceEntity.setDeleteDate(LocalDateTime.now());
+        instanceEntity.setDeleteDate(deleteDate);
 
         try
         {
+            deleteInstanceContents(List.of(instanceId), deleteDate);
             instanceRepository.save(instanceEntity);
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_DEACTIVATE + instanceId
-                    + ". Error writing to database",
+                EXCEPTION_DELETE + instanceId + ". Error writing to database",
                 InstanceServiceException.Codes.DATABASE_ERROR_WRITE, ex);
         }
 
         log.info("Deleted Instance with id: {}", instanceId);
+
+        // The instance's characters were deleted along with it.
+        ownershipCacheService.evictAll();
+        subdomainService.instanceRemoved(instanceId);
+        characterSearchService.instanceRemoved(instanceId);
+        nameCompletionService.instanceRemoved(instanceId);
+        instanceContentChanged(instanceId);
+        snapshotService.instanceRemoved(instanceId);
     }
 
     @Transactional
@@ -409,6 +482,10 @@ public class InstanceService
 
         log.info("Activated Instance with id: {}", instanceEntity.getId());
 
+        subdomainService.instanceChanged(instanceEntity.getId(),
+            instanceEntity.getSubdomainName(), instanceEntity.getActive());
+        instanceContentChanged(instanceEntity.getId());
+
         // Return full DTO.
         try
         {
@@ -474,6 +551,10 @@ public class InstanceService
 
         log.info("Deactivated Instance with id: {}", instanceEntity.getId());
 
+        subdomainService.instanceChanged(instanceEntity.getId(),
+            instanceEntity.getSubdomainName(), instanceEntity.getActive());
+        instanceContentChanged(instanceEntity.getId());
+
         // Return full DTO.
         try
         {
@@ -488,28 +569,21 @@ public class InstanceService
         }
     }
 
-    @Transactional
-    public List<InstanceDto> retrieveInstancesForOwner(OwnerDto owner)
-        throws InstanceServiceException
+    @Transactional(readOnly = true)
+    public CursorPage<InstanceDto> retrieveInstancesForOwner(Long ownerId,
+        String after, Integer limit) throws InstanceServiceException
     {
         // Load and validate Owner.
-        if (owner == null)
-        {
-            throw generateException(
-                "Attempted retrieval of instances for a null user account",
-                InstanceServiceException.Codes.INVALID_OWNER_OBJECT);
-        }
-
         UserAccount ownerEntity;
 
         try
         {
-            ownerEntity = userAccountService.getUserAccountEntity(owner);
+            ownerEntity = userAccountService.getUserAccountEntity(ownerId);
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_RETRIEVE_FOR_OWNER + owner.getId()
+                EXCEPTION_RETRIEVE_FOR_OWNER + ownerId
                     + ". Error reading user account from database",
                 InstanceServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
@@ -517,7 +591,7 @@ public class InstanceService
         if (ownerEntity == null)
         {
             throw generateException(
-                EXCEPTION_RETRIEVE_FOR_OWNER + owner.getId()
+                EXCEPTION_RETRIEVE_FOR_OWNER + ownerId
                     + ". User Account not found",
                 InstanceServiceException.Codes.OWNER_NOT_FOUND);
         }
@@ -525,50 +599,117 @@ public class InstanceService
         if (ownerEntity.getRole() != UserAccountRoles.USER_ROLE_OWNER)
         {
             throw generateException(
-                EXCEPTION_RETRIEVE_FOR_OWNER + owner.getId()
+                EXCEPTION_RETRIEVE_FOR_OWNER + ownerId
                     + ". User Account is not an owner role",
                 InstanceServiceException.Codes.INVALID_OWNER_ROLE);
         }
 
-        // Attempt to read from the database.
+        Long afterId;
+
+        try
+        {
+            afterId = paginationService.decodeCursor(after);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw generateException(
+                EXCEPTION_RETRIEVE_FOR_OWNER + ownerId + ". Invalid cursor: "
+                    + after,
+                InstanceServiceException.Codes.INVALID_CURSOR, ex);
+        }
+
+        // Attempt to read one page from the database.
         List<Instance> instanceEntities;
 
         try
         {
-            instanceEntities = getInstanceEntitiesForOwner(ownerEntity);
+            instanceEntities = instanceRepository
+                .findByOwnerIdAndDeletedFalseAndIdGreaterThanOrderByIdAsc(
+                    ownerId, afterId, paginationService.getPageable(limit));
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_RETRIEVE_FOR_OWNER + owner.getId()
+                EXCEPTION_RETRIEVE_FOR_OWNER + ownerId
                     + ". Error reading from database",
                 InstanceServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
 
-        // Return DTO list.
+        // Return DTO page.
         try
         {
-            return Optional.ofNullable(instanceEntities).map(List::stream)
-                .orElseGet(Stream::empty).map(c -> {
+            return paginationService.getPage(instanceEntities, limit,
+                Instance::getId, i -> {
                     try
                     {
-                        return getInstanceDto(c, true);
+                        return getInstanceDto(i, true);
                     }
                     catch (Exception e)
                     {
                         throw new RuntimeException(e);
                     }
-                }).collect(Collectors.toList());
+                });
         }
         catch (Exception ex)
         {
             throw generateException(
-                EXCEPTION_RETRIEVE_FOR_OWNER + owner.getId()
+                EXCEPTION_RETRIEVE_FOR_OWNER + ownerId
                     + ". Error reading from database",
                 InstanceServiceException.Codes.DATABASE_ERROR_READ_MAPPING, ex);
         }
     }
 
+    // Every Instance of the Owner with the counts of its contents, for the
+    // Owner's dashboard. Read with two queries however many Instances there
+    // are, from the counters rather than the Instances' collections.
+    @Transactional(readOnly = true)
+    public List<InstanceOverviewDto> retrieveInstanceOverviewsForOwner(
+        Long ownerId) throws InstanceServiceException
+    {
+        // Load and validate Owner.
+        UserAccount ownerEntity;
+
+        try
+        {
+            ownerEntity = userAccountService.getUserAccountEntity(ownerId);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_RETRIEVE_OVERVIEWS_FOR_OWNER + ownerId
+                    + ". Error reading user account from database",
+                InstanceServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        if (ownerEntity == null)
+        {
+            throw generateException(
+                EXCEPTION_RETRIEVE_OVERVIEWS_FOR_OWNER + ownerId
+                    + ". User Account not found",
+                InstanceServiceException.Codes.OWNER_NOT_FOUND);
+        }
+
+        if (ownerEntity.getRole() != UserAccountRoles.USER_ROLE_OWNER)
+        {
+            throw generateException(
+                EXCEPTION_RETRIEVE_OVERVIEWS_FOR_OWNER + ownerId
+                    + ". User Account is not an owner role",
+                InstanceServiceException.Codes.INVALID_OWNER_ROLE);
+        }
+
+        try
+        {
+            return instanceStatisticsService.getOverviewsForOwner(ownerId);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_RETRIEVE_OVERVIEWS_FOR_OWNER + ownerId
+                    + ". Error reading from database",
+                InstanceServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     // General methods, not to be used with business layer.
     // -----------------------------------------------------------------------------------------------------------------
@@ -577,10 +718,29 @@ public class InstanceService
     {
         try
         {
-            Instance instance = instanceRepository.findById(id).orElse(null);
+            return instanceRepository.findByIdAndDeletedFalse(id).orElse(null);
+        }
+        catch (IllegalArgumentException iae)
+        {
+            return null;
+        }
+    }
+
+    // Loads the entity along with the associations its full DTO needs.
+    // Maintainers and groups are still read lazily, one query each, to avoid
+    // a cartesian product.
+    protected Instance getInstanceEntity(Long id, Boolean skipNested)
+        throws Exception
+    {
+        if (skipNested)
+        {
+            return getInstanceEntity(id);
+        }
 
-            return (instance == null || instance.getDeleted()) ? null
-                : instance;
+        try
+        {
+            return instanceRepository.findFullByIdAndDeletedFalse(id)
+                .orElse(null);
         }
         catch (IllegalArgumentException iae)
         {
@@ -594,14 +754,62 @@ public class InstanceService
         return getInstanceEntity(instanceDto.getId());
     }
 
-    protected List<Instance> getInstanceEntitiesForOwner(
-        UserAccount userAccount) throws Exception
+    // Every write to an Instance or anything shown in its public views ends
+    // here, inside the writing transaction. The content version is bumped in
+    // the same transaction, so its ETags change exactly when the data does.
+    protected void instanceContentChanged(Long instanceId)
+    {
+        instanceRepository.incrementContentVersion(instanceId,
+            LocalDateTime.now());
+        snapshotService.instanceChanged(instanceId);
+    }
+
+    // Soft-deletes every Instance of an Owner, along with their contents, with
+    // a handful of bulk updates rather than loading each row. Returns the ids
+    // of the deleted Instances.
+    protected List<Long> deleteInstancesForOwner(Long ownerId,
+        LocalDateTime deleteDate)
+    {
+        List<Long> instanceIds = instanceRepository.findIdsByOwnerId(ownerId);
+
+        if (instanceIds.isEmpty())
+        {
+            return instanceIds;
+        }
+
+        deleteInstanceContents(instanceIds, deleteDate);
+        instanceRepository.softDeleteByIds(instanceIds, deleteDate);
+
+        for (Long instanceId : instanceIds)
+        {
+            subdomainService.instanceRemoved(instanceId);
+            characterSearchService.instanceRemoved(instanceId);
+            nameCompletionService.instanceRemoved(instanceId);
+            snapshotService.instanceRemoved(instanceId);
+        }
+
+        return instanceIds;
+    }
+
+    // Soft-deletes the Maintainers, Characters, and Character Groups of the
+    // Instances, one bulk update each. Entities already loaded in the
+    // persistence context are left stale.
+    private void deleteInstanceContents(Collection<Long> instanceIds,
+        LocalDateTime deleteDate)
     {
-        return Optional
-            .ofNullable(instanceRepository.findAllByOwner(userAccount))
-            .map(List::stream).orElseGet(Stream::empty).filter(i -> {
-                return i != null && !i.getDeleted();
-            }).collect(Collectors.toList());
+        int maintainers = userAccountRepository
+            .softDeleteByParentInstanceIds(instanceIds, deleteDate);
+        int characters = characterRepository
+            .softDeleteByInstanceIds(instanceIds, deleteDate);
+        int characterGroups = characterGroupRepository
+            .softDeleteByInstanceIds(instanceIds, deleteDate);
+
+        instanceStatisticsService.instancesRemoved(instanceIds);
+
+        log.debug(
+            "Deleted {} Maintainers, {} Characters, and {} Character Groups "
+                + "of {} Instances",
+            maintainers, characters, characterGroups, instanceIds.size());
     }
 
     private Boolean instanceExists(String subdomainName)
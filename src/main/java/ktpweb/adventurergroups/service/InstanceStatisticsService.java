@@ -0,0 +1,588 @@
+package ktpweb.adventurergroups.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ktpweb.adventurergroups.model.InstanceOverviewDto;
+import ktpweb.adventurergroups.model.InstanceStatisticsDto;
+import ktpweb.adventurergroups.util.UserAccountUtils.UserAccountRoles;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Counters of each Instance's Characters, Character Groups and Maintainers,
+ * so statistics are read from one row per Instance and one per Character
+ * Group instead of counting the Instance's contents.
+ *
+ * Every write in CharacterService, UserAccountService and InstanceService
+ * describes what it changed as a Change, applied in the writing transaction,
+ * so the counters commit or roll back with the data. Each Change updates the
+ * Instance's row first, then its Character Groups' rows, so writers to an
+ * Instance are serialized on that row and never deadlock.
+ *
+ * A scheduled reconciliation recounts every Instance, in batches that each
+ * commit on their own. It locks the batch's rows before counting, so a
+ * writer is either committed and counted, or applies its Change after the
+ * recount. Counters found off are fixed, logged and published as a metric.
+ */
+@Service
+@Slf4j
+public class InstanceStatisticsService
+{
+    // What a write changed in one Instance. Counts are deltas.
+    @Getter
+    public static class Change
+    {
+        private long characters;
+        private long characterGroups;
+        private long registeredMaintainers;
+        private long unregisteredMaintainers;
+
+        // Change in the Characters of each existing Character Group.
+        private final Map<Long, Long> groupCharacters = new LinkedHashMap<>();
+
+        private final List<Long> createdGroups = new ArrayList<>();
+        private final List<Long> removedGroups = new ArrayList<>();
+
+        public Change characters(long delta, Long characterGroupId)
+        {
+            characters += delta;
+
+            if (characterGroupId != null)
+            {
+                groupCharacters.merge(characterGroupId, delta, Long::sum);
+            }
+
+            return this;
+        }
+
+        public Change characterMoved(Long fromGroupId, Long toGroupId)
+        {
+            if (!Objects.equals(fromGroupId, toGroupId))
+            {
+                characters(-1, fromGroupId);
+                characters(1, toGroupId);
+            }
+
+            return this;
+        }
+
+        // Moves count Characters between Character Groups, either of which
+        // may be null for no group.
+        public Change charactersMoved(long count, Long fromGroupId,
+            Long toGroupId)
+        {
+            if (fromGroupId != null)
+            {
+                characters(-count, fromGroupId);
+                characters += count;
+            }
+
+            if (toGroupId != null)
+            {
+                characters(count, toGroupId);
+                characters -= count;
+            }
+
+            return this;
+        }
+
+        public Change characterGroupCreated(Long characterGroupId)
+        {
+            characterGroups++;
+            createdGroups.add(characterGroupId);
+            return this;
+        }
+
+        // Its Characters must have been moved out first.
+        public Change characterGroupRemoved(Long characterGroupId)
+        {
+            characterGroups--;
+            removedGroups.add(characterGroupId);
+            groupCharacters.remove(characterGroupId);
+            return this;
+        }
+
+        public Change maintainers(long delta, UserAccountRoles role)
+        {
+            if (role == UserAccountRoles.USER_ROLE_MAINTAINER)
+            {
+                registeredMaintainers += delta;
+            }
+            else if (role == UserAccountRoles.USER_ROLE_UNREGISTERED)
+            {
+                unregisteredMaintainers += delta;
+            }
+
+            return this;
+        }
+
+        public Change maintainerRegistered()
+        {
+            unregisteredMaintainers--;
+            registeredMaintainers++;
+            return this;
+        }
+
+        public boolean isEmpty()
+        {
+            return characters == 0 && characterGroups == 0
+                && registeredMaintainers == 0 && unregisteredMaintainers == 0
+                && groupCharacters.values().stream().allMatch(d -> d == 0)
+                && createdGroups.isEmpty() && removedGroups.isEmpty();
+        }
+    }
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${adventurergroups.statistics.batchSize:100}")
+    private Integer batchSize;
+
+    private Counter driftedInstances;
+
+    private Timer batchTime;
+
+    @PostConstruct
+    private void init()
+    {
+        driftedInstances = Counter
+            .builder("adventurergroups.statistics.drift")
+            .description("Instances whose counters were found off")
+            .register(meterRegistry);
+
+        batchTime = Timer.builder("adventurergroups.statistics.reconcile")
+            .description("Time spent recounting one batch of Instances")
+            .register(meterRegistry);
+    }
+
+    // Starts the counters of a new Instance at zero. Must be called in the
+    // creating transaction.
+    public void instanceCreated(Long instanceId)
+    {
+        jdbcTemplate.update("insert into instance_statistics (instance_id, "
+            + "character_count, character_group_count, "
+            + "registered_maintainer_count, unregistered_maintainer_count, "
+            + "update_date) values (:instanceId, 0, 0, 0, 0, :updateDate)",
+            new MapSqlParameterSource("instanceId", instanceId).addValue(
+                "updateDate", Timestamp.valueOf(LocalDateTime.now())));
+    }
+
+    // Drops the counters of deleted Instances. Must be called in the deleting
+    // transaction.
+    public void instancesRemoved(Collection<Long> instanceIds)
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource("instanceIds",
+            instanceIds);
+
+        jdbcTemplate.update("delete from instance_statistics "
+            + "where instance_id in (:instanceIds)", params);
+        jdbcTemplate.update("delete from character_group_statistics "
+            + "where instance_id in (:instanceIds)", params);
+    }
+
+    // Applies the change to the Instance's counters. Must be called in the
+    // writing transaction.
+    public void apply(Long instanceId, Change change)
+    {
+        // Most updates change no count, and leave the Instance's row unlocked.
+        if (change.isEmpty())
+        {
+            return;
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("instanceId", instanceId)
+            .addValue("characters", change.getCharacters())
+            .addValue("characterGroups", change.getCharacterGroups())
+            .addValue("registered", change.getRegisteredMaintainers())
+            .addValue("unregistered", change.getUnregisteredMaintainers())
+            .addValue("updateDate", Timestamp.valueOf(LocalDateTime.now()));
+
+        int updated = jdbcTemplate.update("update instance_statistics set "
+            + "character_count = character_count + :characters, "
+            + "character_group_count = character_group_count "
+            + "+ :characterGroups, "
+            + "registered_maintainer_count = registered_maintainer_count "
+            + "+ :registered, "
+            + "unregistered_maintainer_count = unregistered_maintainer_count "
+            + "+ :unregistered, update_date = :updateDate "
+            + "where instance_id = :instanceId", params);
+
+        if (updated == 0)
+        {
+            // Left for the reconciliation to create.
+            log.warn("No statistics for Instance id: {}", instanceId);
+            return;
+        }
+
+        if (!change.getCreatedGroups().isEmpty())
+        {
+            jdbcTemplate.batchUpdate("insert into character_group_statistics "
+                + "(character_group_id, instance_id, character_count) "
+                + "values (:characterGroupId, :instanceId, 0)",
+                change.getCreatedGroups().stream()
+                    .map(id -> new MapSqlParameterSource("characterGroupId", id)
+                        .addValue("instanceId", instanceId))
+                    .toArray(SqlParameterSource[]::new));
+        }
+
+        if (!change.getGroupCharacters().isEmpty())
+        {
+            jdbcTemplate.batchUpdate("update character_group_statistics "
+                + "set character_count = character_count + :delta "
+                + "where character_group_id = :characterGroupId "
+                + "and instance_id = :instanceId",
+                change.getGroupCharacters().entrySet().stream()
+                    .map(e -> new MapSqlParameterSource("characterGroupId",
+                        e.getKey()).addValue("delta", e.getValue())
+                        .addValue("instanceId", instanceId))
+                    .toArray(SqlParameterSource[]::new));
+        }
+
+        if (!change.getRemovedGroups().isEmpty())
+        {
+            jdbcTemplate.update("delete from character_group_statistics "
+                + "where character_group_id in (:characterGroupIds)",
+                new MapSqlParameterSource("characterGroupIds",
+                    change.getRemovedGroups()));
+        }
+    }
+
+    // The Instance's counters, or null if it has none.
+    public InstanceStatisticsDto getStatistics(Long instanceId)
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource("instanceId",
+            instanceId);
+
+        List<InstanceStatisticsDto> rows = jdbcTemplate.query(
+            "select * from instance_statistics where instance_id = :instanceId",
+            params, (rs, i) -> {
+                InstanceStatisticsDto dto = new InstanceStatisticsDto();
+
+                dto.setInstanceId(rs.getLong("instance_id"));
+                dto.setCharacterCount(rs.getLong("character_count"));
+                dto.setCharacterGroupCount(rs.getLong("character_group_count"));
+                dto.setRegisteredMaintainerCount(
+                    rs.getLong("registered_maintainer_count"));
+                dto.setUnregisteredMaintainerCount(
+                    rs.getLong("unregistered_maintainer_count"));
+                dto.setMaintainerCount(dto.getRegisteredMaintainerCount()
+                    + dto.getUnregisteredMaintainerCount());
+
+                Timestamp updateDate = rs.getTimestamp("update_date");
+                dto.setUpdateDate(
+                    updateDate != null ? updateDate.toLocalDateTime() : null);
+
+                return dto;
+            });
+
+        if (rows.isEmpty())
+        {
+            return null;
+        }
+
+        Map<Long, Long> groupCounts = new LinkedHashMap<>();
+
+        jdbcTemplate.query("select character_group_id, character_count "
+            + "from character_group_statistics where instance_id = :instanceId "
+            + "order by character_group_id", params,
+            rs -> {
+                groupCounts.put(rs.getLong(1), rs.getLong(2));
+            });
+
+        InstanceStatisticsDto statistics = rows.get(0);
+        statistics.setCharacterGroupCounts(groupCounts);
+
+        return statistics;
+    }
+
+    // Every Instance of the Owner with its counters, in one query however many
+    // Instances there are. Instances missing their counters, until the next
+    // reconciliation, show zero counts.
+    public List<InstanceOverviewDto> getOverviewsForOwner(Long ownerId)
+    {
+        return jdbcTemplate.query("select i.id, i.active, i.subdomain_name, "
+            + "i.display_name, i.create_date, i.last_modified_date, "
+            + "s.character_count, s.character_group_count, "
+            + "s.registered_maintainer_count, "
+            + "s.unregistered_maintainer_count "
+            + "from instance i left join instance_statistics s "
+            + "on s.instance_id = i.id "
+            + "where i.owner_id = :ownerId and i.deleted = false order by i.id",
+            new MapSqlParameterSource("ownerId", ownerId), (rs, i) -> {
+                InstanceOverviewDto dto = new InstanceOverviewDto();
+
+                dto.setId(rs.getLong("id"));
+                dto.setActive(rs.getBoolean("active"));
+                dto.setSubdomainName(rs.getString("subdomain_name"));
+                dto.setDisplayName(rs.getString("display_name"));
+
+                dto.setCharacterCount(rs.getLong("character_count"));
+                dto.setCharacterGroupCount(rs.getLong("character_group_count"));
+                dto.setRegisteredMaintainerCount(
+                    rs.getLong("registered_maintainer_count"));
+                dto.setUnregisteredMaintainerCount(
+                    rs.getLong("unregistered_maintainer_count"));
+                dto.setMaintainerCount(dto.getRegisteredMaintainerCount()
+                    + dto.getUnregisteredMaintainerCount());
+
+                Timestamp createDate = rs.getTimestamp("create_date");
+                dto.setCreateDate(
+                    createDate != null ? createDate.toLocalDateTime() : null);
+
+                // Instances unchanged since the versions were added were last
+                // modified when created.
+                Timestamp modifiedDate = rs.getTimestamp("last_modified_date");
+                dto.setLastModifiedDate(modifiedDate != null
+                    ? modifiedDate.toLocalDateTime()
+                    : dto.getCreateDate());
+
+                return dto;
+            });
+    }
+
+    @Scheduled(cron = "${adventurergroups.statistics.cron:0 0 4 * * *}")
+    public void scheduledReconcile()
+    {
+        try
+        {
+            reconcile();
+        }
+        catch (Exception ex)
+        {
+            log.error("Reconciliation of Instance statistics failed", ex);
+        }
+    }
+
+    // Recounts every Instance, returning the number whose counters were off.
+    public long reconcile()
+    {
+        long afterId = 0;
+        long drifted = 0;
+
+        while (true)
+        {
+            final long batchAfterId = afterId;
+
+            List<Long> instanceIds = jdbcTemplate.queryForList(
+                "select id from instance where deleted = false "
+                    + "and id > :afterId order by id limit :limit",
+                new MapSqlParameterSource("afterId", batchAfterId)
+                    .addValue("limit", batchSize),
+                Long.class);
+
+            if (instanceIds.isEmpty())
+            {
+                break;
+            }
+
+            drifted += batchTime.record(() -> transactionTemplate
+                .execute(status -> reconcileBatch(instanceIds)));
+
+            if (instanceIds.size() < batchSize)
+            {
+                break;
+            }
+
+            afterId = instanceIds.get(instanceIds.size() - 1);
+        }
+
+        if (drifted > 0)
+        {
+            log.warn("Fixed the statistics of {} Instances", drifted);
+        }
+
+        return drifted;
+    }
+
+    // Recounts the Instances in the caller's transaction, returning the number
+    // whose counters were off.
+    private long reconcileBatch(List<Long> instanceIds)
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource("instanceIds",
+            instanceIds);
+
+        // Lock the current counters, waiting for writers holding them.
+        Map<Long, List<Long>> stored = new HashMap<>();
+
+        jdbcTemplate.query("select instance_id, character_count, "
+            + "character_group_count, registered_maintainer_count, "
+            + "unregistered_maintainer_count from instance_statistics "
+            + "where instance_id in (:instanceIds) for update", params,
+            rs -> {
+                stored.put(rs.getLong(1), List.of(rs.getLong(2),
+                    rs.getLong(3), rs.getLong(4), rs.getLong(5)));
+            });
+
+        Map<Long, Long> storedGroups = new HashMap<>();
+
+        jdbcTemplate.query("select character_group_id, character_count "
+            + "from character_group_statistics "
+            + "where instance_id in (:instanceIds) for update", params,
+            rs -> {
+                storedGroups.put(rs.getLong(1), rs.getLong(2));
+            });
+
+        // Count what is there now.
+        Map<Long, long[]> counted = new HashMap<>();
+
+        for (Long instanceId : instanceIds)
+        {
+            counted.put(instanceId, new long[4]);
+        }
+
+        jdbcTemplate.query("select instance_id, count(*) from characterobject "
+            + "where instance_id in (:instanceIds) and deleted = false "
+            + "group by instance_id", params,
+            rs -> {
+                counted.get(rs.getLong(1))[0] = rs.getLong(2);
+            });
+
+        Map<Long, Long> countedGroups = new HashMap<>();
+        Map<Long, Long> groupInstances = new HashMap<>();
+
+        jdbcTemplate.query("select cg.id, cg.instance_id, "
+            + "(select count(*) from characterobject c "
+            + "where c.group_id = cg.id and c.deleted = false) "
+            + "from character_group cg "
+            + "where cg.instance_id in (:instanceIds) and cg.deleted = false",
+            params, rs -> {
+                countedGroups.put(rs.getLong(1), rs.getLong(3));
+                groupInstances.put(rs.getLong(1), rs.getLong(2));
+                counted.get(rs.getLong(2))[1]++;
+            });
+
+        jdbcTemplate.query("select instance_id, role, count(*) "
+            + "from user_account where instance_id in (:instanceIds) "
+            + "and deleted = false group by instance_id, role", params,
+            rs -> {
+                int role = rs.getInt(2);
+
+                if (role == UserAccountRoles.USER_ROLE_MAINTAINER.ordinal())
+                {
+                    counted.get(rs.getLong(1))[2] = rs.getLong(3);
+                }
+                else if (role == UserAccountRoles.USER_ROLE_UNREGISTERED
+                    .ordinal())
+                {
+                    counted.get(rs.getLong(1))[3] = rs.getLong(3);
+                }
+            });
+
+        // Fix what is off.
+        Set<Long> drifted = new HashSet<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        for (Long instanceId : instanceIds)
+        {
+            long[] counts = counted.get(instanceId);
+            List<Long> storedCounts = stored.get(instanceId);
+
+            if (storedCounts != null && storedCounts.equals(List.of(counts[0],
+                counts[1], counts[2], counts[3])))
+            {
+                continue;
+            }
+
+            drifted.add(instanceId);
+
+            MapSqlParameterSource row = new MapSqlParameterSource()
+                .addValue("instanceId", instanceId)
+                .addValue("characters", counts[0])
+                .addValue("characterGroups", counts[1])
+                .addValue("registered", counts[2])
+                .addValue("unregistered", counts[3])
+                .addValue("updateDate", now);
+
+            jdbcTemplate.update(storedCounts != null
+                ? "update instance_statistics set "
+                    + "character_count = :characters, "
+                    + "character_group_count = :characterGroups, "
+                    + "registered_maintainer_count = :registered, "
+                    + "unregistered_maintainer_count = :unregistered, "
+                    + "update_date = :updateDate "
+                    + "where instance_id = :instanceId"
+                : "insert into instance_statistics (instance_id, "
+                    + "character_count, character_group_count, "
+                    + "registered_maintainer_count, "
+                    + "unregistered_maintainer_count, update_date) values "
+                    + "(:instanceId, :characters, :characterGroups, "
+                    + ":registered, :unregistered, :updateDate)",
+                row);
+        }
+
+        for (Map.Entry<Long, Long> group : countedGroups.entrySet())
+        {
+            Long storedCount = storedGroups.remove(group.getKey());
+
+            if (group.getValue().equals(storedCount))
+            {
+                continue;
+            }
+
+            drifted.add(groupInstances.get(group.getKey()));
+
+            MapSqlParameterSource row = new MapSqlParameterSource()
+                .addValue("characterGroupId", group.getKey())
+                .addValue("instanceId", groupInstances.get(group.getKey()))
+                .addValue("characters", group.getValue());
+
+            jdbcTemplate.update(storedCount != null
+                ? "update character_group_statistics "
+                    + "set character_count = :characters "
+                    + "where character_group_id = :characterGroupId"
+                : "insert into character_group_statistics "
+                    + "(character_group_id, instance_id, character_count) "
+                    + "values (:characterGroupId, :instanceId, :characters)",
+                row);
+        }
+
+        // Rows left over belong to deleted Character Groups.
+        if (!storedGroups.isEmpty())
+        {
+            jdbcTemplate.update("delete from character_group_statistics "
+                + "where character_group_id in (:characterGroupIds)",
+                new MapSqlParameterSource("characterGroupIds",
+                    storedGroups.keySet()));
+        }
+
+        for (Long instanceId : drifted)
+        {
+            log.warn("Fixed the statistics of Instance id: {}", instanceId);
+        }
+
+        driftedInstances.increment(drifted.size());
+
+        return drifted.size();
+    }
+}
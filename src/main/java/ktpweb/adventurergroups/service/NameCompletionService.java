@@ -0,0 +1,273 @@
+package ktpweb.adventurergroups.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ktpweb.adventurergroups.model.NameSuggestionDto;
+import ktpweb.adventurergroups.model.NameSuggestionDto.Type;
+import ktpweb.adventurergroups.repository.CharacterGroupRepository;
+import ktpweb.adventurergroups.repository.CharacterRepository;
+import ktpweb.adventurergroups.repository.NameSummary;
+import ktpweb.adventurergroups.util.InstanceGenerations;
+import ktpweb.adventurergroups.util.TransactionUtils;
+
+/**
+ * In-memory completion of Character and Character Group names for each
+ * Instance, answered on every keystroke of the editor without touching the
+ * database.
+ *
+ * Names are folded the same way as CharacterSearchService folds words, and
+ * kept in a sorted map keyed by the folded name from each of its words on,
+ * so a prefix of any word of a name is one range of the map. Suggestions
+ * come back in the order of the folded names.
+ *
+ * Indexes are built from the database on an Instance's first completion,
+ * then kept current by CharacterService after each transaction commits,
+ * bounded by their number of keys and guarded by InstanceGenerations like
+ * CharacterSearchService's.
+ */
+@Service
+public class NameCompletionService
+{
+    // Separates the folded name from the object it belongs to in a key, and
+    // sorts before any character of a name.
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    @Autowired
+    private CharacterRepository characterRepository;
+
+    @Autowired
+    private CharacterGroupRepository characterGroupRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${adventurergroups.completion.budget:1000000}")
+    private Long budget;
+
+    private Cache<Long, InstanceNames> indexes;
+
+    private final InstanceGenerations generations = new InstanceGenerations();
+
+    private Timer queryTime;
+
+    @PostConstruct
+    private void init()
+    {
+        indexes = Caffeine.newBuilder().maximumWeight(budget)
+            .<Long, InstanceNames>weigher((k, v) -> v.getWeight())
+            .recordStats().build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, indexes,
+            "nameCompletionIndexes");
+
+        queryTime = Timer.builder("adventurergroups.completion.query")
+            .description("Time spent completing a name from a loaded index")
+            .register(meterRegistry);
+    }
+
+    // Returns up to limit names of the Instance with a word starting with the
+    // prefix, or with the prefix's words in order. Must be called in a
+    // transaction, which a missing index is read in.
+    public List<NameSuggestionDto> complete(Long instanceId, String prefix,
+        int limit)
+    {
+        String key = fold(prefix);
+
+        if (key.isEmpty())
+        {
+            return List.of();
+        }
+
+        InstanceNames index = getIndex(instanceId);
+
+        return queryTime.record(() -> index.complete(key, limit));
+    }
+
+    // Indexes the name once the current transaction commits.
+    public void nameChanged(Long instanceId, Type type, Long id, String name)
+    {
+        TransactionUtils.afterCommit(() -> {
+            generations.changed(instanceId);
+            update(instanceId,
+                index -> index.put(new NameSuggestionDto(type, id, name)));
+        });
+    }
+
+    public void nameRemoved(Long instanceId, Type type, Long id)
+    {
+        TransactionUtils.afterCommit(() -> {
+            generations.changed(instanceId);
+            update(instanceId, index -> index.remove(new Owner(type, id)));
+        });
+    }
+
+    public void instanceRemoved(Long instanceId)
+    {
+        TransactionUtils.afterCommit(() -> {
+            generations.removed(instanceId);
+            indexes.invalidate(instanceId);
+        });
+    }
+
+    // Changes a cached index in place, putting it back so the cache weighs it
+    // again; Caffeine only weighs an entry as it is written.
+    private void update(Long instanceId, Consumer<InstanceNames> change)
+    {
+        indexes.asMap().computeIfPresent(instanceId, (id, index) -> {
+            change.accept(index);
+            return index;
+        });
+    }
+
+    private InstanceNames getIndex(Long instanceId)
+    {
+        InstanceNames index = indexes.getIfPresent(instanceId);
+
+        if (index != null)
+        {
+            return index;
+        }
+
+        long generation = generations.current();
+
+        InstanceNames loaded = new InstanceNames();
+
+        try (Stream<NameSummary> names = characterRepository
+            .streamNamesByInstanceId(instanceId))
+        {
+            names.forEach(name -> loaded.put(new NameSuggestionDto(
+                Type.CHARACTER, name.getId(), name.getName())));
+        }
+
+        try (Stream<NameSummary> names = characterGroupRepository
+            .streamNamesByInstanceId(instanceId))
+        {
+            names.forEach(name -> loaded.put(new NameSuggestionDto(
+                Type.CHARACTER_GROUP, name.getId(), name.getName())));
+        }
+
+        // As in CharacterSearchService, a change made during the load bumps
+        // the generation and keeps this copy out of the cache.
+        index = indexes.asMap().compute(instanceId,
+            (id, existing) -> existing != null ? existing
+                : !generations.changedSince(id, generation) ? loaded : null);
+
+        return index != null ? index : loaded;
+    }
+
+    // The folded words of the text, joined by single spaces.
+    private static String fold(String text)
+    {
+        return String.join(" ", CharacterSearchService.tokenize(text));
+    }
+
+    @lombok.Value
+    private static class Owner
+    {
+        private Type type;
+        private Long id;
+    }
+
+    private static class InstanceNames
+    {
+        // Folded name from one of its words on, then the owner, to the
+        // suggestion.
+        private final ConcurrentNavigableMap<String, NameSuggestionDto> names =
+            new ConcurrentSkipListMap<>();
+
+        // The keys held for each owner, to remove them on change.
+        private final Map<Owner, List<String>> keys = new ConcurrentHashMap<>();
+
+        private volatile int weight;
+
+        public int getWeight()
+        {
+            return Math.max(weight, 1);
+        }
+
+        // Writers are serialized, readers never block.
+        public synchronized void put(NameSuggestionDto suggestion)
+        {
+            Owner owner = new Owner(suggestion.getType(), suggestion.getId());
+
+            remove(owner);
+
+            List<String> words = CharacterSearchService
+                .tokenize(suggestion.getName());
+            List<String> ownerKeys = new ArrayList<>(words.size());
+
+            for (int i = 0; i < words.size(); i++)
+            {
+                String key = String.join(" ", words.subList(i, words.size()))
+                    + KEY_SEPARATOR + owner.getType().ordinal()
+                    + owner.getId();
+
+                names.put(key, suggestion);
+                ownerKeys.add(key);
+            }
+
+            keys.put(owner, ownerKeys);
+            weight += ownerKeys.size();
+        }
+
+        public synchronized void remove(Owner owner)
+        {
+            List<String> ownerKeys = keys.remove(owner);
+
+            if (ownerKeys == null)
+            {
+                return;
+            }
+
+            ownerKeys.forEach(names::remove);
+            weight -= ownerKeys.size();
+        }
+
+        public List<NameSuggestionDto> complete(String prefix, int limit)
+        {
+            // A name starting with the prefix and also holding it at a later
+            // word is met twice, and only listed once.
+            Set<NameSuggestionDto> found = new LinkedHashSet<>();
+
+            for (NameSuggestionDto suggestion : names
+                .subMap(prefix, true, prefix + Character.MAX_VALUE, true)
+                .values())
+            {
+                found.add(suggestion);
+
+                if (found.size() >= limit)
+                {
+                    break;
+                }
+            }
+
+            // Copies, as the indexed ones are shared between readers.
+            return found.stream()
+                .map(suggestion -> new NameSuggestionDto(suggestion.getType(),
+                    suggestion.getId(), suggestion.getName()))
+                .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ktpweb.adventurergroups.service;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ktpweb.adventurergroups.util.TransactionUtils;
+
+/**
+ * Bounded, expiring cache of ownership decisions, keyed by user id and the
+ * resource being checked.
+ *
+ * Evictions are deferred until the surrounding transaction commits, so a
+ * concurrent check cannot cache the old answer between the eviction and the
+ * commit.
+ */
+@Service
+public class OwnershipCacheService
+{
+    public static enum ResourceType
+    {
+        INSTANCE, CHARACTER
+    }
+
+    @lombok.Value
+    private static class OwnershipKey
+    {
+        private Long userId;
+        private ResourceType resourceType;
+        private Long resourceId;
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${adventurergroups.ownershipcache.ttl:60s}")
+    private Duration ttl;
+
+    @Value("${adventurergroups.ownershipcache.maxSize:10000}")
+    private Long maxSize;
+
+    private Cache<OwnershipKey, Boolean> cache;
+
+    @PostConstruct
+    private void init()
+    {
+        cache = Caffeine.newBuilder().expireAfterWrite(ttl)
+            .maximumSize(maxSize).recordStats().build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache,
+            "ownershipDecisions");
+    }
+
+    public boolean getDecision(Long userId, ResourceType resourceType,
+        Long resourceId, Supplier<Boolean> loader)
+    {
+        if (userId == null || resourceId == null)
+        {
+            return loader.get();
+        }
+
+        return cache.get(new OwnershipKey(userId, resourceType, resourceId),
+            k -> loader.get());
+    }
+
+    public void evictUser(Long userId)
+    {
+        TransactionUtils.afterCommit(() -> cache.asMap().keySet()
+            .removeIf(k -> k.getUserId().equals(userId)));
+    }
+
+    public void evictResource(ResourceType resourceType, Long resourceId)
+    {
+        TransactionUtils.afterCommit(() -> cache.asMap().keySet()
+            .removeIf(k -> k.getResourceType() == resourceType
+                && k.getResourceId().equals(resourceId)));
+    }
+
+    // For changes that cascade to resources we cannot cheaply enumerate, such
+    // as deleting an instance along with all of its characters.
+    public void evictAll()
+    {
+        TransactionUtils.afterCommit(cache::invalidateAll);
+    }
+}
@@ -0,0 +1,181 @@
+package ktpweb.adventurergroups.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.hashids.Hashids;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import ktpweb.adventurergroups.model.CursorPage;
+
+/**
+ * Keyset pagination helpers shared by the collection endpoints.
+ *
+ * Most lists are ordered by id, so a cursor is just the id of the last row of
+ * the previous page, encoded with its own Hashids salt to keep it opaque.
+ * Lists sorted on another value also carry that row's value as it was read,
+ * so the next page continues from the same place even if the row has since
+ * changed or gone.
+ */
+@Service
+public class PaginationService
+{
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Separate the id from the sort value, or mark the value as null. Neither
+    // appears in Hashids or URL-safe Base64.
+    private static final char SORT_VALUE_SEPARATOR = '.';
+    private static final char NULL_SORT_VALUE = '~';
+
+    @lombok.Value
+    public static class SortCursor
+    {
+        private Long id;
+        private String sortValue;
+    }
+
+    @Autowired
+    @Qualifier("cursorHashids")
+    private Hashids cursorHashids;
+
+    @Value("${adventurergroups.pagination.defaultLimit:50}")
+    private Integer defaultLimit;
+
+    @Value("${adventurergroups.pagination.maxLimit:200}")
+    private Integer maxLimit;
+
+    public int getLimit(Integer requestedLimit)
+    {
+        if (requestedLimit == null || requestedLimit <= 0)
+        {
+            return defaultLimit;
+        }
+
+        return Math.min(requestedLimit, maxLimit);
+    }
+
+    // Fetches one row past the limit, so we know if another page follows.
+    public Pageable getPageable(Integer requestedLimit)
+    {
+        return PageRequest.of(0, getLimit(requestedLimit) + 1);
+    }
+
+    // Returns the id to continue after, with 0 meaning the first page.
+    public Long decodeCursor(String cursor) throws IllegalArgumentException
+    {
+        if (!StringUtils.hasText(cursor))
+        {
+            return 0L;
+        }
+
+        long[] decoded = cursorHashids.decode(cursor);
+
+        if (decoded.length != 1)
+        {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+
+        return decoded[0];
+    }
+
+    // Returns the id and sort value to continue after, or null for the first
+    // page.
+    public SortCursor decodeSortCursor(String cursor)
+        throws IllegalArgumentException
+    {
+        if (!StringUtils.hasText(cursor))
+        {
+            return null;
+        }
+
+        if (cursor.endsWith(String.valueOf(NULL_SORT_VALUE)))
+        {
+            return new SortCursor(
+                decodeCursor(cursor.substring(0, cursor.length() - 1)), null);
+        }
+
+        int separator = cursor.indexOf(SORT_VALUE_SEPARATOR);
+
+        if (separator <= 0)
+        {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+
+        return new SortCursor(decodeCursor(cursor.substring(0, separator)),
+            new String(Base64.getUrlDecoder()
+                .decode(cursor.substring(separator + 1)),
+                StandardCharsets.UTF_8));
+    }
+
+    public String encodeCursor(Long id)
+    {
+        return cursorHashids.encode(id);
+    }
+
+    public String encodeCursor(Long id, String sortValue)
+    {
+        if (sortValue == null)
+        {
+            return encodeCursor(id) + NULL_SORT_VALUE;
+        }
+
+        return encodeCursor(id) + SORT_VALUE_SEPARATOR
+            + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sortValue.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public <R, T> CursorPage<T> getPage(List<R> rows, Integer requestedLimit,
+        Function<R, Long> idMapper, Function<R, T> dtoMapper)
+    {
+        return getPageWithCursors(rows, requestedLimit,
+            row -> encodeCursor(idMapper.apply(row)), dtoMapper);
+    }
+
+    // Like getPage, for rows whose cursor is more than their id.
+    public <R, T> CursorPage<T> getPageWithCursors(List<R> rows,
+        Integer requestedLimit, Function<R, String> cursorMapper,
+        Function<R, T> dtoMapper)
+    {
+        int limit = getLimit(requestedLimit);
+
+        CursorPage<T> page = new CursorPage<>();
+
+        if (rows.size() > limit)
+        {
+            rows = rows.subList(0, limit);
+            page.setNextCursor(cursorMapper.apply(rows.get(limit - 1)));
+        }
+
+        page.setItems(
+            rows.stream().map(dtoMapper).collect(Collectors.toList()));
+
+        return page;
+    }
+
+    public static HttpHeaders getPageHeaders(CursorPage<?> page)
+    {
+        return getPageHeaders(page.getNextCursor());
+    }
+
+    public static HttpHeaders getPageHeaders(String nextCursor)
+    {
+        HttpHeaders headers = new HttpHeaders();
+
+        if (nextCursor != null)
+        {
+            headers.set(NEXT_CURSOR_HEADER, nextCursor);
+        }
+
+        return headers;
+    }
+}
@@ -0,0 +1,266 @@
+package ktpweb.adventurergroups.service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Scheduled removal of soft-deleted rows whose delete date is older than the
+ * retention, either moved into the matching archive table or deleted
+ * outright.
+ *
+ * Each target is walked in id order, in small batches that each commit on
+ * their own so no lock is held for long. The last id of every committed
+ * batch is saved as the target's checkpoint, so an interrupted purge resumes
+ * where it stopped; once a target is purged to its end the checkpoint goes
+ * back to 0. Targets run children first, and a row still referenced by
+ * another row is left for a later purge.
+ *
+ * Rows purged per target, batch times and checkpoints are published as
+ * metrics.
+ */
+@Service
+@Slf4j
+public class PurgeService
+{
+    public static enum Mode
+    {
+        // Copy rows into their archive table, then delete them.
+        ARCHIVE,
+        // Delete rows without keeping a copy.
+        DELETE
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static enum Target
+    {
+        CHARACTER("characterobject", ""),
+        CHARACTER_GROUP("character_group",
+            "and not exists (select 1 from characterobject c "
+                + "where c.group_id = t.id)"),
+        MAINTAINER("user_account",
+            "and t.instance_id is not null "
+                + "and not exists (select 1 from characterobject c "
+                + "where c.maintainer_id = t.id)"),
+        INSTANCE("instance",
+            "and not exists (select 1 from characterobject c "
+                + "where c.instance_id = t.id) "
+                + "and not exists (select 1 from character_group cg "
+                + "where cg.instance_id = t.id) "
+                + "and not exists (select 1 from user_account u "
+                + "where u.instance_id = t.id)"),
+        OWNER("user_account",
+            "and t.instance_id is null "
+                + "and not exists (select 1 from instance i "
+                + "where i.owner_id = t.id) "
+                + "and not exists (select 1 from characterobject c "
+                + "where c.maintainer_id = t.id)"),
+        ADMIN_ACCOUNT("admin_account", "");
+
+        private final String table;
+
+        // Extra conditions on the row, aliased t, keeping rows that are still
+        // referenced.
+        private final String condition;
+    }
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${adventurergroups.purge.retention:30d}")
+    private Duration retention;
+
+    @Value("${adventurergroups.purge.mode:ARCHIVE}")
+    private Mode mode;
+
+    @Value("${adventurergroups.purge.batchSize:100}")
+    private Integer batchSize;
+
+    private final Map<Target, Counter> purgedRows = new ConcurrentHashMap<>();
+
+    private final Map<Target, AtomicLong> checkpoints = new ConcurrentHashMap<>();
+
+    private Timer batchTime;
+
+    @PostConstruct
+    private void init()
+    {
+        for (Target target : Target.values())
+        {
+            purgedRows.put(target,
+                Counter.builder("adventurergroups.purge.rows")
+                    .description("Soft-deleted rows purged")
+                    .tag("target", target.name()).register(meterRegistry));
+
+            AtomicLong checkpoint = new AtomicLong();
+            checkpoints.put(target, checkpoint);
+
+            Gauge.builder("adventurergroups.purge.checkpoint", checkpoint,
+                AtomicLong::get)
+                .description("Last id purged in the current pass")
+                .tag("target", target.name()).register(meterRegistry);
+        }
+
+        batchTime = Timer.builder("adventurergroups.purge.batch")
+            .description("Time spent purging one batch")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${adventurergroups.purge.cron:0 30 3 * * *}")
+    public void scheduledPurge()
+    {
+        try
+        {
+            purge();
+        }
+        catch (Exception ex)
+        {
+            log.error("Purge of soft-deleted rows failed", ex);
+        }
+    }
+
+    // Purges every target, returning the number of rows removed.
+    public long purge()
+    {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        long total = 0;
+
+        log.info("Purging rows deleted before {}, mode: {}", cutoff, mode);
+
+        for (Target target : Target.values())
+        {
+            long purged = purge(target, cutoff);
+
+            if (purged > 0)
+            {
+                log.info("Purged {} rows of target {}", purged, target);
+            }
+
+            total += purged;
+        }
+
+        return total;
+    }
+
+    private long purge(Target target, LocalDateTime cutoff)
+    {
+        long afterId = readCheckpoint(target);
+        long total = 0;
+
+        while (true)
+        {
+            final long batchAfterId = afterId;
+
+            List<Long> ids = batchTime.record(() -> transactionTemplate
+                .execute(status -> purgeBatch(target, cutoff, batchAfterId)));
+
+            total += ids.size();
+
+            if (ids.size() < batchSize)
+            {
+                // Reached the end, so the next purge starts from the top.
+                saveCheckpoint(target, 0L);
+                return total;
+            }
+
+            afterId = ids.get(ids.size() - 1);
+        }
+    }
+
+    // Purges the next batch after the given id and saves the checkpoint, all
+    // in the caller's transaction. Returns the purged ids.
+    private List<Long> purgeBatch(Target target, LocalDateTime cutoff,
+        long afterId)
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("cutoff", Timestamp.valueOf(cutoff))
+            .addValue("afterId", afterId).addValue("limit", batchSize);
+
+        List<Long> ids = jdbcTemplate.queryForList("select t.id from "
+            + target.getTable() + " t where t.deleted = true "
+            + "and t.delete_date < :cutoff and t.id > :afterId "
+            + target.getCondition() + " order by t.id limit :limit", params,
+            Long.class);
+
+        if (ids.isEmpty())
+        {
+            return ids;
+        }
+
+        params.addValue("ids", ids);
+
+        if (mode == Mode.ARCHIVE)
+        {
+            jdbcTemplate.update("insert into " + target.getTable()
+                + "_archive select * from " + target.getTable()
+                + " where id in (:ids)", params);
+        }
+
+        jdbcTemplate.update("delete from " + target.getTable()
+            + " where id in (:ids)", params);
+
+        saveCheckpoint(target, ids.get(ids.size() - 1));
+        purgedRows.get(target).increment(ids.size());
+
+        return ids;
+    }
+
+    private long readCheckpoint(Target target)
+    {
+        List<Long> lastIds = jdbcTemplate.queryForList(
+            "select last_id from purge_checkpoint where target = :target",
+            new MapSqlParameterSource("target", target.name()), Long.class);
+
+        long lastId = lastIds.isEmpty() ? 0L : lastIds.get(0);
+        checkpoints.get(target).set(lastId);
+
+        return lastId;
+    }
+
+    private void saveCheckpoint(Target target, Long lastId)
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("target", target.name()).addValue("lastId", lastId)
+            .addValue("updateDate", Timestamp.valueOf(LocalDateTime.now()));
+
+        if (jdbcTemplate.update("update purge_checkpoint "
+            + "set last_id = :lastId, update_date = :updateDate "
+            + "where target = :target", params) == 0)
+        {
+            jdbcTemplate.update("insert into purge_checkpoint "
+                + "(target, last_id, update_date) "
+                + "values (:target, :lastId, :updateDate)", params);
+        }
+
+        checkpoints.get(target).set(lastId);
+    }
+}
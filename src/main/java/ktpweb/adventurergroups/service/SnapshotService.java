@@ -0,0 +1,296 @@
+package ktpweb.adventurergroups.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.WebRequest;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ktpweb.adventurergroups.model.CharacterDto;
+import ktpweb.adventurergroups.model.CharacterGroupDto;
+import ktpweb.adventurergroups.model.CursorPage;
+import ktpweb.adventurergroups.model.Snapshot;
+import ktpweb.adventurergroups.modelfilter.CharacterDtoFilters;
+import ktpweb.adventurergroups.modelfilter.CharacterGroupDtoFilters;
+import ktpweb.adventurergroups.modelfilter.InstanceDtoFilters;
+import ktpweb.adventurergroups.modelfilter.ViewFormat;
+import ktpweb.adventurergroups.modelfilter.ViewWriters;
+import ktpweb.adventurergroups.repository.InstanceContentVersion;
+import ktpweb.adventurergroups.repository.InstanceRepository;
+import ktpweb.adventurergroups.util.ETagUtils;
+import ktpweb.adventurergroups.util.InstanceGenerations;
+import ktpweb.adventurergroups.util.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache of the public views of each Instance, held as the bytes the
+ * endpoints would have written in each ViewFormat, so a hit skips both the
+ * DTO mapping and Jackson. Formats are built on first request.
+ *
+ * The cache is bounded by the total size of the snapshots, evicting the
+ * coldest Instances first. When an Instance's content changes, its cached
+ * views are dropped and rebuilt in the background once the change commits.
+ * A generation counter, bumped on every change, keeps a rebuild that raced
+ * with a later change out of the cache.
+ *
+ * Large snapshots also keep a gzipped copy, built with the snapshot, which
+ * is sent as is to clients that accept it.
+ */
+@Service
+@Slf4j
+public class SnapshotService
+{
+    public static enum View
+    {
+        // The full Instance.
+        INSTANCE,
+        // The first page of the Instance's characters, at the default limit.
+        CHARACTERS,
+        // The first page of the Instance's groups, at the default limit.
+        CHARACTER_GROUPS
+    }
+
+    @lombok.Value
+    private static class SnapshotKey
+    {
+        private Long instanceId;
+        private View view;
+        private ViewFormat format;
+    }
+
+    @Autowired
+    private InstanceService instanceService;
+
+    @Autowired
+    private CharacterService characterService;
+
+    @Autowired
+    private InstanceRepository instanceRepository;
+
+    @Autowired
+    private ViewWriters viewWriters;
+
+    @Autowired
+    private CompressionService compressionService;
+
+    @Autowired
+    private TaskExecutor taskExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${adventurergroups.snapshot.budget:64MB}")
+    private DataSize budget;
+
+    private Cache<SnapshotKey, Snapshot> cache;
+
+    private final InstanceGenerations generations = new InstanceGenerations();
+
+    private final Set<SnapshotKey> pendingRebuilds = ConcurrentHashMap
+        .newKeySet();
+
+    @PostConstruct
+    private void init()
+    {
+        cache = Caffeine.newBuilder().maximumWeight(budget.toBytes())
+            .<SnapshotKey, Snapshot>weigher((k, v) -> v.getBody().length
+                + (v.getGzipBody() != null ? v.getGzipBody().length : 0))
+            .recordStats().build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache,
+            "instanceSnapshots");
+    }
+
+    public Snapshot getSnapshot(Long instanceId, View view) throws Exception
+    {
+        return getSnapshot(instanceId, view, ViewFormat.JSON);
+    }
+
+    // Returns the cached view, building it on a miss. Throws whatever the
+    // underlying service throws, such as a missing Instance.
+    public Snapshot getSnapshot(Long instanceId, View view, ViewFormat format)
+        throws Exception
+    {
+        SnapshotKey key = new SnapshotKey(instanceId, view, format);
+
+        Snapshot snapshot = cache.getIfPresent(key);
+
+        return snapshot != null ? snapshot : build(key);
+    }
+
+    // Writes the snapshot as it was serialized, with its paging header and
+    // ETag, gzipped if the client accepts it and a compressed copy exists.
+    // Returns null if the client's copy is current, the response having
+    // become a 304.
+    public static ResponseEntity<byte[]> getResponse(Snapshot snapshot,
+        WebRequest request)
+    {
+        boolean gzip = snapshot.getGzipBody() != null
+            && CompressionService.acceptsGzip(request);
+
+        if (ETagUtils.checkNotModified(request, snapshot.getVersion(),
+            snapshot.getFormat(), gzip ? CompressionService.GZIP : null))
+        {
+            return null;
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .headers(
+                PaginationService.getPageHeaders(snapshot.getNextCursor()))
+            .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+            .contentType(snapshot.getFormat().getMediaType());
+
+        if (gzip)
+        {
+            return response
+                .header(HttpHeaders.CONTENT_ENCODING, CompressionService.GZIP)
+                .body(snapshot.getGzipBody());
+        }
+
+        return response.body(snapshot.getBody());
+    }
+
+    // Drops the Instance's views once the current transaction commits, and
+    // rebuilds the ones that were cached.
+    public void instanceChanged(Long instanceId)
+    {
+        TransactionUtils.afterCommit(() -> {
+            generations.changed(instanceId);
+
+            for (View view : View.values())
+            {
+                for (ViewFormat format : ViewFormat.values())
+                {
+                    SnapshotKey key = new SnapshotKey(instanceId, view, format);
+
+                    if (cache.asMap().remove(key) != null)
+                    {
+                        scheduleRebuild(key);
+                    }
+                }
+            }
+        });
+    }
+
+    // Drops the deleted Instance's views, and its generation, once the current
+    // transaction commits.
+    public void instanceRemoved(Long instanceId)
+    {
+        TransactionUtils.afterCommit(() -> {
+            generations.removed(instanceId);
+
+            for (View view : View.values())
+            {
+                for (ViewFormat format : ViewFormat.values())
+                {
+                    cache.invalidate(
+                        new SnapshotKey(instanceId, view, format));
+                }
+            }
+        });
+    }
+
+    private void scheduleRebuild(SnapshotKey key)
+    {
+        // A rebuild that is queued but not started will see this change too.
+        if (!pendingRebuilds.add(key))
+        {
+            return;
+        }
+
+        taskExecutor.execute(() -> {
+            pendingRebuilds.remove(key);
+
+            try
+            {
+                build(key);
+            }
+            catch (Exception ex)
+            {
+                // Deleted Instances end up here. The next read will report
+                // the error itself.
+                log.debug(
+                    "Could not rebuild {} {} snapshot for Instance id: {}",
+                    key.getView(), key.getFormat(), key.getInstanceId(), ex);
+            }
+        });
+    }
+
+    private Snapshot build(SnapshotKey key) throws Exception
+    {
+        long generation = generations.current();
+
+        Snapshot snapshot = serialize(key);
+
+        cache.put(key, snapshot);
+
+        // A change committed while we were reading. Its eviction may have run
+        // before our put, so replace the stale copy ourselves.
+        if (generations.changedSince(key.getInstanceId(), generation)
+            && cache.asMap().remove(key, snapshot))
+        {
+            scheduleRebuild(key);
+        }
+
+        return snapshot;
+    }
+
+    private Snapshot serialize(SnapshotKey key) throws Exception
+    {
+        InstanceContentVersion version = instanceRepository
+            .findContentVersionById(key.getInstanceId()).orElse(null);
+
+        Object value;
+        FilterProvider filters;
+        String nextCursor = null;
+
+        switch (key.getView())
+        {
+        case INSTANCE:
+            value = instanceService.retrieveInstance(key.getInstanceId());
+            filters = InstanceDtoFilters.fullFilterProvider;
+            break;
+        case CHARACTERS:
+            CursorPage<CharacterDto> characters = characterService
+                .retrieveCharactersForInstance(key.getInstanceId(), null,
+                    null);
+
+            value = characters.getItems();
+            filters = CharacterDtoFilters.simpleFilterProvider;
+            nextCursor = characters.getNextCursor();
+            break;
+        case CHARACTER_GROUPS:
+            CursorPage<CharacterGroupDto> groups = characterService
+                .retrieveCharacterGroupsForInstance(key.getInstanceId(), null,
+                    null);
+
+            value = groups.getItems();
+            filters = CharacterGroupDtoFilters.simpleFilterProvider;
+            nextCursor = groups.getNextCursor();
+            break;
+        default:
+            throw new IllegalArgumentException(
+                "Unknown snapshot view: " + key.getView());
+        }
+
+        byte[] body = viewWriters.getWriter(filters, key.getFormat())
+            .writeValueAsBytes(value);
+
+        return new Snapshot(key.getFormat(), body,
+            compressionService.gzip(body), nextCursor, version);
+    }
+}
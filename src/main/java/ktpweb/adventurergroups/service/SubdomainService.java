@@ -0,0 +1,115 @@
+package ktpweb.adventurergroups.service;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import ktpweb.adventurergroups.repository.InstanceRepository;
+import ktpweb.adventurergroups.repository.InstanceSubdomain;
+import ktpweb.adventurergroups.util.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory routing table from subdomain name to the id of the active
+ * Instance serving it, so public requests are routed without a query.
+ *
+ * The table is loaded once at startup and kept current by InstanceService.
+ * Changes are applied after the surrounding transaction commits, and lookups
+ * are case-insensitive.
+ */
+@Service
+@Slf4j
+public class SubdomainService
+{
+    @Autowired
+    private InstanceRepository instanceRepository;
+
+    private final Map<String, Long> instanceIdsBySubdomain =
+        new ConcurrentHashMap<>();
+
+    // Reverse mapping, so a renamed or removed instance drops its old entry.
+    private final Map<Long, String> subdomainsByInstanceId =
+        new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void init()
+    {
+        for (InstanceSubdomain s : instanceRepository.findRoutableSubdomains())
+        {
+            put(s.getId(), s.getSubdomainName());
+        }
+
+        log.info("Loaded {} Instance subdomains",
+            instanceIdsBySubdomain.size());
+    }
+
+    // Returns the id of the active Instance for the subdomain, or null.
+    public Long resolveInstanceId(String subdomainName)
+    {
+        if (!StringUtils.hasText(subdomainName))
+        {
+            return null;
+        }
+
+        return instanceIdsBySubdomain.get(fold(subdomainName));
+    }
+
+    // Records the instance's current subdomain and whether it can be routed
+    // to. Inactive instances are removed from the table.
+    public void instanceChanged(Long instanceId, String subdomainName,
+        boolean active)
+    {
+        TransactionUtils.afterCommit(() -> {
+            if (active)
+            {
+                put(instanceId, subdomainName);
+            }
+            else
+            {
+                remove(instanceId);
+            }
+        });
+    }
+
+    public void instanceRemoved(Long instanceId)
+    {
+        TransactionUtils.afterCommit(() -> remove(instanceId));
+    }
+
+    // Writers are rare and serialized, readers never block.
+    private synchronized void put(Long instanceId, String subdomainName)
+    {
+        remove(instanceId);
+
+        if (!StringUtils.hasText(subdomainName))
+        {
+            return;
+        }
+
+        String key = fold(subdomainName);
+
+        instanceIdsBySubdomain.put(key, instanceId);
+        subdomainsByInstanceId.put(instanceId, key);
+    }
+
+    private synchronized void remove(Long instanceId)
+    {
+        String key = subdomainsByInstanceId.remove(instanceId);
+
+        if (key != null)
+        {
+            instanceIdsBySubdomain.remove(key, instanceId);
+        }
+    }
+
+    private static String fold(String subdomainName)
+    {
+        return subdomainName.toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,6 +1,8 @@
 package ktpweb.adventurergroups.service;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -8,6 +10,7 @@ import java.util.stream.Stream;
 
 import org.hashids.Hashids;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
@@ -17,16 +20,21 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import ktpweb.adventurergroups.entity.Character;
-import ktpweb.adventurergroups.entity.CharacterGroup;
 import ktpweb.adventurergroups.entity.Instance;
 import ktpweb.adventurergroups.entity.UserAccount;
 import ktpweb.adventurergroups.exception.UserAccountServiceException;
 import ktpweb.adventurergroups.model.CharacterDto;
+import ktpweb.adventurergroups.model.CursorPage;
 import ktpweb.adventurergroups.model.InstanceDto;
 import ktpweb.adventurergroups.model.MaintainerDto;
 import ktpweb.adventurergroups.model.OwnerDto;
 import ktpweb.adventurergroups.model.UserAccountDto;
+import ktpweb.adventurergroups.repository.CharacterRepository;
+import ktpweb.adventurergroups.repository.InstanceContentVersion;
+import ktpweb.adventurergroups.repository.InstanceRepository;
 import ktpweb.adventurergroups.repository.UserAccountRepository;
+import ktpweb.adventurergroups.service.InstanceStatisticsService.Change;
+import ktpweb.adventurergroups.service.OwnershipCacheService.ResourceType;
 import ktpweb.adventurergroups.util.UserAccountUtils.UserAccountRoles;
 import lombok.extern.slf4j.Slf4j;
 
@@ -37,6 +45,12 @@ public class UserAccountService
     @Autowired
     private UserAccountRepository userAccountRepository;
 
+    @Autowired
+    private InstanceRepository instanceRepository;
+
+    @Autowired
+    private CharacterRepository characterRepository;
+
     @Autowired
     private InstanceService instanceService;
 
@@ -44,6 +58,19 @@ public class UserAccountService
     private CharacterService characterService;
 
     @Autowired
+    private PaginationService paginationService;
+
+    @Autowired
+    private OwnershipCacheService ownershipCacheService;
+
+    @Autowired
+    private SubdomainService subdomainService;
+
+    @Autowired
+    private InstanceStatisticsService instanceStatisticsService;
+
+    @Autowired
+    @Qualifier("inviteTokenHashids")
     private Hashids tokenHashids;
 
     @Autowired
@@ -165,7 +192,7 @@ public class UserAccountService
         // Attempt to read from the database.
         try
         {
-            accountEntity = getUserAccountEntity(userId);
+            accountEntity = getOwnerAccountEntity(userId, false);
         }
         catch (Exception ex)
         {
@@ -377,6 +404,12 @@ public class UserAccountService
 
         log.info("Updated Owner account with id: {}", userId);
 
+        // The owner is shown in each of their instances.
+        for (Instance i : accountEntity.getInstances())
+        {
+            instanceService.instanceContentChanged(i.getId());
+        }
+
         // Return full DTO.
         try
         {
@@ -425,38 +458,17 @@ public class UserAccountService
                 UserAccountServiceException.Codes.INVALID_ROLE);
         }
 
-        // Soft-delete all associated Instances, Maintainers, Characters, and
-        // Character Groups.
-        for (Instance i : accountEntity.getInstances())
-        {
-            for (UserAccount m : i.getMaintainers())
-            {
-                m.setDeleted(true);
-                m.setDeleteDate(LocalDateTime.now());
-            }
-
-            for (Character c : i.getCharacters())
-            {
-                c.setDeleted(true);
-                c.setDeleteDate(LocalDateTime.now());
-            }
-
-            for (CharacterGroup cg : i.getCharacterGroups())
-            {
-                cg.setDeleted(true);
-                cg.setDeleteDate(LocalDateTime.now());
-            }
-
-            i.setDeleted(true);
-            i.setDeleteDate(LocalDateTime.now());
-        }
+        // Attempt to soft-delete user account, and all associated Instances,
+        // Maintainers, Characters, and Character Groups with it, sharing one
+        // delete date.
+        LocalDateTime deleteDate = LocalDateTime.now();
 
-        // Attempt to soft-delete user account.
         accountEntity.setDeleted(true);
-        accountEntity.setDeleteDate(LocalDateTime.now());
+        accountEntity.setDeleteDate(deleteDate);
 
         try
         {
+            instanceService.deleteInstancesForOwner(userId, deleteDate);
             accountEntity = userAccountRepository.save(accountEntity);
         }
         catch (Exception ex)
@@ -467,6 +479,9 @@ public class UserAccountService
         }
 
         log.info("Deleted Owner account with id: {}", userId);
+
+        // The owner's instances and characters were deleted along with it.
+        ownershipCacheService.evictAll();
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -479,6 +494,8 @@ public class UserAccountService
     private final String EXCEPTION_MAINTAINER_UPDATE = "Cannot update Maintainer account with user id: ";
     private final String EXCEPTION_MAINTAINER_DELETE = "Cannot delete Maintainer account with user id: ";
 
+    private final String EXCEPTION_MAINTAINER_RETRIEVE_FOR_INSTANCE = "Cannot retrieve Maintainer accounts for Instance id: ";
+
     private final String EXCEPTION_MAINTAINER_MODEL = "Cannot return model for Maintainer account with user id: ";
 
     @Transactional
@@ -554,6 +571,12 @@ public class UserAccountService
         log.info("Created unregistered Maintainer account with id: {}",
             accountEntity.getId());
 
+        instanceService.instanceContentChanged(
+            accountEntity.getParentInstance().getId());
+        instanceStatisticsService.apply(
+            accountEntity.getParentInstance().getId(), new Change()
+                .maintainers(1, UserAccountRoles.USER_ROLE_UNREGISTERED));
+
         // Return full DTO.
         try
         {
@@ -666,6 +689,12 @@ public class UserAccountService
         log.info("Created unregistered Maintainer account with id: {}",
             accountEntity.getId());
 
+        instanceService.instanceContentChanged(
+            accountEntity.getParentInstance().getId());
+        instanceStatisticsService.apply(
+            accountEntity.getParentInstance().getId(), new Change()
+                .maintainers(1, UserAccountRoles.USER_ROLE_UNREGISTERED));
+
         // Return full DTO.
         try
         {
@@ -690,7 +719,7 @@ public class UserAccountService
 
         try
         {
-            accountEntity = getUserAccountEntity(userId);
+            accountEntity = getMaintainerAccountEntity(userId, false);
         }
         catch (Exception ex)
         {
@@ -958,6 +987,16 @@ public class UserAccountService
             log.info("Updated Maintainer account id: {}", userId);
         }
 
+        instanceService.instanceContentChanged(
+            accountEntity.getParentInstance().getId());
+
+        if (isRegistering)
+        {
+            instanceStatisticsService.apply(
+                accountEntity.getParentInstance().getId(),
+                new Change().maintainerRegistered());
+        }
+
         try
         {
             return getMaintainerDto(accountEntity);
@@ -1031,6 +1070,165 @@ public class UserAccountService
         }
 
         log.info("Deleted Maintainer account with id: {}", userId);
+
+        ownershipCacheService.evictUser(userId);
+        instanceService.instanceContentChanged(
+            accountEntity.getParentInstance().getId());
+        instanceStatisticsService.apply(
+            accountEntity.getParentInstance().getId(),
+            new Change().maintainers(-1, accountEntity.getRole()));
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<MaintainerDto> retrieveMaintainersForInstance(
+        Long instanceId, String after, Integer limit)
+        throws UserAccountServiceException
+    {
+        // Load and validate Instance.
+        Instance instanceEntity;
+
+        try
+        {
+            instanceEntity = instanceService.getInstanceEntity(instanceId);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_MAINTAINER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Error reading Instance from database",
+                UserAccountServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        if (instanceEntity == null)
+        {
+            throw generateException(
+                EXCEPTION_MAINTAINER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Instance not found",
+                UserAccountServiceException.Codes.INSTANCE_NOT_FOUND);
+        }
+
+        Long afterId;
+
+        try
+        {
+            afterId = paginationService.decodeCursor(after);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw generateException(
+                EXCEPTION_MAINTAINER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Invalid cursor: " + after,
+                UserAccountServiceException.Codes.INVALID_CURSOR, ex);
+        }
+
+        // Attempt to read one page from the database.
+        List<UserAccount> accountEntities;
+
+        try
+        {
+            accountEntities = userAccountRepository
+                .findByParentInstanceIdAndDeletedFalseAndIdGreaterThanOrderByIdAsc(
+                    instanceId, afterId, paginationService.getPageable(limit));
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_MAINTAINER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Error reading from database",
+                UserAccountServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        // Return DTO page.
+        try
+        {
+            return paginationService.getPage(accountEntities, limit,
+                UserAccount::getId, ua -> {
+                    try
+                    {
+                        return getMaintainerDto(ua, true);
+                    }
+                    catch (Exception e)
+                    {
+                        throw new RuntimeException(e);
+                    }
+                });
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_MAINTAINER_RETRIEVE_FOR_INSTANCE + instanceId
+                    + ". Error reading from database",
+                UserAccountServiceException.Codes.DATABASE_ERROR_READ_MAPPING,
+                ex);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Content version public methods, for answering conditional requests
+    // before any DTO is built.
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private final String EXCEPTION_VERSION_RETRIEVE_INSTANCE = "Cannot retrieve content version for Instance id: ";
+    private final String EXCEPTION_VERSION_RETRIEVE_MAINTAINER = "Cannot retrieve content version for Maintainer account with user id: ";
+
+    @Transactional(readOnly = true)
+    public InstanceContentVersion retrieveContentVersionForInstance(
+        Long instanceId) throws UserAccountServiceException
+    {
+        InstanceContentVersion version;
+
+        try
+        {
+            version = instanceRepository.findContentVersionById(instanceId)
+                .orElse(null);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_VERSION_RETRIEVE_INSTANCE + instanceId
+                    + ". Error reading from database",
+                UserAccountServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        if (version == null)
+        {
+            throw generateException(
+                EXCEPTION_VERSION_RETRIEVE_INSTANCE + instanceId
+                    + ". Instance not found",
+                UserAccountServiceException.Codes.INSTANCE_NOT_FOUND);
+        }
+
+        return version;
+    }
+
+    @Transactional(readOnly = true)
+    public InstanceContentVersion retrieveContentVersionForMaintainer(
+        Long userId) throws UserAccountServiceException
+    {
+        InstanceContentVersion version;
+
+        try
+        {
+            version = userAccountRepository.findContentVersionById(userId)
+                .orElse(null);
+        }
+        catch (Exception ex)
+        {
+            throw generateException(
+                EXCEPTION_VERSION_RETRIEVE_MAINTAINER + userId
+                    + ". Error reading from database",
+                UserAccountServiceException.Codes.DATABASE_ERROR_READ, ex);
+        }
+
+        if (version == null)
+        {
+            throw generateException(
+                EXCEPTION_VERSION_RETRIEVE_MAINTAINER + userId
+                    + ". Account not found",
+                UserAccountServiceException.Codes.ACCOUNT_NOT_FOUND);
+        }
+
+        return version;
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -1116,107 +1314,98 @@ public class UserAccountService
         }
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public boolean ownerOwnsInstance(Long userId, Long instanceId)
         throws UserAccountServiceException
     {
-        UserAccount userEntity;
-
         try
         {
-            userEntity = getUserAccountEntity(userId);
+            return ownershipCacheService.getDecision(userId,
+                ResourceType.INSTANCE, instanceId,
+                () -> instanceRepository.existsByIdAndOwner(instanceId, userId,
+                    UserAccountRoles.USER_ROLE_OWNER));
         }
         catch (Exception ex)
         {
             throw generateException(
                 EXCEPTION_ALL_VALIDATE_INSTANCE + instanceId
-                    + ". Error reading user account from database.",
+                    + ". Error reading from database.",
                 UserAccountServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
-
-        // Invalid user.
-        if (userEntity == null
-            || userEntity.getRole() != UserAccountRoles.USER_ROLE_OWNER)
-        {
-            return false;
-        }
-
-        for (Instance i : userEntity.getInstances())
-        {
-            if (i.getId().equals(instanceId))
-            {
-                return true;
-            }
-        }
-
-        return false;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public boolean userOwnsCharacter(Long userId, Long characterId)
         throws UserAccountServiceException
     {
-        UserAccount userEntity;
-
         try
         {
-            userEntity = getUserAccountEntity(userId);
+            return ownershipCacheService.getDecision(userId,
+                ResourceType.CHARACTER, characterId,
+                () -> characterRepository.existsByIdAndOwnerOrMaintainer(
+                    characterId, userId, UserAccountRoles.USER_ROLE_OWNER));
         }
         catch (Exception ex)
         {
             throw generateException(
                 EXCEPTION_ALL_VALIDATE_CHARACTER + characterId
-                    + ". Error reading user account from database.",
+                    + ". Error reading from database.",
                 UserAccountServiceException.Codes.DATABASE_ERROR_READ, ex);
         }
+    }
 
-        // Invalid user.
-        if (userEntity == null)
+    // -----------------------------------------------------------------------------------------------------------------
+    // General User Account methods, not to be used with business layer.
+    // -----------------------------------------------------------------------------------------------------------------
+
+    protected UserAccount getUserAccountEntity(Long id) throws Exception
+    {
+        try
         {
-            return false;
+            return userAccountRepository.findByIdAndDeletedFalse(id)
+                .orElse(null);
         }
-        else if (userEntity.getRole() == UserAccountRoles.USER_ROLE_OWNER)
+        catch (IllegalArgumentException iae)
         {
-            for (Instance i : userEntity.getInstances())
-            {
-                for (Character c : i.getCharacters())
-                {
-                    if (c.getId().equals(characterId))
-                    {
-                        return true;
-                    }
-                }
-            }
-
-            return false;
+            return null;
         }
-        else
+    }
+
+    // Loads the account along with the associations its full Owner DTO needs.
+    // The role is not checked here.
+    protected UserAccount getOwnerAccountEntity(Long id, Boolean skipNested)
+        throws Exception
+    {
+        if (skipNested)
         {
-            for (Character c : userEntity.getCharacters())
-            {
-                if (c.getId().equals(characterId))
-                {
-                    return true;
-                }
-            }
+            return getUserAccountEntity(id);
+        }
 
-            return false;
+        try
+        {
+            return userAccountRepository.findOwnerByIdAndDeletedFalse(id)
+                .orElse(null);
+        }
+        catch (IllegalArgumentException iae)
+        {
+            return null;
         }
     }
 
-    // -----------------------------------------------------------------------------------------------------------------
-    // General User Account methods, not to be used with business layer.
-    // -----------------------------------------------------------------------------------------------------------------
-
-    protected UserAccount getUserAccountEntity(Long id) throws Exception
+    // Loads the account along with the associations its full Maintainer DTO
+    // needs. The role is not checked here.
+    protected UserAccount getMaintainerAccountEntity(Long id,
+        Boolean skipNested) throws Exception
     {
+        if (skipNested)
+        {
+            return getUserAccountEntity(id);
+        }
+
         try
         {
-            UserAccount userAccount = userAccountRepository.findById(id)
+            return userAccountRepository.findMaintainerByIdAndDeletedFalse(id)
                 .orElse(null);
-
-            return (userAccount == null || userAccount.getDeleted()) ? null
-                : userAccount;
         }
         catch (IllegalArgumentException iae)
         {
@@ -1224,6 +1413,15 @@ public class UserAccountService
         }
     }
 
+    // Loads the Instance's Maintainers among the given ids. Ids that are not
+    // the Instance's Maintainers are left out.
+    protected List<UserAccount> getMaintainerAccountEntities(Long instanceId,
+        Collection<Long> ids) throws Exception
+    {
+        return userAccountRepository
+            .findByParentInstanceIdAndIdInAndDeletedFalse(instanceId, ids);
+    }
+
     protected UserAccount getUserAccountEntity(OwnerDto ownerDto)
         throws Exception
     {
@@ -1306,9 +1504,9 @@ public class UserAccountService
         try
         {
             UserAccount userAccount = userAccountRepository
-                .findByInviteToken(token).orElse(null);
+                .findByInviteTokenAndDeletedFalse(token).orElse(null);
 
-            return (userAccount == null || userAccount.getDeleted()
+            return (userAccount == null
                 || userAccount
                     .getRole() != UserAccountRoles.USER_ROLE_UNREGISTERED
                 || instance == null || userAccount.getParentInstance() == null
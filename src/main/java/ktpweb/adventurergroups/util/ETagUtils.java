@@ -0,0 +1,98 @@
+package ktpweb.adventurergroups.util;
+
+import java.time.ZoneId;
+
+import org.springframework.web.context.request.WebRequest;
+
+import ktpweb.adventurergroups.modelfilter.ViewFormat;
+import ktpweb.adventurergroups.repository.InstanceContentVersion;
+
+public final class ETagUtils
+{
+    private ETagUtils()
+    {
+    }
+
+    // Every public view of an Instance changes only when its content version
+    // does, so the pair identifies the exact bytes of any of them.
+    public static String getETag(InstanceContentVersion version)
+    {
+        return getETag(version, ViewFormat.JSON, null);
+    }
+
+    // Each format and content encoding of the same view is a different set
+    // of bytes, so it gets its own strong ETag.
+    public static String getETag(InstanceContentVersion version,
+        ViewFormat format, String encoding)
+    {
+        StringBuilder eTag = new StringBuilder("\"")
+            .append(version.getInstanceId()).append('-')
+            .append(version.getContentVersion());
+
+        if (format.getTag() != null)
+        {
+            eTag.append('-').append(format.getTag());
+        }
+
+        if (encoding != null)
+        {
+            eTag.append('-').append(encoding);
+        }
+
+        return eTag.append('"').toString();
+    }
+
+    // Responses the container may still compress cannot promise their exact
+    // bytes, and Tomcat will not compress a response with a strong ETag, so
+    // they get a weak one.
+    public static String getWeakETag(InstanceContentVersion version,
+        ViewFormat format)
+    {
+        return "W/" + getETag(version, format, null);
+    }
+
+    public static long getLastModified(InstanceContentVersion version)
+    {
+        return version.getLastModifiedDate() != null
+            ? version.getLastModifiedDate().atZone(ZoneId.systemDefault())
+                .toInstant().toEpochMilli()
+            : -1;
+    }
+
+    // Adds a weak ETag and the Last-Modified header to a dynamic response,
+    // for the format the request will be answered in. Returns true if the
+    // client's copy is current, in which case the response has become a 304
+    // and the caller should return without a body.
+    public static boolean checkNotModified(WebRequest request,
+        InstanceContentVersion version)
+    {
+        return checkNotModified(request, version,
+            ViewFormat.negotiate(request));
+    }
+
+    public static boolean checkNotModified(WebRequest request,
+        InstanceContentVersion version, ViewFormat format)
+    {
+        if (version == null)
+        {
+            return false;
+        }
+
+        return request.checkNotModified(getWeakETag(version, format),
+            getLastModified(version));
+    }
+
+    // As above, for a body already encoded by the application, whose exact
+    // bytes the strong ETag identifies.
+    public static boolean checkNotModified(WebRequest request,
+        InstanceContentVersion version, ViewFormat format, String encoding)
+    {
+        if (version == null)
+        {
+            return false;
+        }
+
+        return request.checkNotModified(getETag(version, format, encoding),
+            getLastModified(version));
+    }
+}
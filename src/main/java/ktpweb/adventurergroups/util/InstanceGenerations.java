@@ -0,0 +1,49 @@
+package ktpweb.adventurergroups.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Generation counter for the caches built from an Instance's content, telling
+// a build whether the Instance changed while it was being read, so a stale
+// copy is not kept.
+//
+// Generations are taken from one counter shared by every Instance, and each
+// Instance only keeps the generation of its last change. Removed Instances
+// are forgotten, any removal counting as a change for the builds that
+// started before it, so only the Instances still in use hold an entry.
+public class InstanceGenerations
+{
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong lastRemoval = new AtomicLong();
+
+    private final Map<Long, Long> lastChanges = new ConcurrentHashMap<>();
+
+    // Taken before reading the Instance, to pass to changedSince.
+    public long current()
+    {
+        return generation.get();
+    }
+
+    public void changed(Long instanceId)
+    {
+        // Concurrent changes may be recorded out of order, so keep the
+        // latest.
+        lastChanges.merge(instanceId, generation.incrementAndGet(), Math::max);
+    }
+
+    public void removed(Long instanceId)
+    {
+        // Recorded before forgetting the Instance, so a build sees one or
+        // the other.
+        lastRemoval.accumulateAndGet(generation.incrementAndGet(), Math::max);
+        lastChanges.remove(instanceId);
+    }
+
+    public boolean changedSince(Long instanceId, long since)
+    {
+        return lastChanges.getOrDefault(instanceId, 0L) > since
+            || lastRemoval.get() > since;
+    }
+}
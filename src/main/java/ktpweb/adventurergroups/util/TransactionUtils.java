@@ -0,0 +1,32 @@
+package ktpweb.adventurergroups.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public final class TransactionUtils
+{
+    private TransactionUtils()
+    {
+    }
+
+    // Runs the action once the current transaction commits, or immediately if
+    // there is no transaction. Rolled back transactions never run it.
+    public static void afterCommit(Runnable action)
+    {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager
+            .registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    action.run();
+                }
+            });
+    }
+}
@@ -0,0 +1,86 @@
+-- Base schema, matching the tables previously generated by ddl-auto.
+
+create table admin_account (
+    id bigint generated by default as identity,
+    active boolean not null,
+    create_date timestamp,
+    delete_date timestamp,
+    deleted boolean not null,
+    displayname varchar(50),
+    email varchar(50),
+    last_activate_date timestamp,
+    last_deactivae_date timestamp,
+    password varchar(255),
+    username varchar(20),
+    primary key (id)
+);
+
+create table character_group (
+    id bigint generated by default as identity,
+    color_primary integer,
+    create_date timestamp,
+    delete_date timestamp,
+    deleted boolean not null,
+    description varchar(200),
+    name varchar(50),
+    instance_id bigint not null,
+    primary key (id)
+);
+
+create table characterobject (
+    id bigint generated by default as identity,
+    color_primary integer,
+    color_secondary integer,
+    create_date timestamp,
+    delete_date timestamp,
+    deleted boolean not null,
+    description varchar(200),
+    name varchar(50),
+    group_id bigint,
+    instance_id bigint not null,
+    maintainer_id bigint,
+    primary key (id)
+);
+
+create table instance (
+    id bigint generated by default as identity,
+    active boolean not null,
+    create_date timestamp,
+    delete_date timestamp,
+    deleted boolean not null,
+    description varchar(200),
+    display_name varchar(50),
+    last_activate_date timestamp,
+    last_deactivate_date timestamp,
+    subdomain_name varchar(20),
+    owner_id bigint not null,
+    primary key (id)
+);
+
+create table user_account (
+    id bigint generated by default as identity,
+    create_date timestamp,
+    delete_date timestamp,
+    deleted boolean not null,
+    displayname varchar(50),
+    email varchar(50),
+    invite_token varchar(255),
+    password varchar(255),
+    role integer,
+    username varchar(20),
+    instance_id bigint,
+    primary key (id)
+);
+
+alter table character_group add constraint FKm4f8b65vfqfnu07gr8517j0h1
+    foreign key (instance_id) references instance;
+alter table characterobject add constraint FKp1gg1p25dfxma2kg9d5mpxgr6
+    foreign key (group_id) references character_group;
+alter table characterobject add constraint FK5s46594hh0gfn7186wr7u65ir
+    foreign key (instance_id) references instance;
+alter table characterobject add constraint FKrth90hu1mxpvp4q91ga2qpsy7
+    foreign key (maintainer_id) references user_account;
+alter table instance add constraint FK3alp5goksyj391ll7ybphyrpo
+    foreign key (owner_id) references user_account;
+alter table user_account add constraint FKe60gbwa3dr3c4v0gtfj79h228
+    foreign key (instance_id) references instance;
@@ -0,0 +1,30 @@
+-- Indexes for the repository queries and ExampleMatcher probes. Foreign key
+-- columns lead so the keyset pages (fk = ? and deleted = false and id > ?
+-- order by id) are read straight off the index.
+--
+-- H2 cannot index expressions, so the case-insensitive probes on username,
+-- email and subdomain name are narrowed by the equality columns they share.
+-- See the MySQL scripts for the lower() indexes.
+
+create index idx_character_instance
+    on characterobject (instance_id, deleted, id);
+create index idx_character_maintainer
+    on characterobject (maintainer_id, deleted, id);
+create index idx_character_group
+    on characterobject (group_id, deleted, id);
+
+create index idx_character_group_instance
+    on character_group (instance_id, deleted, id);
+
+create index idx_instance_owner
+    on instance (owner_id, deleted, id);
+
+create index idx_user_account_instance
+    on user_account (instance_id, deleted, id);
+create index idx_user_account_role
+    on user_account (role, deleted, instance_id);
+create index idx_user_account_invite_token
+    on user_account (invite_token, deleted);
+
+create index idx_admin_account_active
+    on admin_account (deleted, active);
@@ -0,0 +1,21 @@
+-- Ids are reserved in blocks from this table instead of by the identity
+-- columns, so Hibernate can batch inserts. Each entity's row starts after its
+-- highest existing id. The identity columns stay, unused, for rows inserted
+-- outside the application.
+
+create table id_generator (
+    sequence_name varchar(255) not null,
+    next_val bigint,
+    primary key (sequence_name)
+);
+
+insert into id_generator (sequence_name, next_val)
+select 'admin_account', coalesce(max(id), 0) + 1 from admin_account;
+insert into id_generator (sequence_name, next_val)
+select 'character_group', coalesce(max(id), 0) + 1 from character_group;
+insert into id_generator (sequence_name, next_val)
+select 'characterobject', coalesce(max(id), 0) + 1 from characterobject;
+insert into id_generator (sequence_name, next_val)
+select 'instance', coalesce(max(id), 0) + 1 from instance;
+insert into id_generator (sequence_name, next_val)
+select 'user_account', coalesce(max(id), 0) + 1 from user_account;
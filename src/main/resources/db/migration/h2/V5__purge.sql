@@ -0,0 +1,45 @@
+-- Soft-deleted rows past their retention are moved into these archive tables
+-- by PurgeService, keeping the hot tables small. Each archive copies its hot
+-- table column for column, so later changes to a hot table must be repeated
+-- on its archive.
+
+create table admin_account_archive as
+    select * from admin_account where 1 = 0;
+create table character_group_archive as
+    select * from character_group where 1 = 0;
+create table characterobject_archive as
+    select * from characterobject where 1 = 0;
+create table instance_archive as
+    select * from instance where 1 = 0;
+create table user_account_archive as
+    select * from user_account where 1 = 0;
+
+alter table admin_account_archive alter column id set not null;
+alter table character_group_archive alter column id set not null;
+alter table characterobject_archive alter column id set not null;
+alter table instance_archive alter column id set not null;
+alter table user_account_archive alter column id set not null;
+
+alter table admin_account_archive add primary key (id);
+alter table character_group_archive add primary key (id);
+alter table characterobject_archive add primary key (id);
+alter table instance_archive add primary key (id);
+alter table user_account_archive add primary key (id);
+
+-- The last id each purge target committed, so an interrupted purge resumes
+-- after it. Reset to 0 once a target has been purged to its end.
+
+create table purge_checkpoint (
+    target varchar(50) not null,
+    last_id bigint not null,
+    update_date timestamp,
+    primary key (target)
+);
+
+-- The purge walks each table's soft-deleted rows in id order.
+
+create index idx_admin_account_purge on admin_account (deleted, id);
+create index idx_character_group_purge on character_group (deleted, id);
+create index idx_character_purge on characterobject (deleted, id);
+create index idx_instance_purge on instance (deleted, id);
+create index idx_user_account_purge on user_account (deleted, id);
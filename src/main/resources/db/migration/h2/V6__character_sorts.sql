@@ -0,0 +1,9 @@
+-- Indexes for the sorted character pages. Each continues a page with
+-- instance_id = ? and deleted = false and (column, id) after the last row,
+-- so the rows are read in order off the index instead of being sorted.
+-- Group and maintainer filters use the indexes of V2.
+
+create index idx_character_instance_name
+    on characterobject (instance_id, deleted, name, id);
+create index idx_character_instance_create_date
+    on characterobject (instance_id, deleted, create_date, id);
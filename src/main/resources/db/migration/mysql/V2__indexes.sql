@@ -0,0 +1,35 @@
+-- Indexes for the repository queries and ExampleMatcher probes. Foreign key
+-- columns lead so the keyset pages (fk = ? and deleted = false and id > ?
+-- order by id) are read straight off the index.
+--
+-- The ExampleMatcher probes compare lower(column) = ?, so they are served by
+-- functional key parts, which need MySQL 8.0.13 or later.
+
+create index idx_character_instance
+    on characterobject (instance_id, deleted, id);
+create index idx_character_maintainer
+    on characterobject (maintainer_id, deleted, id);
+create index idx_character_group
+    on characterobject (group_id, deleted, id);
+
+create index idx_character_group_instance
+    on character_group (instance_id, deleted, id);
+
+create index idx_instance_owner
+    on instance (owner_id, deleted, id);
+create index idx_instance_subdomain
+    on instance ((lower(subdomain_name)), active);
+
+create index idx_user_account_instance
+    on user_account (instance_id, deleted, id);
+create index idx_user_account_username
+    on user_account (role, deleted, (lower(username)), instance_id);
+create index idx_user_account_email
+    on user_account (role, deleted, (lower(email)), instance_id);
+create index idx_user_account_invite_token
+    on user_account (invite_token, deleted);
+
+create index idx_admin_account_username
+    on admin_account (deleted, active, (lower(username)));
+create index idx_admin_account_email
+    on admin_account (deleted, active, (lower(email)));
@@ -0,0 +1,10 @@
+-- Optimistic locking versions, and the aggregate version of everything shown
+-- in an Instance's public views, used for ETags.
+
+alter table instance add column version bigint default 0 not null;
+alter table instance add column content_version bigint default 0 not null;
+alter table instance add column last_modified_date datetime(6);
+
+alter table characterobject add column version bigint default 0 not null;
+alter table character_group add column version bigint default 0 not null;
+alter table user_account add column version bigint default 0 not null;
@@ -0,0 +1,28 @@
+-- Soft-deleted rows past their retention are moved into these archive tables
+-- by PurgeService, keeping the hot tables small. Each archive copies its hot
+-- table column for column, so later changes to a hot table must be repeated
+-- on its archive. Foreign keys are not copied.
+
+create table admin_account_archive like admin_account;
+create table character_group_archive like character_group;
+create table characterobject_archive like characterobject;
+create table instance_archive like instance;
+create table user_account_archive like user_account;
+
+-- The last id each purge target committed, so an interrupted purge resumes
+-- after it. Reset to 0 once a target has been purged to its end.
+
+create table purge_checkpoint (
+    target varchar(50) not null,
+    last_id bigint not null,
+    update_date datetime(6),
+    primary key (target)
+) engine=InnoDB;
+
+-- The purge walks each table's soft-deleted rows in id order.
+
+create index idx_admin_account_purge on admin_account (deleted, id);
+create index idx_character_group_purge on character_group (deleted, id);
+create index idx_character_purge on characterobject (deleted, id);
+create index idx_instance_purge on instance (deleted, id);
+create index idx_user_account_purge on user_account (deleted, id);
@@ -0,0 +1,49 @@
+-- Counters behind the Instance statistics, kept by InstanceStatisticsService
+-- in the same transaction as every write and recounted by its
+-- reconciliation job. Rows are not tied to their Instance or Character Group
+-- by foreign keys, as they are written before the entity is flushed.
+
+create table instance_statistics (
+    instance_id bigint not null,
+    character_count bigint not null,
+    character_group_count bigint not null,
+    registered_maintainer_count bigint not null,
+    unregistered_maintainer_count bigint not null,
+    update_date datetime(6),
+    primary key (instance_id)
+) engine=InnoDB;
+
+create table character_group_statistics (
+    character_group_id bigint not null,
+    instance_id bigint not null,
+    character_count bigint not null,
+    primary key (character_group_id)
+) engine=InnoDB;
+
+create index idx_character_group_statistics_instance
+    on character_group_statistics (instance_id);
+
+-- Count the existing Instances once. Roles are stored by ordinal: 1 for
+-- registered Maintainers, 2 for unregistered ones.
+
+insert into instance_statistics (instance_id, character_count,
+    character_group_count, registered_maintainer_count,
+    unregistered_maintainer_count, update_date)
+select i.id,
+    (select count(*) from characterobject c
+        where c.instance_id = i.id and c.deleted = false),
+    (select count(*) from character_group cg
+        where cg.instance_id = i.id and cg.deleted = false),
+    (select count(*) from user_account u
+        where u.instance_id = i.id and u.deleted = false and u.role = 1),
+    (select count(*) from user_account u
+        where u.instance_id = i.id and u.deleted = false and u.role = 2),
+    current_timestamp
+from instance i where i.deleted = false;
+
+insert into character_group_statistics (character_group_id, instance_id,
+    character_count)
+select cg.id, cg.instance_id,
+    (select count(*) from characterobject c
+        where c.group_id = cg.id and c.deleted = false)
+from character_group cg where cg.deleted = false;
@@ -0,0 +1,90 @@
+package ktpweb.adventurergroups;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+
+import ktpweb.adventurergroups.model.InstanceDto;
+import ktpweb.adventurergroups.model.OwnerDto;
+import ktpweb.adventurergroups.service.CharacterService;
+import ktpweb.adventurergroups.service.InstanceService;
+import ktpweb.adventurergroups.service.UserAccountService;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase(replace = Replace.ANY)
+class ContentNegotiationTests
+{
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private CharacterService characterService;
+
+    @Autowired
+    private InstanceService instanceService;
+
+    @Autowired
+    private UserAccountService userAccountService;
+
+    @Test
+    void negotiatedResponsesVaryByAcceptTests() throws Exception
+    {
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        characterService.createCharacter(testInstance);
+        characterService.createCharacterGroup(testInstance);
+
+        String instancePath = "/api/v1/instances/" + testInstance.getId();
+
+        // Every response whose format follows the Accept header says so,
+        // whichever way it is written, and only once.
+        for (String path : List.of(instancePath,
+            instancePath + "/characters", instancePath + "/characters?limit=5",
+            instancePath + "/characters?stream=true",
+            instancePath + "/characters/search?q=character",
+            instancePath + "/names?prefix=new",
+            instancePath + "/groups?limit=5"))
+        {
+            for (MediaType format : List.of(MediaType.APPLICATION_JSON,
+                MediaType.APPLICATION_CBOR))
+            {
+                HttpHeaders headers = new HttpHeaders();
+                headers.setAccept(List.of(format));
+
+                ResponseEntity<byte[]> response = restTemplate.exchange(path,
+                    HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+                assertEquals(HttpStatus.OK, response.getStatusCode(), path);
+                assertEquals(format.toString(), response.getHeaders()
+                    .getContentType().toString().split(";")[0], path);
+                // Tomcat lower-cases the header when adding its own
+                // Accept-Encoding.
+                assertEquals(1, response.getHeaders().getVary().stream()
+                    .filter(HttpHeaders.ACCEPT::equalsIgnoreCase).count(),
+                    path);
+            }
+        }
+    }
+}
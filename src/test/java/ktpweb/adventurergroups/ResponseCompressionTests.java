@@ -0,0 +1,115 @@
+package ktpweb.adventurergroups;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+
+import ktpweb.adventurergroups.model.CharacterDto;
+import ktpweb.adventurergroups.model.InstanceDto;
+import ktpweb.adventurergroups.model.OwnerDto;
+import ktpweb.adventurergroups.service.CharacterService;
+import ktpweb.adventurergroups.service.InstanceService;
+import ktpweb.adventurergroups.service.UserAccountService;
+
+// Requests through the running container, which compresses the dynamic
+// responses SnapshotService does not.
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase(replace = Replace.ANY)
+class ResponseCompressionTests
+{
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private CharacterService characterService;
+
+    @Autowired
+    private InstanceService instanceService;
+
+    @Autowired
+    private UserAccountService userAccountService;
+
+    @Test
+    void dynamicListCompressionTests() throws Exception
+    {
+        // Create an instance with a list of characters well over the minimum
+        // compressed size.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        List<CharacterDto> characters = new ArrayList<>();
+
+        for (int i = 0; i < 40; i++)
+        {
+            CharacterDto character = new CharacterDto();
+
+            character.setName("Test Character " + i);
+            character.setDescription("A long description of character " + i
+                + ", repeated across the whole instance.");
+            characters.add(character);
+        }
+
+        characterService.saveCharactersForInstance(testInstance.getId(),
+            characters);
+
+        // A page, rather than the default snapshot, is built per request and
+        // gzipped by the container.
+        String path = "/api/v1/instances/" + testInstance.getId()
+            + "/characters?limit=50";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+        ResponseEntity<byte[]> response = restTemplate.exchange(path,
+            HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("gzip",
+            response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        try (GZIPInputStream in = new GZIPInputStream(
+            new ByteArrayInputStream(response.getBody())))
+        {
+            assertTrue(new String(in.readAllBytes())
+                .contains("Test Character 39"));
+        }
+
+        // Its ETag is weak, so the compressed and plain bodies share it, and
+        // it still answers a conditional request.
+        String eTag = response.getHeaders().getETag();
+
+        assertNotNull(eTag);
+        assertTrue(eTag.startsWith("W/"), "Dynamic ETags should be weak");
+
+        headers.setIfNoneMatch(eTag);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, restTemplate.exchange(path,
+            HttpMethod.GET, new HttpEntity<>(headers), byte[].class)
+            .getStatusCode());
+    }
+}
@@ -0,0 +1,259 @@
+package ktpweb.adventurergroups;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flywaydb.core.Flyway;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+
+import ktpweb.adventurergroups.model.CharacterDto;
+import ktpweb.adventurergroups.model.CharacterGroupDto;
+import ktpweb.adventurergroups.model.InstanceDto;
+import ktpweb.adventurergroups.model.MaintainerDto;
+import ktpweb.adventurergroups.model.OwnerDto;
+import ktpweb.adventurergroups.repository.CharacterFilter;
+import ktpweb.adventurergroups.repository.UserAccountRepository;
+import ktpweb.adventurergroups.service.AdminAccountService;
+import ktpweb.adventurergroups.service.CharacterService;
+import ktpweb.adventurergroups.service.InstanceService;
+import ktpweb.adventurergroups.service.PaginationService;
+import ktpweb.adventurergroups.service.UserAccountService;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate."
+    + "session_factory.statement_inspector=ktpweb.adventurergroups."
+    + "SchemaMigrationTests$RecordingStatementInspector")
+@ActiveProfiles("test")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase(replace = Replace.ANY)
+class SchemaMigrationTests
+{
+    @Autowired
+    private AdminAccountService adminAccountService;
+
+    @Autowired
+    private CharacterService characterService;
+
+    @Autowired
+    private InstanceService instanceService;
+
+    @Autowired
+    private UserAccountService userAccountService;
+
+    @Autowired
+    private PaginationService paginationService;
+
+    @Autowired
+    private UserAccountRepository userAccountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Records every statement Hibernate prepares, so the test explains the SQL
+    // the repositories actually generate.
+    public static class RecordingStatementInspector
+        implements StatementInspector
+    {
+        private static final List<String> statements = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql)
+        {
+            synchronized (statements)
+            {
+                statements.add(sql);
+            }
+
+            return sql;
+        }
+
+        static List<String> drain()
+        {
+            synchronized (statements)
+            {
+                List<String> drained = new ArrayList<>(statements);
+                statements.clear();
+                return drained;
+            }
+        }
+    }
+
+    @Test
+    void migrationsCreateSchemaTests() throws Exception
+    {
+        // Flyway ran both scripts, and Hibernate validated the result.
+        assertTrue(jdbcTemplate.queryForObject(
+            "select count(*) from \"flyway_schema_history\" where \"success\"",
+            Integer.class) >= 2, "Migrations should have been applied");
+    }
+
+    @Test
+    void hotQueriesUseIndexesTests() throws Exception
+    {
+        // Create an owner, instance, group, maintainer and characters. The
+        // instance subdomain probe compares lower(subdomain_name), which only
+        // the MySQL functional index can serve, so it stays outside the
+        // recorded section.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        CharacterGroupDto testGroup = characterService
+            .createCharacterGroup(testInstance);
+        MaintainerDto testMaintainer = userAccountService
+            .createUnregisteredMaintainer(testInstance);
+
+        CharacterDto testCharacter = characterService
+            .createCharacterForMaintainer(testMaintainer);
+
+        testCharacter.setCharacterGroup(testGroup);
+        characterService.updateCharacter(testCharacter.getId(), testCharacter);
+
+        RecordingStatementInspector.drain();
+
+        // Full retrievals by id.
+        instanceService.retrieveInstance(testInstance.getId());
+        characterService.retrieveCharacter(testCharacter.getId());
+        characterService.retrieveCharacterGroup(testGroup.getId());
+        userAccountService.retrieveOwner(testOwner.getId());
+        userAccountService.retrieveMaintainer(testMaintainer.getId());
+
+        // Keyset pages.
+        characterService.retrieveCharactersForInstance(testInstance.getId(),
+            null, null);
+        characterService.retrieveCharactersForMaintainer(testInstance.getId(),
+            testMaintainer.getId(), null, null);
+        characterService.retrieveCharactersForGroup(testInstance.getId(),
+            testGroup.getId(), null, null);
+        characterService.retrieveCharacterGroupsForInstance(
+            testInstance.getId(), null, null);
+        instanceService.retrieveInstancesForOwner(testOwner.getId(), null,
+            null);
+        userAccountService.retrieveMaintainersForInstance(testInstance.getId(),
+            null, null);
+
+        // Filtered and sorted pages, including a continued one.
+        CharacterFilter filter = new CharacterFilter();
+        filter.setCharacterGroupId(testGroup.getId());
+        filter.setColor(1);
+        characterService.filterCharactersForInstance(testInstance.getId(),
+            filter, null, null);
+
+        filter = new CharacterFilter();
+        filter.setHasMaintainer(true);
+        filter.setSort(CharacterFilter.Sort.NAME);
+        filter.setDescending(true);
+        characterService.filterCharactersForInstance(testInstance.getId(),
+            filter, paginationService.encodeCursor(testCharacter.getId(),
+                testCharacter.getName()), null);
+
+        // Ownership checks.
+        userAccountService.ownerOwnsInstance(testOwner.getId(),
+            testInstance.getId());
+        userAccountService.userOwnsCharacter(testMaintainer.getId(),
+            testCharacter.getId());
+
+        // Lookups by invite token and username.
+        userAccountRepository.findByInviteTokenAndDeletedFalse("token");
+        userAccountService.retrieveUserAccountForLogin("O-testowner");
+        userAccountService.retrieveUserAccountForLogin(
+            testInstance.getId() + "-testmaintainer");
+        userAccountService.createOwner("otherowner", "testpassword",
+            "otheremail");
+        adminAccountService.checkIfAdminExists();
+
+        List<String> statements = RecordingStatementInspector.drain();
+
+        assertFalse(statements.isEmpty());
+
+        for (String sql : statements)
+        {
+            if (!sql.toLowerCase().startsWith("select"))
+                continue;
+
+            // H2 plans the statement with its parameters unbound, the same
+            // way it plans the prepared statement Hibernate runs.
+            String plan = jdbcTemplate.queryForObject(
+                "explain " + sql, String.class);
+
+            assertFalse(plan.contains(".tableScan"),
+                "Query should use an index: " + plan);
+        }
+    }
+
+    @Test
+    void pooledIdsContinueExistingIdsTests() throws Exception
+    {
+        // Migrate a separate database to the schema before pooled ids, and
+        // fill it with rows inserted through the identity columns.
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:pooledids;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate oldDatabase = new JdbcTemplate(dataSource);
+
+        Flyway.configure().dataSource(dataSource)
+            .locations("classpath:db/migration/h2").target("3").load()
+            .migrate();
+
+        oldDatabase.update("insert into user_account (id, deleted) "
+            + "values (7, false)");
+        oldDatabase.update("insert into instance (id, active, deleted, "
+            + "owner_id) values (12, true, false, 7)");
+        oldDatabase.update("insert into characterobject (deleted, "
+            + "instance_id) values (false, 12)");
+        oldDatabase.update("insert into characterobject (id, deleted, "
+            + "instance_id) values (40, false, 12)");
+
+        // Each entity's ids resume after its highest existing one.
+        Flyway.configure().dataSource(dataSource)
+            .locations("classpath:db/migration/h2").load().migrate();
+
+        assertEquals(41L, getNextId(oldDatabase, "characterobject"));
+        assertEquals(13L, getNextId(oldDatabase, "instance"));
+        assertEquals(8L, getNextId(oldDatabase, "user_account"));
+        assertEquals(1L, getNextId(oldDatabase, "character_group"));
+        assertEquals(1L, getNextId(oldDatabase, "admin_account"));
+
+        oldDatabase.execute("shutdown");
+
+        // In the application, a block of new characters costs one trip to
+        // the table, and never reuses an id.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        CharacterDto firstCharacter = characterService
+            .createCharacter(testInstance);
+
+        long nextId = getNextId(jdbcTemplate, "characterobject");
+
+        assertTrue(firstCharacter.getId() < nextId);
+
+        List<CharacterDto> characters = characterService
+            .saveCharactersForInstance(testInstance.getId(),
+                List.of(new CharacterDto(), new CharacterDto()));
+
+        assertEquals(nextId, getNextId(jdbcTemplate, "characterobject"));
+        assertEquals(firstCharacter.getId() + 1, characters.get(0).getId());
+        assertEquals(firstCharacter.getId() + 2, characters.get(1).getId());
+    }
+
+    private static long getNextId(JdbcTemplate database, String segment)
+    {
+        return database.queryForObject(
+            "select next_val from id_generator where sequence_name = ?",
+            Long.class, segment);
+    }
+}
@@ -0,0 +1,228 @@
+package ktpweb.adventurergroups;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+
+import ktpweb.adventurergroups.model.CharacterDto;
+import ktpweb.adventurergroups.model.CharacterGroupDto;
+import ktpweb.adventurergroups.model.InstanceDto;
+import ktpweb.adventurergroups.model.MaintainerDto;
+import ktpweb.adventurergroups.model.OwnerDto;
+import ktpweb.adventurergroups.model.UserAccountDto;
+import ktpweb.adventurergroups.modelfilter.CharacterDtoFilters;
+import ktpweb.adventurergroups.modelfilter.CharacterGroupDtoFilters;
+import ktpweb.adventurergroups.modelfilter.InstanceDtoFilters;
+import ktpweb.adventurergroups.modelfilter.MaintainerDtoFilters;
+import ktpweb.adventurergroups.modelfilter.OwnerDtoFilters;
+import ktpweb.adventurergroups.modelfilter.ViewFormat;
+import ktpweb.adventurergroups.modelfilter.ViewWriters;
+import ktpweb.adventurergroups.service.CharacterService;
+import ktpweb.adventurergroups.service.InstanceService;
+import ktpweb.adventurergroups.service.UserAccountService;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase(replace = Replace.ANY)
+class ViewSerializationTests
+{
+    @Autowired
+    private CharacterService characterService;
+
+    @Autowired
+    private InstanceService instanceService;
+
+    @Autowired
+    private UserAccountService userAccountService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ViewWriters viewWriters;
+
+    @Test
+    void compiledViewsMatchFiltersTests() throws Exception
+    {
+        // Create an instance with every kind of object, all linked together.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        CharacterGroupDto testGroup = characterService
+            .createCharacterGroup(testInstance);
+        MaintainerDto testMaintainer = userAccountService
+            .createUnregisteredMaintainer(testInstance);
+
+        UserAccountDto registerInfo = new UserAccountDto();
+        registerInfo.setUsername("testmaintainer");
+        registerInfo.setPassword("testpassword");
+        registerInfo.setEmail("maintaineremail");
+        userAccountService.registerOrUpdateMaintainer(testMaintainer.getId(),
+            registerInfo);
+
+        CharacterDto testCharacter = characterService
+            .createCharacterForMaintainer(testMaintainer);
+
+        testCharacter.setName("Test Character");
+        testCharacter.setDescription("Test description");
+        testCharacter.setCharacterGroup(testGroup);
+        characterService.updateCharacter(testCharacter.getId(), testCharacter);
+
+        // Every view writes the same JSON either way, for single objects and
+        // for lists.
+        OwnerDto owner = userAccountService.retrieveOwner(testOwner.getId());
+        InstanceDto instance = instanceService
+            .retrieveInstance(testInstance.getId());
+        CharacterDto character = characterService
+            .retrieveCharacter(testCharacter.getId());
+        CharacterGroupDto group = characterService
+            .retrieveCharacterGroup(testGroup.getId());
+        MaintainerDto maintainer = userAccountService
+            .retrieveMaintainer(testMaintainer.getId());
+
+        assertSameOutput(OwnerDtoFilters.simpleFilterProvider, owner);
+        assertSameOutput(OwnerDtoFilters.fullFilterProvider, owner);
+        assertSameOutput(InstanceDtoFilters.simpleFilterProvider, instance);
+        assertSameOutput(InstanceDtoFilters.fullFilterProvider, instance);
+        assertSameOutput(CharacterDtoFilters.simpleFilterProvider, character);
+        assertSameOutput(CharacterDtoFilters.fullFilterProvider, character);
+        assertSameOutput(CharacterDtoFilters.listFilterProvider, character);
+        assertSameOutput(CharacterGroupDtoFilters.simpleFilterProvider, group);
+        assertSameOutput(CharacterGroupDtoFilters.fullFilterProvider, group);
+        assertSameOutput(MaintainerDtoFilters.simpleFilterProvider,
+            maintainer);
+        assertSameOutput(MaintainerDtoFilters.fullFilterProvider, maintainer);
+
+        assertSameOutput(CharacterDtoFilters.simpleFilterProvider,
+            List.of(character, character));
+        assertSameOutput(InstanceDtoFilters.simpleFilterProvider,
+            List.of(instance));
+
+        // A field set rebuilt after eviction reuses the writer compiled for
+        // the first one, rather than holding a second copy.
+        FilterProvider fieldSet = CharacterDtoFilters
+            .listFieldSet(Set.of("id", "name")).getFilterProvider();
+
+        assertSameOutput(fieldSet, character);
+        assertSame(viewWriters.getWriter(fieldSet),
+            viewWriters.getWriter(CharacterDtoFilters
+                .listFieldSet(Set.of("name", "id")).getFilterProvider()));
+        assertNotSame(viewWriters.getWriter(fieldSet),
+            viewWriters.getWriter(CharacterDtoFilters
+                .listFieldSet(Set.of("id")).getFilterProvider()));
+    }
+
+    @Test
+    void binaryFormatsTests() throws Exception
+    {
+        // Create an instance with a few described characters.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        for (int i = 0; i < 5; i++)
+        {
+            CharacterDto testCharacter = characterService
+                .createCharacter(testInstance);
+
+            testCharacter.setName("Test Character " + i);
+            testCharacter.setDescription("Test description " + i);
+            characterService.updateCharacter(testCharacter.getId(),
+                testCharacter);
+        }
+
+        InstanceDto instance = instanceService
+            .retrieveInstance(testInstance.getId());
+        CharacterDto character = instance.getCharacters().iterator().next();
+
+        byte[] json = viewWriters
+            .getWriter(InstanceDtoFilters.fullFilterProvider)
+            .writeValueAsBytes(instance);
+
+        for (ViewFormat format : List.of(ViewFormat.SMILE, ViewFormat.CBOR))
+        {
+            ObjectMapper formatMapper = viewWriters.getObjectMapper(format);
+
+            // Responses carry the same view as JSON, in fewer bytes.
+            byte[] encoded = viewWriters
+                .getWriter(InstanceDtoFilters.fullFilterProvider, format)
+                .writeValueAsBytes(instance);
+
+            assertEquals(objectMapper.readTree(json),
+                formatMapper.readTree(encoded), format.name());
+            assertTrue(encoded.length < json.length,
+                format + " should be smaller than JSON");
+
+            // Request bodies are read back into the same DTO.
+            CharacterDto decoded = formatMapper.readValue(
+                viewWriters
+                    .getWriter(CharacterDtoFilters.fullFilterProvider, format)
+                    .writeValueAsBytes(character),
+                CharacterDto.class);
+
+            assertEquals(character.getId(), decoded.getId());
+            assertEquals(character.getVersion(), decoded.getVersion());
+            assertEquals(character.getName(), decoded.getName());
+            assertEquals(character.getDescription(), decoded.getDescription());
+        }
+
+        // The Accept header picks the format, JSON being the default.
+        assertEquals(ViewFormat.JSON, negotiate(null));
+        assertEquals(ViewFormat.JSON, negotiate("*/*"));
+        assertEquals(ViewFormat.JSON, negotiate("not a media type"));
+        assertEquals(ViewFormat.CBOR, negotiate("application/cbor"));
+        assertEquals(ViewFormat.SMILE,
+            negotiate("application/json;q=0.5, application/x-jackson-smile"));
+        assertEquals(ViewFormat.JSON,
+            negotiate("application/cbor;q=0, application/*"));
+    }
+
+    private static ViewFormat negotiate(String accept)
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET",
+            "/api/v1/instances/1");
+
+        if (accept != null)
+        {
+            request.addHeader(HttpHeaders.ACCEPT, accept);
+        }
+
+        return ViewFormat.negotiate(new ServletWebRequest(request));
+    }
+
+    private void assertSameOutput(FilterProvider filters, Object value)
+        throws Exception
+    {
+        String expected = objectMapper.writer(filters)
+            .writeValueAsString(value);
+
+        assertEquals(expected,
+            viewWriters.getWriter(filters).writeValueAsString(value));
+
+        // The compiled serializers no longer consult the filters at all.
+        assertEquals(expected, viewWriters.getWriter(filters)
+            .with((FilterProvider) null).writeValueAsString(value));
+    }
+}
@@ -0,0 +1,1042 @@
+package ktpweb.adventurergroups.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+import ktpweb.adventurergroups.exception.CharacterServiceException;
+import ktpweb.adventurergroups.model.CharacterDto;
+import ktpweb.adventurergroups.model.CharacterGroupDto;
+import ktpweb.adventurergroups.model.CursorPage;
+import ktpweb.adventurergroups.model.InstanceDto;
+import ktpweb.adventurergroups.model.MaintainerDto;
+import ktpweb.adventurergroups.model.NameSuggestionDto;
+import ktpweb.adventurergroups.model.OwnerDto;
+import ktpweb.adventurergroups.modelfilter.CharacterDtoFilters;
+import ktpweb.adventurergroups.modelfilter.FieldSet;
+import ktpweb.adventurergroups.repository.CharacterFilter;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase(replace = Replace.ANY)
+class CharacterServiceTests
+{
+    @Autowired
+    private CharacterService characterService;
+
+    @Autowired
+    private InstanceService instanceService;
+
+    @Autowired
+    private UserAccountService userAccountService;
+
+    @Autowired
+    private FieldSetService fieldSetService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void retrieveCharacterSummariesTests() throws Exception
+    {
+        CharacterServiceException exception;
+
+        // Create a new owner and instance for the test.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        // Create two characters, then update one and delete the other.
+        CharacterDto testCharacter = characterService
+            .createCharacter(testInstance);
+        CharacterDto deletedCharacter = characterService
+            .createCharacter(testInstance);
+
+        testCharacter.setName("Test Character");
+        testCharacter.setDescription("Test description");
+        testCharacter.setColorPrimary(0x0000FF);
+        testCharacter.setColorSecondary(0xFF0000);
+        characterService.updateCharacter(testCharacter.getId(), testCharacter);
+
+        characterService.deleteCharacter(deletedCharacter.getId());
+
+        // Only the remaining character is listed, with its simple fields.
+        List<CharacterDto> summaries = characterService
+            .retrieveCharactersForInstance(testInstance.getId(), null, null)
+            .getItems();
+
+        assertEquals(1, summaries.size(),
+            "Deleted characters should not be listed");
+
+        CharacterDto summary = summaries.get(0);
+
+        assertEquals(testCharacter.getId(), summary.getId());
+        assertEquals("Test Character", summary.getName());
+        assertEquals("Test description", summary.getDescription());
+        assertEquals(0x0000FF, summary.getColorPrimary());
+        assertEquals(0xFF0000, summary.getColorSecondary());
+        assertNull(summary.getInstance(),
+            "Summaries should not include nested objects");
+
+        // Fail to list characters for an instance that does not exist.
+        exception = assertThrows(CharacterServiceException.class,
+            () -> characterService
+                .retrieveCharactersForInstance(Long.MAX_VALUE, null, null),
+            "Should not list characters for a missing instance");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.INSTANCE_NOT_FOUND);
+    }
+
+    @Test
+    void retrieveCharacterPagesTests() throws Exception
+    {
+        CharacterServiceException exception;
+
+        // Create a new owner and instance with five characters.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        List<Long> characterIds = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++)
+        {
+            characterIds.add(
+                characterService.createCharacter(testInstance).getId());
+        }
+
+        // Walk the list two at a time, following the cursors.
+        List<Long> pagedIds = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+
+        do
+        {
+            CursorPage<CharacterDto> page = characterService
+                .retrieveCharactersForInstance(testInstance.getId(), cursor,
+                    2);
+
+            assertTrue(page.getItems().size() <= 2,
+                "Pages should not exceed the requested limit");
+
+            page.getItems().forEach(c -> pagedIds.add(c.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        }
+        while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(characterIds, pagedIds,
+            "Pages should list every character once, in id order");
+
+        // A limit covering the whole list returns a single, final page.
+        CursorPage<CharacterDto> page = characterService
+            .retrieveCharactersForInstance(testInstance.getId(), null, 5);
+
+        assertEquals(5, page.getItems().size());
+        assertNull(page.getNextCursor());
+
+        // Fail to list characters with a cursor that was not issued by us.
+        exception = assertThrows(CharacterServiceException.class,
+            () -> characterService.retrieveCharactersForInstance(
+                testInstance.getId(), "not a cursor", 2),
+            "Should not accept an invalid cursor");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.INVALID_CURSOR);
+    }
+
+    @Test
+    void softDeletedChildrenTests() throws Exception
+    {
+        // Create a new owner and instance with a group of two characters.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        CharacterGroupDto testGroup = characterService
+            .createCharacterGroup(testInstance);
+        CharacterGroupDto deletedGroup = characterService
+            .createCharacterGroup(testInstance);
+
+        CharacterDto testCharacter = characterService
+            .createCharacter(testInstance);
+        CharacterDto deletedCharacter = characterService
+            .createCharacter(testInstance);
+
+        testCharacter.setCharacterGroup(testGroup);
+        characterService.updateCharacter(testCharacter.getId(), testCharacter);
+        deletedCharacter.setCharacterGroup(testGroup);
+        characterService.updateCharacter(deletedCharacter.getId(),
+            deletedCharacter);
+
+        // Delete one character and one group.
+        characterService.deleteCharacter(deletedCharacter.getId());
+        characterService.deleteCharacterGroup(deletedGroup.getId());
+
+        // Neither should appear in the nested collections.
+        CharacterGroupDto group = characterService
+            .retrieveCharacterGroup(testGroup.getId());
+
+        assertEquals(1, group.getCharacters().size(),
+            "Deleted characters should not be listed in their group");
+        assertEquals(testCharacter.getId(),
+            group.getCharacters().iterator().next().getId());
+
+        InstanceDto instance = instanceService
+            .retrieveInstance(testInstance.getId());
+
+        assertEquals(1, instance.getCharacters().size(),
+            "Deleted characters should not be listed in their instance");
+        assertEquals(1, instance.getCharacterGroups().size(),
+            "Deleted groups should not be listed in their instance");
+
+        // Nor be retrievable directly.
+        CharacterServiceException exception = assertThrows(
+            CharacterServiceException.class,
+            () -> characterService.retrieveCharacter(deletedCharacter.getId()),
+            "Should not retrieve a deleted character");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.CHARACTER_NOT_FOUND);
+    }
+
+    @Test
+    void retrieveFullCharacterStatementTests() throws Exception
+    {
+        // Create a character with a maintainer and a group.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        MaintainerDto testMaintainer = userAccountService
+            .createUnregisteredMaintainer(testInstance);
+        CharacterGroupDto testGroup = characterService
+            .createCharacterGroup(testInstance);
+
+        CharacterDto testCharacter = characterService
+            .createCharacterForMaintainer(testMaintainer);
+
+        testCharacter.setCharacterGroup(testGroup);
+        characterService.updateCharacter(testCharacter.getId(), testCharacter);
+
+        for (int i = 0; i < 5; i++)
+        {
+            CharacterDto character = characterService
+                .createCharacterForMaintainer(testMaintainer);
+
+            character.setCharacterGroup(testGroup);
+            characterService.updateCharacter(character.getId(), character);
+        }
+
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+
+        // Each full DTO is assembled from a single statement.
+        statistics.clear();
+
+        CharacterDto character = characterService
+            .retrieveCharacter(testCharacter.getId());
+
+        assertEquals(1, statistics.getPrepareStatementCount(),
+            "Full Character should be assembled in one statement");
+        assertEquals(testInstance.getId(), character.getInstance().getId());
+        assertEquals(testMaintainer.getId(),
+            character.getMaintainer().getId());
+        assertEquals(testGroup.getId(), character.getCharacterGroup().getId());
+
+        statistics.clear();
+
+        CharacterGroupDto group = characterService
+            .retrieveCharacterGroup(testGroup.getId());
+
+        assertEquals(1, statistics.getPrepareStatementCount(),
+            "Full Character Group should be assembled in one statement");
+        assertEquals(testInstance.getId(), group.getInstance().getId());
+        assertEquals(6, group.getCharacters().size());
+
+        statistics.clear();
+
+        MaintainerDto maintainer = userAccountService
+            .retrieveMaintainer(testMaintainer.getId());
+
+        assertEquals(1, statistics.getPrepareStatementCount(),
+            "Full Maintainer should be assembled in one statement");
+        assertEquals(testInstance.getId(), maintainer.getInstance().getId());
+        assertEquals(6, maintainer.getCharacters().size());
+    }
+
+    @Test
+    void updateVersionConflictTests() throws Exception
+    {
+        CharacterServiceException exception;
+
+        // Create a new owner and instance with a character and a group.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        CharacterDto testCharacter = characterService
+            .createCharacter(testInstance);
+        CharacterGroupDto testGroup = characterService
+            .createCharacterGroup(testInstance);
+
+        // An update against the current version succeeds and moves it on.
+        testCharacter.setName("First Edit");
+        CharacterDto updatedCharacter = characterService
+            .updateCharacter(testCharacter.getId(), testCharacter);
+
+        assertTrue(updatedCharacter.getVersion() > testCharacter.getVersion(),
+            "Updates should increment the version");
+
+        // A second update from the same, now stale, copy is rejected.
+        testCharacter.setName("Second Edit");
+        exception = assertThrows(CharacterServiceException.class,
+            () -> characterService.updateCharacter(testCharacter.getId(),
+                testCharacter),
+            "Should not update from a stale copy");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.VERSION_CONFLICT);
+        assertEquals("First Edit", characterService
+            .retrieveCharacter(testCharacter.getId()).getName());
+
+        // An update without a version is applied unconditionally.
+        testCharacter.setVersion(null);
+        assertEquals("Second Edit", characterService
+            .updateCharacter(testCharacter.getId(), testCharacter).getName());
+
+        // The same holds for groups.
+        testGroup.setName("First Edit");
+        characterService.updateCharacterGroup(testGroup.getId(), testGroup);
+
+        exception = assertThrows(CharacterServiceException.class,
+            () -> characterService.updateCharacterGroup(testGroup.getId(),
+                testGroup),
+            "Should not update a group from a stale copy");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.VERSION_CONFLICT);
+    }
+
+    @Test
+    void updateForeignReferencesTests() throws Exception
+    {
+        CharacterServiceException exception;
+
+        // Create two instances, each with a character, a group and a
+        // maintainer.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        InstanceDto otherInstance = instanceService.createInstance(testOwner,
+            "other");
+        CharacterDto testCharacter = characterService
+            .createCharacter(testInstance);
+        CharacterGroupDto otherGroup = characterService
+            .createCharacterGroup(otherInstance);
+        MaintainerDto otherMaintainer = userAccountService
+            .createUnregisteredMaintainer(otherInstance);
+
+        // A character cannot join another instance's group, nor count towards
+        // it.
+        testCharacter.setCharacterGroup(otherGroup);
+        exception = assertThrows(CharacterServiceException.class,
+            () -> characterService.updateCharacter(testCharacter.getId(),
+                testCharacter),
+            "Should not move a character to another instance's group");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.CHARACTER_GROUP_NOT_FOUND);
+        assertEquals(Map.of(otherGroup.getId(), 0L),
+            instanceService.retrieveStatisticsForInstance(otherInstance.getId())
+                .getCharacterGroupCounts());
+
+        // Nor be maintained by another instance's maintainer.
+        testCharacter.setCharacterGroup(null);
+        testCharacter.setMaintainer(otherMaintainer);
+        exception = assertThrows(CharacterServiceException.class,
+            () -> characterService.updateCharacter(testCharacter.getId(),
+                testCharacter),
+            "Should not assign another instance's maintainer");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.MAINTAINER_NOT_FOUND);
+
+        assertNull(characterService.retrieveCharacter(testCharacter.getId())
+            .getMaintainer());
+    }
+
+    @Test
+    void streamCharactersTests() throws Exception
+    {
+        // Create a new owner and instance with more characters than a page.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        for (int i = 0; i < 60; i++)
+        {
+            characterService.createCharacter(testInstance);
+        }
+
+        characterService.deleteCharacter(
+            characterService.createCharacter(testInstance).getId());
+
+        // The stream writes the same array as the pages, joined together.
+        List<CharacterDto> pagedCharacters = new ArrayList<>();
+        String cursor = null;
+
+        do
+        {
+            CursorPage<CharacterDto> page = characterService
+                .retrieveCharactersForInstance(testInstance.getId(), cursor,
+                    null);
+
+            pagedCharacters.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        }
+        while (cursor != null);
+
+        ObjectWriter objectWriter = objectMapper
+            .writer(CharacterDtoFilters.simpleFilterProvider);
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+
+        try (SequenceWriter writer = objectWriter.writeValuesAsArray(streamed))
+        {
+            characterService.streamCharactersForInstance(testInstance.getId(),
+                writer);
+        }
+
+        assertEquals(60, pagedCharacters.size());
+        assertEquals(objectWriter.writeValueAsString(pagedCharacters),
+            streamed.toString("UTF-8"));
+    }
+
+    @Test
+    void filterCharactersTests() throws Exception
+    {
+        // Create a new owner and instance with a group, a maintainer and
+        // characters of several names and colors.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        CharacterGroupDto testGroup = characterService
+            .createCharacterGroup(testInstance);
+        MaintainerDto testMaintainer = userAccountService
+            .createUnregisteredMaintainer(testInstance);
+
+        List<CharacterDto> characters = new ArrayList<>();
+        String[] names = { "Boromir", "Aragorn", "Gimli", "Cirdan", "Boromir",
+            "Arwen" };
+        Integer[] colors = { 1, 2, 1, 3, 2, 1 };
+
+        for (int i = 0; i < names.length; i++)
+        {
+            CharacterDto character = new CharacterDto();
+            character.setName(names[i]);
+            character.setColorPrimary(colors[i]);
+            characters.add(character);
+        }
+
+        characters.get(3).setColorSecondary(1);
+        characters.get(0).setCharacterGroup(testGroup);
+        characters.get(1).setCharacterGroup(testGroup);
+        characters.get(1).setMaintainer(testMaintainer);
+        characters.get(2).setMaintainer(testMaintainer);
+
+        characters = characterService
+            .saveCharactersForInstance(testInstance.getId(), characters);
+
+        // An unnamed character sorts before every name.
+        characters.get(2).setName(null);
+        characters.get(2).setMaintainer(testMaintainer);
+        characterService.updateCharacter(characters.get(2).getId(),
+            characters.get(2));
+
+        // Each condition narrows the list, and they combine.
+        CharacterFilter filter = new CharacterFilter();
+        filter.setCharacterGroupId(testGroup.getId());
+        assertEquals(getIds(characters, 0, 1),
+            filterAll(testInstance.getId(), filter, null));
+
+        filter = new CharacterFilter();
+        filter.setMaintainerId(testMaintainer.getId());
+        assertEquals(getIds(characters, 1, 2),
+            filterAll(testInstance.getId(), filter, null));
+
+        filter = new CharacterFilter();
+        filter.setHasMaintainer(false);
+        assertEquals(getIds(characters, 0, 3, 4, 5),
+            filterAll(testInstance.getId(), filter, null));
+
+        filter = new CharacterFilter();
+        filter.setColor(1);
+        assertEquals(getIds(characters, 0, 2, 3, 5),
+            filterAll(testInstance.getId(), filter, null));
+
+        filter.setCharacterGroupId(testGroup.getId());
+        assertEquals(getIds(characters, 0),
+            filterAll(testInstance.getId(), filter, null));
+
+        // Sorted pages continue after the last character, ties broken by id.
+        filter = new CharacterFilter();
+        filter.setSort(CharacterFilter.Sort.NAME);
+        assertEquals(getIds(characters, 2, 1, 5, 0, 4, 3),
+            filterAll(testInstance.getId(), filter, 2));
+
+        filter.setDescending(true);
+        assertEquals(getIds(characters, 3, 4, 0, 5, 1, 2),
+            filterAll(testInstance.getId(), filter, 4));
+
+        filter.setSort(CharacterFilter.Sort.CREATE_DATE);
+        filter.setHasMaintainer(false);
+        assertEquals(getIds(characters, 5, 4, 3, 0),
+            filterAll(testInstance.getId(), filter, 1));
+
+        // A page continues even once the last character of the previous one
+        // is deleted.
+        filter = new CharacterFilter();
+        filter.setSort(CharacterFilter.Sort.NAME);
+
+        CursorPage<CharacterDto> page = characterService
+            .filterCharactersForInstance(testInstance.getId(), filter, null, 3);
+        characterService.deleteCharacter(characters.get(5).getId());
+
+        assertEquals(getIds(characters, 0, 4, 3),
+            characterService
+                .filterCharactersForInstance(testInstance.getId(), filter,
+                    page.getNextCursor(), null)
+                .getItems().stream().map(CharacterDto::getId)
+                .collect(Collectors.toList()));
+
+        // Or once it is renamed, skipping none of the characters after it,
+        // and meeting it again only at its new place.
+        page = characterService.filterCharactersForInstance(
+            testInstance.getId(), filter, null, 2);
+        assertEquals(getIds(characters, 2, 1), page.getItems().stream()
+            .map(CharacterDto::getId).collect(Collectors.toList()));
+
+        characters.get(1).setName("Zirak");
+        characterService.updateCharacter(characters.get(1).getId(),
+            characters.get(1));
+
+        assertEquals(getIds(characters, 0, 4, 3, 1),
+            characterService
+                .filterCharactersForInstance(testInstance.getId(), filter,
+                    page.getNextCursor(), null)
+                .getItems().stream().map(CharacterDto::getId)
+                .collect(Collectors.toList()));
+
+        CharacterServiceException exception = assertThrows(
+            CharacterServiceException.class,
+            () -> characterService.filterCharactersForInstance(
+                testInstance.getId(), new CharacterFilter(), "invalid", null),
+            "Should not accept an invalid cursor");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.INVALID_CURSOR);
+
+        // A sorted page needs the sort value, not just an id.
+        CharacterFilter nameFilter = filter;
+        String idCursor = characterService
+            .filterCharactersForInstance(testInstance.getId(),
+                new CharacterFilter(), null, 1)
+            .getNextCursor();
+
+        exception = assertThrows(CharacterServiceException.class,
+            () -> characterService.filterCharactersForInstance(
+                testInstance.getId(), nameFilter, idCursor, null),
+            "Should not accept a cursor without a sort value");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.INVALID_CURSOR);
+    }
+
+    @Test
+    void retrieveCharacterFieldsTests() throws Exception
+    {
+        // Create a new owner and instance with a described character.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        CharacterDto testCharacter = characterService
+            .createCharacter(testInstance);
+
+        testCharacter.setName("Test Character");
+        testCharacter.setDescription("Test description");
+        characterService.updateCharacter(testCharacter.getId(), testCharacter);
+
+        // Field lists are parsed once, in any order or spacing.
+        FieldSet fieldSet = fieldSetService.getCharacterListFieldSet("name,id");
+
+        assertSame(fieldSet,
+            fieldSetService.getCharacterListFieldSet(" id , name"));
+
+        // Only the selected columns are read and written.
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+
+        List<CharacterDto> characters = characterService
+            .retrieveCharactersForInstance(testInstance.getId(),
+                fieldSet.getFields(), null, null)
+            .getItems();
+
+        for (String query : statistics.getQueries())
+        {
+            assertFalse(query.contains("description"),
+                "Unselected columns should not be queried: " + query);
+        }
+
+        assertEquals(1, characters.size());
+        assertEquals("Test Character", characters.get(0).getName());
+        assertNull(characters.get(0).getDescription());
+        assertEquals(
+            "[{\"id\":" + testCharacter.getId()
+                + ",\"name\":\"Test Character\"}]",
+            objectMapper.writer(fieldSet.getFilterProvider())
+                .writeValueAsString(characters));
+
+        // Nested objects and unknown fields cannot be selected.
+        assertThrows(IllegalArgumentException.class,
+            () -> fieldSetService.getCharacterListFieldSet("id,instance"));
+        assertThrows(IllegalArgumentException.class,
+            () -> fieldSetService.getCharacterListFieldSet("id,password"));
+        assertThrows(IllegalArgumentException.class,
+            () -> fieldSetService.getCharacterListFieldSet(" , "));
+    }
+
+    @Test
+    void saveCharactersTests() throws Exception
+    {
+        // Create a new owner and instance with a group and a maintainer.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        CharacterGroupDto testGroup = characterService
+            .createCharacterGroup(testInstance);
+        MaintainerDto testMaintainer = userAccountService
+            .createUnregisteredMaintainer(testInstance);
+
+        // Create a batch of characters, one of them assigned and one left
+        // with the defaults.
+        List<CharacterDto> newCharacters = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++)
+        {
+            CharacterDto newCharacter = new CharacterDto();
+
+            if (i > 0)
+            {
+                newCharacter.setName("Test Character " + i);
+            }
+
+            newCharacters.add(newCharacter);
+        }
+
+        newCharacters.get(1).setCharacterGroup(testGroup);
+        newCharacters.get(1).setMaintainer(testMaintainer);
+
+        List<CharacterDto> created = characterService
+            .saveCharactersForInstance(testInstance.getId(), newCharacters);
+
+        assertEquals(10, created.size());
+        assertEquals("New Character", created.get(0).getName());
+        assertEquals("", created.get(0).getDescription());
+        assertEquals("Test Character 1", created.get(1).getName());
+        assertEquals(testGroup.getId(), characterService
+            .retrieveCharacter(created.get(1).getId()).getCharacterGroup()
+            .getId());
+        assertEquals(testMaintainer.getId(), characterService
+            .retrieveCharacter(created.get(1).getId()).getMaintainer()
+            .getId());
+
+        // Updating them all loads each kind of row once and batches the
+        // writes, rather than costing statements per character.
+        for (CharacterDto character : created)
+        {
+            character.setDescription("Updated " + character.getName());
+        }
+
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+
+        List<CharacterDto> updated = characterService
+            .saveCharactersForInstance(testInstance.getId(), created);
+
+        assertEquals(10, statistics.getEntityUpdateCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 5,
+            "Updates should be batched, but prepared "
+                + statistics.getPrepareStatementCount() + " statements");
+        assertEquals("Updated Test Character 9",
+            updated.get(9).getDescription());
+        assertEquals(created.get(9).getVersion() + 1,
+            updated.get(9).getVersion());
+
+        // A stale copy fails the whole batch.
+        updated.get(0).setName("Not Saved");
+
+        assertEquals(CharacterServiceException.Codes.VERSION_CONFLICT,
+            assertThrows(CharacterServiceException.class,
+                () -> characterService.saveCharactersForInstance(
+                    testInstance.getId(),
+                    List.of(updated.get(0), created.get(1))))
+                .getCode());
+        assertEquals("New Character", characterService
+            .retrieveCharacter(updated.get(0).getId()).getName());
+
+        // Characters, groups and maintainers of other instances are not
+        // found through this one.
+        InstanceDto otherInstance = instanceService.createInstance(testOwner,
+            "other");
+
+        assertEquals(CharacterServiceException.Codes.CHARACTER_NOT_FOUND,
+            assertThrows(CharacterServiceException.class,
+                () -> characterService.saveCharactersForInstance(
+                    otherInstance.getId(), List.of(updated.get(0))))
+                .getCode());
+
+        CharacterDto misassigned = new CharacterDto();
+        misassigned.setCharacterGroup(testGroup);
+
+        assertEquals(
+            CharacterServiceException.Codes.CHARACTER_GROUP_NOT_FOUND,
+            assertThrows(CharacterServiceException.class,
+                () -> characterService.saveCharactersForInstance(
+                    otherInstance.getId(), List.of(misassigned)))
+                .getCode());
+    }
+
+    @Test
+    void deleteCharacterGroupTests() throws Exception
+    {
+        // Create a new owner and instance with two groups, the first of which
+        // holds a number of characters.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        CharacterGroupDto testGroup = characterService
+            .createCharacterGroup(testInstance);
+        CharacterGroupDto targetGroup = characterService
+            .createCharacterGroup(testInstance);
+
+        List<CharacterDto> characters = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++)
+        {
+            CharacterDto character = characterService
+                .createCharacter(testInstance);
+            character.setCharacterGroup(testGroup);
+            characters.add(character);
+        }
+
+        characters = characterService
+            .saveCharactersForInstance(testInstance.getId(), characters);
+
+        // Groups can only take over members within the same instance.
+        OwnerDto otherOwner = userAccountService.createOwner("otherowner",
+            "testpassword", "otheremail");
+        InstanceDto otherInstance = instanceService
+            .createInstance(otherOwner, "other");
+        CharacterGroupDto otherGroup = characterService
+            .createCharacterGroup(otherInstance);
+
+        CharacterServiceException exception = assertThrows(
+            CharacterServiceException.class,
+            () -> characterService.deleteCharacterGroup(testGroup.getId(),
+                otherGroup.getId()),
+            "Should not move characters to another instance's group");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.INVALID_CHARACTER_GROUP_OBJECT);
+
+        exception = assertThrows(CharacterServiceException.class,
+            () -> characterService.deleteCharacterGroup(testGroup.getId(),
+                testGroup.getId()),
+            "Should not move characters to the deleted group");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.INVALID_CHARACTER_GROUP_OBJECT);
+
+        // The members are moved without being loaded.
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        characterService.deleteCharacterGroup(testGroup.getId(),
+            targetGroup.getId());
+
+        assertTrue(statistics.getEntityLoadCount() < characters.size(),
+            "Members should not be loaded one by one");
+
+        assertEquals(characters.size(), characterService
+            .retrieveCharacterGroup(targetGroup.getId()).getCharacters()
+            .size(), "Members should be moved to the target group");
+
+        // And ungrouped when there is no target.
+        characterService.deleteCharacterGroup(targetGroup.getId());
+
+        CharacterDto character = characterService
+            .retrieveCharacter(characters.get(0).getId());
+
+        assertNull(character.getCharacterGroup(),
+            "Members should be ungrouped");
+        assertEquals(characters.get(0).getVersion() + 2,
+            character.getVersion(), "Moving should bump the version");
+    }
+
+    @Test
+    void searchCharactersTests() throws Exception
+    {
+        // Create a new owner and instance with some named characters.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        List<CharacterDto> characters = new ArrayList<>();
+
+        for (String[] nameAndDescription : new String[][] {
+            { "Aragorn", "Ranger of the North" },
+            { "Arwen", "Daughter of Elrond" },
+            { "Éowyn", "Shieldmaiden of Rohan" },
+            { "Elrond", "Lord of Rivendell" } })
+        {
+            CharacterDto character = new CharacterDto();
+            character.setName(nameAndDescription[0]);
+            character.setDescription(nameAndDescription[1]);
+            characters.add(character);
+        }
+
+        characters = characterService
+            .saveCharactersForInstance(testInstance.getId(), characters);
+
+        // Terms match whole words or their start, ignoring case and accents.
+        // Closer and name matches rank first.
+        assertEquals(List.of("Arwen", "Aragorn"),
+            getNames(characterService
+                .searchCharactersForInstance(testInstance.getId(), "AR",
+                    null)));
+        assertEquals(List.of("Éowyn"), getNames(characterService
+            .searchCharactersForInstance(testInstance.getId(), "eowyn", null)));
+        assertEquals(List.of("Elrond", "Arwen"),
+            getNames(characterService.searchCharactersForInstance(
+                testInstance.getId(), "elrond", null)));
+
+        // Every term must match, each of them whole or as a word's start.
+        assertEquals(List.of("Arwen"),
+            getNames(characterService.searchCharactersForInstance(
+                testInstance.getId(), "elrond daughter", null)));
+        assertEquals(List.of("Arwen"),
+            getNames(characterService.searchCharactersForInstance(
+                testInstance.getId(), "elr daughter", null)));
+        assertTrue(characterService.searchCharactersForInstance(
+            testInstance.getId(), "elrond rohan", null).isEmpty());
+
+        // Once loaded, the index answers without reading the characters.
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        characterService.searchCharactersForInstance(testInstance.getId(),
+            "ranger", 1);
+
+        assertEquals(1, statistics.getPrepareStatementCount(),
+            "Only the Instance should be read");
+
+        // Writes are applied to the loaded index.
+        CharacterDto aragorn = characters.get(0);
+        aragorn.setName("Strider");
+        characterService.updateCharacter(aragorn.getId(), aragorn);
+        characterService.deleteCharacter(characters.get(1).getId());
+
+        CharacterDto created = characterService.createCharacter(testInstance);
+
+        assertEquals(List.of("Strider"),
+            getNames(characterService.searchCharactersForInstance(
+                testInstance.getId(), "str", null)));
+        assertTrue(characterService.searchCharactersForInstance(
+            testInstance.getId(), "arwen", null).isEmpty());
+        assertEquals(List.of(created.getId()),
+            characterService.searchCharactersForInstance(testInstance.getId(),
+                "new char", null).stream().map(CharacterDto::getId)
+                .collect(Collectors.toList()));
+
+        // Other instances have their own index.
+        OwnerDto otherOwner = userAccountService.createOwner("otherowner",
+            "testpassword", "otheremail");
+        InstanceDto otherInstance = instanceService
+            .createInstance(otherOwner, "other");
+
+        assertTrue(characterService.searchCharactersForInstance(
+            otherInstance.getId(), "strider", null).isEmpty());
+
+        CharacterServiceException exception = assertThrows(
+            CharacterServiceException.class,
+            () -> characterService.searchCharactersForInstance(
+                testInstance.getId(), " ", null),
+            "Should not search for an empty query");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.INVALID_QUERY);
+    }
+
+    @Test
+    void completeNamesTests() throws Exception
+    {
+        // Create a new owner and instance with named characters and groups.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        List<CharacterDto> characters = new ArrayList<>();
+
+        for (String name : List.of("Arwen", "Aragorn Elessar", "Éomer"))
+        {
+            CharacterDto character = new CharacterDto();
+            character.setName(name);
+            characters.add(character);
+        }
+
+        characters = characterService
+            .saveCharactersForInstance(testInstance.getId(), characters);
+
+        CharacterGroupDto group = characterService
+            .createCharacterGroup(testInstance);
+        group.setName("Armies of Rohan");
+        group = characterService.updateCharacterGroup(group.getId(), group);
+
+        // Any word of a name may start with the prefix, ignoring case and
+        // accents. Names come back in order.
+        assertEquals(List.of("Aragorn Elessar", "Armies of Rohan", "Arwen"),
+            getSuggestedNames(characterService
+                .completeNamesForInstance(testInstance.getId(), "AR", null)));
+        assertEquals(List.of("Aragorn Elessar", "Éomer"),
+            getSuggestedNames(characterService
+                .completeNamesForInstance(testInstance.getId(), "e", null)));
+        assertEquals(List.of("Armies of Rohan"),
+            getSuggestedNames(characterService.completeNamesForInstance(
+                testInstance.getId(), "of ro", null)));
+        assertEquals(List.of("Aragorn Elessar"),
+            getSuggestedNames(characterService
+                .completeNamesForInstance(testInstance.getId(), "ar", 1)));
+
+        NameSuggestionDto suggestion = characterService
+            .completeNamesForInstance(testInstance.getId(), "armies", null)
+            .get(0);
+
+        assertEquals(NameSuggestionDto.Type.CHARACTER_GROUP,
+            suggestion.getType());
+        assertEquals(group.getId(), suggestion.getId());
+
+        // Once loaded, the index answers without reading the names.
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        characterService.completeNamesForInstance(testInstance.getId(), "a",
+            null);
+
+        assertEquals(1, statistics.getPrepareStatementCount(),
+            "Only the Instance should be read");
+
+        // Writes are applied to the loaded index.
+        CharacterDto arwen = characters.get(0);
+        arwen.setName("Undomiel");
+        characterService.updateCharacter(arwen.getId(), arwen);
+        characterService.deleteCharacter(characters.get(1).getId());
+        characterService.deleteCharacterGroup(group.getId());
+        characterService.createCharacterGroup(testInstance);
+
+        assertTrue(characterService
+            .completeNamesForInstance(testInstance.getId(), "ar", null)
+            .isEmpty());
+        assertEquals(List.of("Undomiel"), getSuggestedNames(characterService
+            .completeNamesForInstance(testInstance.getId(), "und", null)));
+        assertEquals(List.of("New Group"), getSuggestedNames(characterService
+            .completeNamesForInstance(testInstance.getId(), "group", null)));
+
+        CharacterServiceException exception = assertThrows(
+            CharacterServiceException.class,
+            () -> characterService.completeNamesForInstance(
+                testInstance.getId(), "", null),
+            "Should not complete an empty prefix");
+        assertEquals(exception.getCode(),
+            CharacterServiceException.Codes.INVALID_QUERY);
+    }
+
+    // Every page of the filtered list, joined together.
+    private List<Long> filterAll(Long instanceId, CharacterFilter filter,
+        Integer limit) throws Exception
+    {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+
+        do
+        {
+            CursorPage<CharacterDto> page = characterService
+                .filterCharactersForInstance(instanceId, filter, cursor, limit);
+
+            page.getItems().forEach(character -> ids.add(character.getId()));
+            cursor = page.getNextCursor();
+        }
+        while (cursor != null);
+
+        return ids;
+    }
+
+    private static List<Long> getIds(List<CharacterDto> characters,
+        int... indexes)
+    {
+        return Arrays.stream(indexes).mapToObj(i -> characters.get(i).getId())
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> getSuggestedNames(
+        List<NameSuggestionDto> suggestions)
+    {
+        return suggestions.stream().map(NameSuggestionDto::getName)
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> getNames(List<CharacterDto> characters)
+    {
+        return characters.stream().map(CharacterDto::getName)
+            .collect(Collectors.toList());
+    }
+}
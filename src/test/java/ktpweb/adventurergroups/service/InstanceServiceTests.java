@@ -1,27 +1,57 @@
 package ktpweb.adventurergroups.service;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import ktpweb.adventurergroups.entity.Instance;
 import ktpweb.adventurergroups.exception.InstanceServiceException;
+import ktpweb.adventurergroups.model.CharacterDto;
 import ktpweb.adventurergroups.model.InstanceDto;
 import ktpweb.adventurergroups.model.OwnerDto;
+import ktpweb.adventurergroups.model.Snapshot;
+import ktpweb.adventurergroups.repository.CharacterGroupRepository;
+import ktpweb.adventurergroups.repository.CharacterRepository;
+import ktpweb.adventurergroups.repository.InstanceRepository;
+import ktpweb.adventurergroups.repository.UserAccountRepository;
+import ktpweb.adventurergroups.modelfilter.InstanceDtoFilters;
+import ktpweb.adventurergroups.modelfilter.ViewFormat;
+import ktpweb.adventurergroups.service.SnapshotService.View;
+import ktpweb.adventurergroups.util.ETagUtils;
 
 @SpringBootTest
 @ActiveProfiles("test")
@@ -35,6 +65,33 @@ class InstanceServiceTests
     @Autowired
     private UserAccountService userAccountService;
 
+    @Autowired
+    private CharacterService characterService;
+
+    @Autowired
+    private SubdomainService subdomainService;
+
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private InstanceRepository instanceRepository;
+
+    @Autowired
+    private CharacterRepository characterRepository;
+
+    @Autowired
+    private CharacterGroupRepository characterGroupRepository;
+
+    @Autowired
+    private UserAccountRepository userAccountRepository;
+
     @Test
     void createInstanceTests() throws Exception
     {
@@ -134,4 +191,395 @@ class InstanceServiceTests
         assertEquals(exception.getCode(),
             InstanceServiceException.Codes.NULL_INSTANCE_OBJECT);
     }
-}
\ No newline at end of file
+
+    @Test
+    void retrieveFullInstanceStatementTests() throws Exception
+    {
+        // Create an owner and an instance with some content.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        for (int i = 0; i < 3; i++)
+        {
+            userAccountService.createUnregisteredMaintainer(testInstance);
+            characterService.createCharacterGroup(testInstance);
+
+            for (int j = 0; j < 4; j++)
+            {
+                characterService.createCharacter(testInstance);
+            }
+        }
+
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+
+        // The instance, owner and characters are read together, then the
+        // maintainers and groups with one query each.
+        statistics.clear();
+
+        InstanceDto instance = instanceService
+            .retrieveInstance(testInstance.getId());
+
+        assertEquals(3, statistics.getPrepareStatementCount(),
+            "Full Instance should be assembled in three statements");
+        assertEquals(testOwner.getId(), instance.getOwner().getId());
+        assertEquals(3, instance.getMaintainers().size());
+        assertEquals(12, instance.getCharacters().size());
+        assertEquals(3, instance.getCharacterGroups().size());
+
+        // The owner and their instances are read together.
+        statistics.clear();
+
+        OwnerDto owner = userAccountService.retrieveOwner(testOwner.getId());
+
+        assertEquals(1, statistics.getPrepareStatementCount(),
+            "Full Owner should be assembled in one statement");
+        assertEquals(1, owner.getInstances().size());
+    }
+
+    @Test
+    void subdomainResolutionTests() throws Exception
+    {
+        // Create a new owner and instance for the test.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "Test");
+
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+
+        // Subdomains resolve case-insensitively, without a query.
+        statistics.clear();
+
+        assertEquals(testInstance.getId(),
+            subdomainService.resolveInstanceId("test"));
+        assertEquals(testInstance.getId(),
+            subdomainService.resolveInstanceId("TEST"));
+        assertNull(subdomainService.resolveInstanceId("other"));
+        assertEquals(0, statistics.getPrepareStatementCount(),
+            "Subdomains should be resolved from memory");
+
+        // Renaming moves the entry to the new subdomain.
+        testInstance.setSubdomainName("Renamed");
+        instanceService.updateInstance(testInstance.getId(), testInstance);
+
+        assertNull(subdomainService.resolveInstanceId("test"));
+        assertEquals(testInstance.getId(),
+            subdomainService.resolveInstanceId("renamed"));
+
+        // Inactive instances are not routed to.
+        instanceService.deactivateInstance(testInstance);
+
+        assertNull(subdomainService.resolveInstanceId("renamed"));
+
+        instanceService.activateInstance(testInstance);
+
+        assertEquals(testInstance.getId(),
+            subdomainService.resolveInstanceId("renamed"));
+
+        // Nor are deleted ones.
+        instanceService.deleteInstance(testInstance.getId());
+
+        assertNull(subdomainService.resolveInstanceId("renamed"));
+    }
+
+    @Test
+    void deleteOwnerCascadeTests() throws Exception
+    {
+        // Create an owner with several instances, each with some content.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+
+        List<Long> instanceIds = new ArrayList<>();
+        List<Long> maintainerIds = new ArrayList<>();
+        List<Long> characterIds = new ArrayList<>();
+        List<Long> characterGroupIds = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++)
+        {
+            InstanceDto testInstance = instanceService
+                .createInstance(testOwner, "test" + i);
+            instanceIds.add(testInstance.getId());
+
+            maintainerIds.add(userAccountService
+                .createUnregisteredMaintainer(testInstance).getId());
+            characterGroupIds.add(
+                characterService.createCharacterGroup(testInstance).getId());
+
+            for (int j = 0; j < 3; j++)
+            {
+                characterIds.add(
+                    characterService.createCharacter(testInstance).getId());
+            }
+        }
+
+        Long contentVersion = instanceRepository.findById(instanceIds.get(0))
+            .get().getContentVersion();
+
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+
+        // The contents are deleted in bulk, without loading them.
+        statistics.clear();
+
+        userAccountService.deleteOwner(testOwner.getId());
+
+        assertTrue(statistics.getPrepareStatementCount() <= 8,
+            "Owner should be deleted in a handful of statements");
+        assertEquals(1, statistics.getEntityLoadCount(),
+            "Only the Owner should be loaded");
+
+        // Everything shares the owner's delete date.
+        LocalDateTime deleteDate = userAccountRepository
+            .findById(testOwner.getId()).get().getDeleteDate();
+        assertNotNull(deleteDate);
+
+        for (Instance i : instanceRepository.findAllById(instanceIds))
+        {
+            assertTrue(i.getDeleted());
+            assertEquals(deleteDate, i.getDeleteDate());
+        }
+
+        assertEquals(contentVersion + 1, instanceRepository
+            .findById(instanceIds.get(0)).get().getContentVersion(),
+            "Deleting should change the content version");
+
+        userAccountRepository.findAllById(maintainerIds).forEach(m -> {
+            assertTrue(m.getDeleted());
+            assertEquals(deleteDate, m.getDeleteDate());
+        });
+
+        characterRepository.findAllById(characterIds).forEach(c -> {
+            assertTrue(c.getDeleted());
+            assertEquals(deleteDate, c.getDeleteDate());
+        });
+
+        characterGroupRepository.findAllById(characterGroupIds)
+            .forEach(cg -> {
+                assertTrue(cg.getDeleted());
+                assertEquals(deleteDate, cg.getDeleteDate());
+            });
+
+        // The instances are gone from the caches as well.
+        assertNull(subdomainService.resolveInstanceId("test0"));
+
+        InstanceServiceException exception = assertThrows(
+            InstanceServiceException.class,
+            () -> instanceService.retrieveInstance(instanceIds.get(0)),
+            "Should not retrieve an instance of a deleted owner");
+        assertEquals(exception.getCode(),
+            InstanceServiceException.Codes.INSTANCE_NOT_FOUND);
+
+        // Deleting a single instance cascades the same way.
+        OwnerDto otherOwner = userAccountService.createOwner("otherowner",
+            "testpassword", "otheremail");
+        InstanceDto otherInstance = instanceService.createInstance(otherOwner,
+            "other");
+        CharacterDto otherCharacter = characterService
+            .createCharacter(otherInstance);
+
+        instanceService.deleteInstance(otherInstance.getId());
+
+        assertEquals(
+            instanceRepository.findById(otherInstance.getId()).get()
+                .getDeleteDate(),
+            characterRepository.findById(otherCharacter.getId()).get()
+                .getDeleteDate());
+        assertFalse(userAccountRepository.findById(otherOwner.getId()).get()
+            .getDeleted());
+    }
+
+    @Test
+    void instanceSnapshotTests() throws Exception
+    {
+        // Create a new owner and instance with a character.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        CharacterDto testCharacter = characterService
+            .createCharacter(testInstance);
+
+        // The snapshot holds exactly what the endpoint would have written.
+        Snapshot snapshot = snapshotService
+            .getSnapshot(testInstance.getId(), View.INSTANCE);
+
+        assertArrayEquals(
+            objectMapper.writer(InstanceDtoFilters.fullFilterProvider)
+                .writeValueAsBytes(
+                    instanceService.retrieveInstance(testInstance.getId())),
+            snapshot.getBody());
+
+        // Later reads are served from memory.
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+
+        assertSame(snapshot, snapshotService.getSnapshot(testInstance.getId(),
+            View.INSTANCE));
+        assertEquals(0, statistics.getPrepareStatementCount(),
+            "Cached snapshots should not query the database");
+
+        // Changing the instance's content replaces the snapshot.
+        testCharacter.setName("Renamed Character");
+        characterService.updateCharacter(testCharacter.getId(), testCharacter);
+
+        Snapshot updated = snapshotService.getSnapshot(testInstance.getId(),
+            View.INSTANCE);
+
+        assertTrue(new String(updated.getBody()).contains("Renamed Character"),
+            "Snapshot should be rebuilt after a change");
+    }
+
+    @Test
+    void conditionalRequestTests() throws Exception
+    {
+        // Create a new owner and instance with a character.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        CharacterDto testCharacter = characterService
+            .createCharacter(testInstance);
+
+        // A plain request gets the body with the instance's ETag.
+        String path = "/api/v1/instances/" + testInstance.getId();
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+
+        assertNotNull(SnapshotService.getResponse(
+            snapshotService.getSnapshot(testInstance.getId(), View.INSTANCE),
+            new ServletWebRequest(new MockHttpServletRequest("GET", path),
+                firstResponse)));
+
+        String eTag = firstResponse.getHeader(HttpHeaders.ETAG);
+
+        assertNotNull(eTag);
+        assertEquals(eTag, ETagUtils.getETag(characterService
+            .retrieveContentVersionForCharacter(testCharacter.getId())),
+            "Every view of an instance should share its ETag");
+
+        // Repeating it with the ETag is answered without touching the
+        // database or writing a body.
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+
+        MockHttpServletRequest conditionalRequest = new MockHttpServletRequest(
+            "GET", path);
+        conditionalRequest.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+
+        statistics.clear();
+
+        assertNull(SnapshotService.getResponse(
+            snapshotService.getSnapshot(testInstance.getId(), View.INSTANCE),
+            new ServletWebRequest(conditionalRequest, notModified)));
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), notModified.getStatus());
+        assertEquals(0, statistics.getPrepareStatementCount(),
+            "A current ETag should not query the database");
+
+        // Changing a character moves the instance to a new ETag.
+        testCharacter.setName("Renamed Character");
+        characterService.updateCharacter(testCharacter.getId(), testCharacter);
+
+        MockHttpServletResponse modified = new MockHttpServletResponse();
+
+        assertNotNull(SnapshotService.getResponse(
+            snapshotService.getSnapshot(testInstance.getId(), View.INSTANCE),
+            new ServletWebRequest(conditionalRequest, modified)));
+        assertEquals(HttpStatus.OK.value(), modified.getStatus());
+        assertNotEquals(eTag, modified.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void compressedSnapshotTests() throws Exception
+    {
+        // Create a new owner and instance with enough characters to be worth
+        // compressing.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        for (int i = 0; i < 20; i++)
+        {
+            CharacterDto testCharacter = characterService
+                .createCharacter(testInstance);
+
+            testCharacter.setName("Test Character " + i);
+            testCharacter.setDescription("A long description of character "
+                + i + ", repeated across the whole instance.");
+            characterService.updateCharacter(testCharacter.getId(),
+                testCharacter);
+        }
+
+        // The gzipped copy is built with the snapshot and inflates back to
+        // the same bytes.
+        Snapshot snapshot = snapshotService.getSnapshot(testInstance.getId(),
+            View.INSTANCE);
+
+        assertNotNull(snapshot.getGzipBody());
+        assertTrue(snapshot.getGzipBody().length < snapshot.getBody().length);
+
+        try (GZIPInputStream in = new GZIPInputStream(
+            new ByteArrayInputStream(snapshot.getGzipBody())))
+        {
+            assertArrayEquals(snapshot.getBody(), in.readAllBytes());
+        }
+
+        // Clients that accept gzip get the compressed copy under its own
+        // ETag.
+        String path = "/api/v1/instances/" + testInstance.getId();
+        MockHttpServletRequest gzipRequest = new MockHttpServletRequest("GET",
+            path);
+        gzipRequest.addHeader(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.8");
+        MockHttpServletResponse gzipResponse = new MockHttpServletResponse();
+
+        ResponseEntity<byte[]> gzipped = SnapshotService.getResponse(snapshot,
+            new ServletWebRequest(gzipRequest, gzipResponse));
+
+        assertSame(snapshot.getGzipBody(), gzipped.getBody());
+        assertEquals(CompressionService.GZIP,
+            gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING),
+            gzipped.getHeaders().getVary());
+        assertEquals(ETagUtils.getETag(snapshot.getVersion(), ViewFormat.JSON,
+            CompressionService.GZIP), gzipResponse.getHeader(HttpHeaders.ETAG));
+
+        // Everyone else gets the plain body.
+        MockHttpServletRequest plainRequest = new MockHttpServletRequest("GET",
+            path);
+        plainRequest.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0");
+        MockHttpServletResponse plainResponse = new MockHttpServletResponse();
+
+        ResponseEntity<byte[]> plain = SnapshotService.getResponse(snapshot,
+            new ServletWebRequest(plainRequest, plainResponse));
+
+        assertSame(snapshot.getBody(), plain.getBody());
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(ETagUtils.getETag(snapshot.getVersion()),
+            plainResponse.getHeader(HttpHeaders.ETAG));
+
+        // An explicit gzip takes precedence over the wildcard, wherever it
+        // is listed.
+        for (String header : List.of("*;q=0, gzip", "gzip, *;q=0", "gzip;q=0, *",
+            "*, gzip;q=0", "*"))
+        {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET",
+                path);
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, header);
+
+            assertEquals(!header.contains("gzip;q=0"),
+                CompressionService.acceptsGzip(new ServletWebRequest(request)),
+                header);
+        }
+
+        // Small views are not compressed at all.
+        assertNull(snapshotService
+            .getSnapshot(testInstance.getId(), View.CHARACTER_GROUPS)
+            .getGzipBody());
+    }
+}
@@ -0,0 +1,261 @@
+package ktpweb.adventurergroups.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ktpweb.adventurergroups.exception.InstanceServiceException;
+import ktpweb.adventurergroups.model.CharacterDto;
+import ktpweb.adventurergroups.model.CharacterGroupDto;
+import ktpweb.adventurergroups.model.InstanceDto;
+import ktpweb.adventurergroups.model.InstanceOverviewDto;
+import ktpweb.adventurergroups.model.InstanceStatisticsDto;
+import ktpweb.adventurergroups.model.MaintainerDto;
+import ktpweb.adventurergroups.model.OwnerDto;
+import ktpweb.adventurergroups.model.UserAccountDto;
+import ktpweb.adventurergroups.service.InstanceStatisticsService.Change;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase(replace = Replace.ANY)
+class InstanceStatisticsServiceTests
+{
+    @Autowired
+    private InstanceStatisticsService instanceStatisticsService;
+
+    @Autowired
+    private InstanceService instanceService;
+
+    @Autowired
+    private UserAccountService userAccountService;
+
+    @Autowired
+    private CharacterService characterService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void statisticsTests() throws Exception
+    {
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+        Long instanceId = testInstance.getId();
+
+        assertStatistics(instanceId, 0, 0, 0, 0, Map.of());
+
+        // Two groups, and four characters spread over them in bulk.
+        CharacterGroupDto group1 = characterService
+            .createCharacterGroup(testInstance);
+        CharacterGroupDto group2 = characterService
+            .createCharacterGroup(testInstance);
+
+        List<CharacterDto> characters = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++)
+        {
+            characters.add(characterService.createCharacter(testInstance));
+        }
+
+        characters.add(new CharacterDto());
+        characters.get(0).setCharacterGroup(group1);
+        characters.get(1).setCharacterGroup(group1);
+        characters.get(2).setCharacterGroup(group2);
+        characters.get(3).setCharacterGroup(group1);
+
+        List<CharacterDto> saved = characterService
+            .saveCharactersForInstance(instanceId, characters);
+
+        assertStatistics(instanceId, 4, 2, 0, 0,
+            Map.of(group1.getId(), 3L, group2.getId(), 1L));
+
+        // Moving a character out of its group.
+        CharacterDto moved = saved.get(0);
+        moved.setCharacterGroup(null);
+        characterService.updateCharacter(moved.getId(), moved);
+
+        assertStatistics(instanceId, 4, 2, 0, 0,
+            Map.of(group1.getId(), 2L, group2.getId(), 1L));
+
+        // Two invited maintainers, one of them registering.
+        MaintainerDto maintainer = userAccountService
+            .createUnregisteredMaintainer(testInstance);
+        userAccountService.createUnregisteredMaintainer(testInstance);
+
+        UserAccountDto registerInfo = new UserAccountDto();
+        registerInfo.setUsername("testmaintainer");
+        registerInfo.setPassword("testpassword");
+        registerInfo.setEmail("testemail2");
+
+        userAccountService.registerOrUpdateMaintainer(maintainer.getId(),
+            registerInfo);
+
+        assertStatistics(instanceId, 4, 2, 1, 1,
+            Map.of(group1.getId(), 2L, group2.getId(), 1L));
+
+        // Deleting a character, then a group moving its characters.
+        characterService.deleteCharacter(saved.get(2).getId());
+        characterService.deleteCharacterGroup(group1.getId(), group2.getId());
+
+        assertStatistics(instanceId, 3, 1, 1, 1, Map.of(group2.getId(), 2L));
+
+        // A group delta only ever reaches the Instance's own groups.
+        OwnerDto foreignOwner = userAccountService.createOwner("foreignowner",
+            "testpassword", "foreignemail");
+        InstanceDto foreignInstance = instanceService
+            .createInstance(foreignOwner, "foreign");
+        CharacterGroupDto foreignGroup = characterService
+            .createCharacterGroup(foreignInstance);
+
+        instanceStatisticsService.apply(instanceId,
+            new Change().characterMoved(null, foreignGroup.getId()));
+
+        assertStatistics(foreignInstance.getId(), 0, 1, 0, 0,
+            Map.of(foreignGroup.getId(), 0L));
+
+        // Dropped again, so the checks below only see the first Instance's
+        // groups.
+        characterService.deleteCharacterGroup(foreignGroup.getId());
+
+        // Nothing is off, so nothing is fixed.
+        assertEquals(0, instanceStatisticsService.reconcile());
+
+        // Counters gone wrong, or missing, are recounted.
+        jdbcTemplate.update("update instance_statistics "
+            + "set character_count = 10 where instance_id = ?", instanceId);
+        jdbcTemplate.update("delete from character_group_statistics");
+
+        OwnerDto otherOwner = userAccountService.createOwner("otherowner",
+            "testpassword", "otheremail");
+        InstanceDto otherInstance = instanceService.createInstance(otherOwner,
+            "other");
+        characterService.createCharacter(otherInstance);
+        jdbcTemplate.update("delete from instance_statistics "
+            + "where instance_id = ?", otherInstance.getId());
+
+        assertEquals(2, instanceStatisticsService.reconcile());
+        assertEquals(2.0, meterRegistry.get("adventurergroups.statistics.drift")
+            .counter().count());
+
+        assertStatistics(instanceId, 3, 1, 1, 1, Map.of(group2.getId(), 2L));
+        assertStatistics(otherInstance.getId(), 1, 0, 0, 0, Map.of());
+
+        // Deleted Instances have no statistics.
+        instanceService.deleteInstance(instanceId);
+
+        InstanceServiceException exception = assertThrows(
+            InstanceServiceException.class,
+            () -> instanceService.retrieveStatisticsForInstance(instanceId));
+        assertEquals(InstanceServiceException.Codes.INSTANCE_NOT_FOUND,
+            exception.getCode());
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "select count(*) from character_group_statistics", Long.class));
+    }
+
+    @Test
+    void overviewTests() throws Exception
+    {
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto firstInstance = instanceService.createInstance(testOwner,
+            "first");
+
+        characterService.createCharacter(firstInstance);
+        characterService.createCharacter(firstInstance);
+        characterService.createCharacterGroup(firstInstance);
+        userAccountService.createUnregisteredMaintainer(firstInstance);
+
+        Statistics statistics = entityManagerFactory
+            .unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+
+        List<InstanceOverviewDto> overviews = instanceService
+            .retrieveInstanceOverviewsForOwner(testOwner.getId());
+
+        // Only the Owner is read as an entity, the Instances' collections
+        // never are.
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, overviews.size());
+        assertEquals(firstInstance.getId(), overviews.get(0).getId());
+        assertEquals("first", overviews.get(0).getSubdomainName());
+        assertEquals(2, overviews.get(0).getCharacterCount());
+        assertEquals(1, overviews.get(0).getCharacterGroupCount());
+        assertEquals(1, overviews.get(0).getMaintainerCount());
+        assertEquals(1, overviews.get(0).getUnregisteredMaintainerCount());
+        assertNotNull(overviews.get(0).getLastModifiedDate());
+
+        // More Instances, one deleted, cost no more queries.
+        InstanceDto secondInstance = instanceService.createInstance(testOwner,
+            "second");
+        InstanceDto deletedInstance = instanceService
+            .createInstance(testOwner, "deleted");
+
+        characterService.createCharacter(secondInstance);
+        instanceService.deleteInstance(deletedInstance.getId());
+
+        statistics.clear();
+
+        overviews = instanceService
+            .retrieveInstanceOverviewsForOwner(testOwner.getId());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(2, overviews.size());
+        assertEquals(2, overviews.get(0).getCharacterCount());
+        assertEquals(secondInstance.getId(), overviews.get(1).getId());
+        assertEquals(1, overviews.get(1).getCharacterCount());
+        assertEquals(0, overviews.get(1).getMaintainerCount());
+
+        // Only Owners have a dashboard.
+        InstanceServiceException exception = assertThrows(
+            InstanceServiceException.class,
+            () -> instanceService.retrieveInstanceOverviewsForOwner(-1L));
+        assertEquals(InstanceServiceException.Codes.OWNER_NOT_FOUND,
+            exception.getCode());
+    }
+
+    private void assertStatistics(Long instanceId, long characters,
+        long characterGroups, long registered, long unregistered,
+        Map<Long, Long> groupCounts) throws Exception
+    {
+        InstanceStatisticsDto statistics = instanceService
+            .retrieveStatisticsForInstance(instanceId);
+
+        assertEquals(characters, statistics.getCharacterCount());
+        assertEquals(characterGroups, statistics.getCharacterGroupCount());
+        assertEquals(registered, statistics.getRegisteredMaintainerCount());
+        assertEquals(unregistered,
+            statistics.getUnregisteredMaintainerCount());
+        assertEquals(registered + unregistered,
+            statistics.getMaintainerCount());
+        assertEquals(groupCounts, statistics.getCharacterGroupCounts());
+    }
+}
@@ -0,0 +1,152 @@
+package ktpweb.adventurergroups.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ktpweb.adventurergroups.model.CharacterDto;
+import ktpweb.adventurergroups.model.CharacterGroupDto;
+import ktpweb.adventurergroups.model.InstanceDto;
+import ktpweb.adventurergroups.model.OwnerDto;
+import ktpweb.adventurergroups.service.PurgeService.Target;
+
+@SpringBootTest(properties = { "adventurergroups.purge.retention=1h",
+    "adventurergroups.purge.batchSize=2" })
+@ActiveProfiles("test")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase(replace = Replace.ANY)
+class PurgeServiceTests
+{
+    @Autowired
+    private PurgeService purgeService;
+
+    @Autowired
+    private InstanceService instanceService;
+
+    @Autowired
+    private UserAccountService userAccountService;
+
+    @Autowired
+    private CharacterService characterService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void purgeTests() throws Exception
+    {
+        // Create an owner with an instance holding a maintainer and a group
+        // of characters, and delete it all.
+        OwnerDto deletedOwner = userAccountService.createOwner("deletedowner",
+            "testpassword", "deletedemail");
+        InstanceDto deletedInstance = instanceService
+            .createInstance(deletedOwner, "deleted");
+
+        userAccountService.createUnregisteredMaintainer(deletedInstance);
+        CharacterGroupDto deletedGroup = characterService
+            .createCharacterGroup(deletedInstance);
+
+        List<CharacterDto> deletedCharacters = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++)
+        {
+            CharacterDto character = characterService
+                .createCharacter(deletedInstance);
+            character.setCharacterGroup(deletedGroup);
+            deletedCharacters.add(character);
+        }
+
+        characterService.saveCharactersForInstance(deletedInstance.getId(),
+            deletedCharacters);
+        userAccountService.deleteOwner(deletedOwner.getId());
+
+        // And another, kept, owner with a recently deleted character.
+        OwnerDto testOwner = userAccountService.createOwner("testowner",
+            "testpassword", "testemail");
+        InstanceDto testInstance = instanceService.createInstance(testOwner,
+            "test");
+
+        characterService.createCharacter(testInstance);
+        CharacterDto recentCharacter = characterService
+            .createCharacter(testInstance);
+        characterService.deleteCharacter(recentCharacter.getId());
+
+        // Only rows deleted before the retention are purged.
+        Timestamp longAgo = Timestamp
+            .valueOf(LocalDateTime.now().minusDays(2));
+
+        for (String table : List.of("characterobject", "character_group",
+            "instance", "user_account"))
+        {
+            jdbcTemplate.update("update " + table
+                + " set delete_date = ? where deleted = true", longAgo);
+        }
+
+        jdbcTemplate.update(
+            "update characterobject set delete_date = ? where id = ?",
+            Timestamp.valueOf(LocalDateTime.now()), recentCharacter.getId());
+
+        // Resume a purge that stopped after the third character. The first
+        // characters are skipped, and so their group, instance and owner are
+        // still referenced and kept.
+        jdbcTemplate.update(
+            "insert into purge_checkpoint (target, last_id) values (?, ?)",
+            Target.CHARACTER.name(), deletedCharacters.get(2).getId());
+
+        assertEquals(3, purgeService.purge(),
+            "Two characters and the maintainer should be purged");
+        assertEquals(2, countRows("characterobject_archive"));
+        assertEquals(5, countRows("characterobject"));
+        assertEquals(0, countRows("character_group_archive"));
+        assertEquals(1, countRows("user_account_archive"));
+
+        // Each target starts from the top again.
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "select count(*) from purge_checkpoint where last_id <> 0",
+            Long.class));
+
+        // The next purge takes the rest.
+        assertEquals(6, purgeService.purge(),
+            "Three characters, the group, instance and owner should be purged");
+        assertEquals(5, countRows("characterobject_archive"));
+        assertEquals(1, countRows("character_group_archive"));
+        assertEquals(1, countRows("instance_archive"));
+        assertEquals(2, countRows("user_account_archive"));
+
+        // The kept owner is untouched, including their recent deletion.
+        assertEquals(2, countRows("characterobject"));
+        assertEquals(1, countRows("instance"));
+        assertEquals(1, countRows("user_account"));
+        assertEquals(1, instanceService.retrieveInstance(testInstance.getId())
+            .getCharacters().size());
+
+        assertEquals(5.0, meterRegistry.get("adventurergroups.purge.rows")
+            .tag("target", Target.CHARACTER.name()).counter().count());
+
+        // Nothing is left to purge.
+        assertEquals(0, purgeService.purge());
+    }
+
+    private long countRows(String table)
+    {
+        return jdbcTemplate.queryForObject("select count(*) from " + table,
+            Long.class);
+    }
+}
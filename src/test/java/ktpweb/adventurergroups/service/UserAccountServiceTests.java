@@ -2,9 +2,17 @@ package ktpweb.adventurergroups.service;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.concurrent.Callable;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
@@ -33,6 +41,15 @@ class UserAccountServiceTests
 	@Autowired
 	private InstanceService instanceService;
 
+	@Autowired
+	private CharacterService characterService;
+
+	@Autowired
+	private OwnershipCacheService ownershipCacheService;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
 	@Test
 	void createOwnerTests() throws Exception
 	{
@@ -238,4 +255,116 @@ class UserAccountServiceTests
 		assertEquals(exception.getCode(),
 			UserAccountServiceException.Codes.ACCOUNT_ALREADY_EXISTS);
 	}
+
+	@Test
+	void ownershipCheckTests() throws Exception
+	{
+		// Create two owners with an instance each, and a maintainer in the
+		// first instance.
+		OwnerDto testOwner = userAccountService.createOwner("testowner",
+			"testpassword", "testowneremail");
+		OwnerDto otherOwner = userAccountService.createOwner("otherowner",
+			"testpassword", "otherowneremail");
+
+		InstanceDto testInstance = instanceService.createInstance(testOwner,
+			"test");
+		InstanceDto otherInstance = instanceService.createInstance(otherOwner,
+			"other");
+
+		MaintainerDto testMaintainer = userAccountService
+			.createUnregisteredMaintainer(testInstance);
+
+		CharacterDto ownerCharacter = characterService
+			.createCharacter(testInstance);
+		CharacterDto maintainerCharacter = characterService
+			.createCharacterForMaintainer(testMaintainer);
+		CharacterDto otherCharacter = characterService
+			.createCharacter(otherInstance);
+
+		// Owners own their instances only.
+		assertTrue(userAccountService.ownerOwnsInstance(testOwner.getId(),
+			testInstance.getId()));
+		assertFalse(userAccountService.ownerOwnsInstance(otherOwner.getId(),
+			testInstance.getId()));
+		assertFalse(userAccountService.ownerOwnsInstance(
+			testMaintainer.getId(), testInstance.getId()),
+			"Maintainers should not own instances");
+
+		// Owners own every character in their instances, maintainers only
+		// their own.
+		assertTrue(userAccountService.userOwnsCharacter(testOwner.getId(),
+			ownerCharacter.getId()));
+		assertTrue(userAccountService.userOwnsCharacter(testOwner.getId(),
+			maintainerCharacter.getId()));
+		assertFalse(userAccountService.userOwnsCharacter(testOwner.getId(),
+			otherCharacter.getId()));
+		assertTrue(userAccountService.userOwnsCharacter(
+			testMaintainer.getId(), maintainerCharacter.getId()));
+		assertFalse(userAccountService.userOwnsCharacter(
+			testMaintainer.getId(), ownerCharacter.getId()));
+
+		// Deleted characters are not owned by anyone.
+		characterService.deleteCharacter(ownerCharacter.getId());
+
+		assertFalse(userAccountService.userOwnsCharacter(testOwner.getId(),
+			ownerCharacter.getId()));
+
+		// Each check is a single statement, whatever the amount of data, and
+		// is cached afterwards.
+		assertSingleStatement(() -> userAccountService
+			.ownerOwnsInstance(testOwner.getId(), testInstance.getId()));
+		assertSingleStatement(() -> userAccountService.userOwnsCharacter(
+			testOwner.getId(), maintainerCharacter.getId()));
+
+		for (int i = 0; i < 5; i++)
+		{
+			InstanceDto instance = instanceService.createInstance(testOwner,
+				"test" + i);
+
+			for (int j = 0; j < 10; j++)
+			{
+				characterService.createCharacter(instance);
+			}
+		}
+
+		assertSingleStatement(() -> userAccountService
+			.ownerOwnsInstance(testOwner.getId(), testInstance.getId()));
+		assertSingleStatement(() -> userAccountService.userOwnsCharacter(
+			testOwner.getId(), maintainerCharacter.getId()));
+		assertSingleStatement(() -> userAccountService.userOwnsCharacter(
+			testMaintainer.getId(), maintainerCharacter.getId()));
+
+		// Taking a character away from its maintainer evicts the cached
+		// decision.
+		maintainerCharacter.setMaintainer(null);
+		characterService.updateCharacter(maintainerCharacter.getId(),
+			maintainerCharacter);
+
+		assertFalse(userAccountService.userOwnsCharacter(
+			testMaintainer.getId(), maintainerCharacter.getId()));
+		assertTrue(userAccountService.userOwnsCharacter(testOwner.getId(),
+			maintainerCharacter.getId()));
+	}
+
+	private void assertSingleStatement(Callable<Boolean> check)
+		throws Exception
+	{
+		Statistics statistics = entityManagerFactory
+			.unwrap(SessionFactory.class).getStatistics();
+
+		ownershipCacheService.evictAll();
+		statistics.clear();
+
+		assertTrue(check.call());
+		assertEquals(1, statistics.getPrepareStatementCount(),
+			"Ownership checks should run a single statement");
+		assertEquals(0, statistics.getEntityLoadCount(),
+			"Ownership checks should not load any entities");
+
+		statistics.clear();
+
+		assertTrue(check.call());
+		assertEquals(0, statistics.getPrepareStatementCount(),
+			"Repeated ownership checks should be cached");
+	}
 }